@@ -1,43 +1,87 @@
 /*******************************************************************************
  *  Runs the Absurdle game. List of valid guesses and solutions is specified
  *  beforehand in the words folder. Allows user to set specific maximum number
- *  of guesses (at most eight). Default number of guesses is eight.
+ *  of guesses (at most eight). Default number of guesses is eight. A second
+ *  argument of more than 1 makes the adversary look that many moves ahead
+ *  (see Lookahead) instead of keeping the largest bucket. Run with
+ *  -Dabsurdle.hard=true for hard mode, where every guess must use the hints
+ *  revealed so far (see Game).
+ *
+ *  Every move is recorded in a Journal (absurdle.journal), so a game cut short
+ *  by the program closing is resumed the next time it is run.
  ******************************************************************************/
 
-import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 
 public class Absurdle {
 
+    private static final int CACHE_SIZE = 4096;  // most guess results to remember
+
     // Runs a game of Absurdle, updating the board based on player's inputs through
     // their keyboard and the board's on-screen keyboard.
     public static void main(String[] args) {
 
-        In guessesFile = new In("words/valid_guesses.txt");
-        In solutionsFile = new In("words/valid_solutions.txt");
+        // precomputed patterns of every guess against every solution
+        PatternTable table = PatternTable.load();
+
+        // set valid guesses and max guesses
+        Dictionary VALID_GUESSES = table.guesses();
+
+        // results of earlier guesses, b/c games often reach the same states
+        BucketCache cache = new BucketCache(table, CACHE_SIZE);
+        Metrics.watch(cache);
+        Metrics.start();  // JMX, and periodic dumps if asked for (see Metrics)
 
-        // set valid guesses, solutions and max letters, guesses
-        String[] VALID_GUESSES = guessesFile.readAllStrings();
-        String[] VALID_SOLS = solutionsFile.readAllStrings();
         int MAX_GUESSES = 8;
         if (args.length != 0) MAX_GUESSES = Integer.parseInt(args[0]);
 
+        // look further ahead than the largest bucket if asked to
+        Lookahead adversary = null;
+        if (args.length > 1 && Integer.parseInt(args[1]) > 1) {
+            adversary = new Lookahead(table, Integer.parseInt(args[1]),
+                                      Lookahead.DEFAULT_BUDGET);
+        }
+
+        // every guess must use the revealed hints if asked for
+        boolean hard = Boolean.getBoolean("absurdle.hard");
+
+        // games left unfinished the last time (only the last one is resumed)
+        Journal journal = Journal.open(table, "absurdle");
+        List<Journal.Recovered> unfinished = journal.recovered();
+        for (int i = 0; i < unfinished.size() - 1; i++) {
+            journal.end(unfinished.get(i).id());
+        }
+
         // main loop (for starting new games)
         while (true) {
-            // validSolutions as LinkedList b/c removing elements as user guesses
-            LinkedList<String> remSols = new LinkedList<>(Arrays.asList(VALID_SOLS));
+            Game game;
+            long gameId;
+            if (!unfinished.isEmpty()) {
+                Journal.Recovered last = unfinished.get(unfinished.size() - 1);
+                game = last.game(table, cache, adversary);
+                gameId = last.id();
+                unfinished = List.of();
+            }
+            else {
+                // every solution is possible at the start of a game
+                game = new Game(table, cache, MAX_GUESSES, adversary, hard);
+                gameId = journal.start("", game);
+            }
 
-            // create new board
-            Board board = new Board(MAX_GUESSES);
+            // create new board, with the guesses of a resumed game
+            Board board = new Board(game.maxGuesses(), table.wordLength(),
+                                    Board.QWERTY);
             int maxLetters = board.getMaxLetters();
             board.drawBoard();
-            StdDraw.show();
-
-            boolean lost = true;
-            int curGuess = 0;
+            for (int i = 0; i < game.guessCount(); i++) {
+                board.updateBoard(game.guessAt(i), game.patternAt(i), i);
+            }
+            board.show();
 
             // current game loop
-            while (curGuess < MAX_GUESSES) {
+            while (!game.isOver()) {
+                int curGuess = game.guessCount();
 
                 // linked list b/c can delete letters inputted
                 LinkedList<String> guessLtrs = new LinkedList<String>();
@@ -48,17 +92,19 @@ public class Absurdle {
                 // accepting letters loop
                 while (choosing) {
 
-                    char nextIn = board.nextKeyTyped();
-                    // 0 is null char, (if no key is typed)
-                    if (nextIn == 0) nextIn = board.nextKeyClicked();
+                    // waits for a key typed or clicked
+                    char nextIn = board.nextKey();
 
                     // 10 is enter char
                     if (nextIn == 10 && guessLtrs.size() == maxLetters) {
                         String guess = String.join("", guessLtrs);
-                        if (Arrays.asList(VALID_GUESSES).contains(guess)) {
+                        if (VALID_GUESSES.contains(guess) && game.isValid(guess)) {
                             chosen = guess;
                             choosing = false;
                         }
+                        else if (VALID_GUESSES.contains(guess)) {
+                            board.throwMessage("use the hints");
+                        }
                         else board.throwMessage("invalid word");
                     }
                     else if (nextIn == 8 && guessLtrs.size() > 0) {  // 8 is backspace
@@ -77,36 +123,23 @@ public class Absurdle {
                         guessLtrs.add(ltr);
                         board.addTile(ltr, curGuess, (guessLtrs.size() - 1));
                     }
-                    StdDraw.show();
-                    StdDraw.pause(150);  // to prevent repeat inputs when clicking
+                    board.show();
                 }
 
-                Buckets buckets = new Buckets(chosen, remSols);
-                remSols = buckets.getMostRemSols();
+                Buckets buckets = game.guess(chosen);
+                journal.move(gameId, game);
                 board.updateBoard(chosen, buckets.getLargestBucket(), curGuess);
-                StdDraw.show();
-
-                // check if won
-                if (remSols.size() == 1 && remSols.peek().equals(chosen)) {
-                    lost = false;
-                    break;
-                }
-
-                curGuess++;
+                board.show();
             }
 
-            if (lost) board.loseSeq(remSols.peek());  // passes a solution
-            else board.winSeq();
+            journal.end(gameId);
+            if (game.isWon()) board.winSeq();
+            else board.loseSeq(game.solution());  // passes a solution
             board.throwMessage("press enter to play again");
-            StdDraw.show();
+            board.show();
 
-            // loop waiting for response to play again
-            while (true) {
-                char nextIn = board.nextKeyTyped();
-                if (nextIn == 0) nextIn = board.nextKeyClicked();
-
-                if (nextIn == 10) break;  // 10 is enter char
-            }
+            // wait for response to play again
+            while (board.nextKey() != 10) { }  // 10 is enter char
         }
     }
 }
@@ -0,0 +1,424 @@
+/*******************************************************************************
+ * Writes what the Buckets adversary answers to every opening guess, or to
+ * every pair of opening guesses, as CSV for reports:
+ *
+ * openers  one row per valid guess: guess,pattern,size,buckets,solution
+ *          (the pattern and size of the largest bucket, the number of
+ *          non-empty buckets, and whether the guess is a solution)
+ * pairs    one row per pair of valid guesses: first,second,pattern,size
+ *          (the pattern and size of the largest bucket of the second guess
+ *          on the solutions left by the first)
+ *
+ * The pair sweep has guesses^2 rows (about 168 million, 3.7 GB, for the
+ * default lists), so it only keeps a chunk of results in memory at a time.
+ * First guesses leaving the same solutions share the same second moves, so
+ * each distinct set is swept once and its rows are written for every first
+ * guess that leaves it: rows are grouped by that set, in the order the sets
+ * are first left. Buckets are counted straight from the PatternTable rows,
+ * touching only the patterns that occur, and sets are swept in parallel.
+ *
+ * Progress is reported on standard error after every chunk, along with a
+ * checkpoint next to the output (e.g. pairs.csv.checkpoint) holding how many
+ * chunks are written and the length of the output at that point. Running the
+ * same command again resumes from the checkpoint, so an interrupted sweep only
+ * repeats its last chunk. The checkpoint is deleted once the output is done.
+ *
+ * A report can also be split into shards of whole chunks (e.g. 3/16 for the
+ * fourth of sixteen), each written to its own file by a separate process and
+ * concatenated in order afterwards (see Shards, which runs and merges them).
+ *
+ * Usage: java Analytics openers|pairs [output file] [shard/shards]
+ ******************************************************************************/
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+public class Analytics {
+
+    private static final int OPENER_CHUNK = 1024;  // guesses per checkpoint
+    private static final int PAIR_CHUNK = 64;  // distinct sets per checkpoint
+    private static final int BUFFER_SIZE = 1 << 20;  // bytes buffered per write
+
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";  // after output
+
+    private final PatternTable table;  // patterns of every guess vs solution
+    private final int[] greens;  // number of greens of each pattern code
+    private final int[] yellows;  // number of yellows of each pattern code
+    private final byte[][] words;  // each guess followed by a comma, as bytes
+    private final byte[][] patterns;  // each pattern followed by a comma
+
+    // counters for finding the largest bucket, one per thread
+    private final ThreadLocal<Tally> tallies;
+
+    private Runnable listener = () -> { };  // called before every write
+
+    // creates reports of the adversary's answers for the word lists of table
+    public Analytics(PatternTable table) {
+        this.table = table;
+        int codes = Pattern.count(table.wordLength());
+        this.greens = new int[codes];
+        this.yellows = new int[codes];
+        this.patterns = new byte[codes][];
+        for (int code = 0; code < codes; code++) {
+            greens[code] = Pattern.greens(code);
+            yellows[code] = Pattern.yellows(code);
+            patterns[code] = ascii(Pattern.toString(code, table.wordLength()) + ",");
+        }
+        this.words = new byte[table.guessCount()][];
+        for (int g = 0; g < words.length; g++) words[g] = ascii(table.guess(g) + ",");
+        this.tallies = ThreadLocal.withInitial(() -> new Tally(codes));
+    }
+
+    // the largest bucket of a guess on a set of solutions
+    private class Tally {
+        private final int[] bucketFreq;  // solutions per pattern code, all 0 between
+        private final int[] touched;  // codes with at least one solution
+        private int code;  // pattern code of the largest bucket
+        private int size;  // number of solutions in the largest bucket
+        private int buckets;  // number of non-empty buckets
+
+        // creates a tally for guesses with the given number of pattern codes
+        private Tally(int codes) {
+            this.bucketFreq = new int[codes];
+            this.touched = new int[codes];
+        }
+
+        // finds the largest bucket of the guess at index g on sols, breaking
+        // ties like Buckets.largest (fewest greens, then fewest yellows, then
+        // the lowest code)
+        private void count(int g, int[] sols) {
+            buckets = 0;
+            for (int s : sols) {
+                int c = table.get(g, s);
+                if (bucketFreq[c]++ == 0) touched[buckets++] = c;
+            }
+
+            code = -1;
+            size = 0;
+            for (int i = 0; i < buckets; i++) {
+                int c = touched[i];
+                int freq = bucketFreq[c];
+                bucketFreq[c] = 0;
+                if (freq > size || (freq == size && isBetterTie(c, code))) {
+                    code = c;
+                    size = freq;
+                }
+            }
+        }
+    }
+
+    // returns whether pattern code a wins a tie between equally large buckets
+    // against code b
+    private boolean isBetterTie(int a, int b) {
+        if (greens[a] != greens[b]) return greens[a] < greens[b];
+        if (yellows[a] != yellows[b]) return yellows[a] < yellows[b];
+        return a < b;
+    }
+
+    // calls listener before every chunk is written and before every checkpoint
+    // is recorded (e.g. to check and renew a claim on a shard, see Shards); it
+    // may throw an unchecked exception to stop the report, leaving its last
+    // checkpoint
+    public void onChunk(Runnable listener) {
+        this.listener = listener;
+    }
+
+    // writes the openers report to file
+    public void openers(Path file) throws IOException {
+        openers(file, 0, 1);
+    }
+
+    // writes shard shard (0 to shards - 1) of the openers report to file; the
+    // shards concatenated in order are the whole report, with the header at the
+    // start of shard 0
+    public void openers(Path file, int shard, int shards) throws IOException {
+        int[] all = members(SolutionSet.all(table.solutionCount()));
+        int guesses = table.guessCount();
+        int chunks = (guesses + OPENER_CHUNK - 1) / OPENER_CHUNK;
+        int firstChunk = firstChunk(chunks, shard, shards);
+        int endChunk = firstChunk(chunks, shard + 1, shards);
+        long start = Math.min((long) firstChunk * OPENER_CHUNK, guesses);
+        long total = Math.min((long) endChunk * OPENER_CHUNK, guesses) - start;
+        String header = shard == 0 ? "guess,pattern,size,buckets,solution" : null;
+
+        try (Report report = new Report(file, modeName("openers", shard, shards),
+                                        header)) {
+            byte[][] rows = new byte[OPENER_CHUNK][];
+            int resumed = firstChunk + report.chunksDone();
+            report.resumeAt(Math.min((long) resumed * OPENER_CHUNK, guesses) - start);
+            for (int chunk = resumed; chunk < endChunk; chunk++) {
+                int lo = chunk * OPENER_CHUNK;
+                int hi = Math.min(lo + OPENER_CHUNK, guesses);
+                IntStream.range(lo, hi).parallel().forEach(g -> {
+                    Tally tally = tallies.get();
+                    tally.count(g, all);
+                    boolean isSolution = table.solutionIndex(table.guess(g)) >= 0;
+                    rows[g - lo] = ascii(table.guess(g) + "," +
+                                                 Pattern.toString(tally.code,
+                                                                  table.wordLength())
+                                                 + "," + tally.size + "," +
+                                                 tally.buckets + "," + isSolution +
+                                                 "\n");
+                });
+                listener.run();
+                for (int g = lo; g < hi; g++) report.out().write(rows[g - lo]);
+                report.checkpoint(chunk + 1 - firstChunk, hi - start, total,
+                                  "guesses");
+            }
+            report.finish();
+        }
+    }
+
+    // writes the pairs report to file
+    public void pairs(Path file) throws IOException {
+        pairs(file, 0, 1);
+    }
+
+    // writes shard shard (0 to shards - 1) of the pairs report to file; the
+    // shards concatenated in order are the whole report, with the header at the
+    // start of shard 0
+    public void pairs(Path file, int shard, int shards) throws IOException {
+        int guesses = table.guessCount();
+        String header = shard == 0 ? "first,second,pattern,size" : null;
+
+        // group the first guesses by the set they leave
+        Map<SolutionSet, List<Integer>> firsts =
+                new LinkedHashMap<SolutionSet, List<Integer>>();
+        SolutionSet all = SolutionSet.all(table.solutionCount());
+        for (int g = 0; g < guesses; g++) {
+            SolutionSet left = new Buckets(g, all, table).getMostRemSols();
+            firsts.computeIfAbsent(left, set -> new ArrayList<Integer>()).add(g);
+        }
+        List<int[]> sets = new ArrayList<int[]>();  // solutions of each set
+        List<List<Integer>> groups = new ArrayList<List<Integer>>();  // its firsts
+        for (Map.Entry<SolutionSet, List<Integer>> entry : firsts.entrySet()) {
+            sets.add(members(entry.getKey()));
+            groups.add(entry.getValue());
+        }
+        firsts = null;  // only the members are needed from here on
+        int chunks = (sets.size() + PAIR_CHUNK - 1) / PAIR_CHUNK;
+        int firstChunk = firstChunk(chunks, shard, shards);
+        int endChunk = firstChunk(chunks, shard + 1, shards);
+        long total = 0;  // pairs in the shard
+        for (int i = firstChunk * PAIR_CHUNK; i < Math.min(endChunk * PAIR_CHUNK,
+                                                           sets.size()); i++) {
+            total += (long) groups.get(i).size() * guesses;
+        }
+
+        try (Report report = new Report(file, modeName("pairs", shard, shards),
+                                        header)) {
+            int[][] codes = new int[PAIR_CHUNK][guesses];
+            int[][] sizes = new int[PAIR_CHUNK][guesses];
+            int resumed = firstChunk + report.chunksDone();
+            long pairsDone = 0;
+            for (int i = firstChunk * PAIR_CHUNK; i < Math.min(resumed * PAIR_CHUNK,
+                                                               sets.size()); i++) {
+                pairsDone += (long) groups.get(i).size() * guesses;
+            }
+            report.resumeAt(pairsDone);
+
+            for (int chunk = resumed; chunk < endChunk; chunk++) {
+                int lo = chunk * PAIR_CHUNK;
+                int hi = Math.min(lo + PAIR_CHUNK, sets.size());
+                // sweep the second guesses of each set in parallel
+                IntStream.range(0, (hi - lo) * guesses).parallel().forEach(i -> {
+                    int set = i / guesses;
+                    int g = i % guesses;
+                    Tally tally = tallies.get();
+                    tally.count(g, sets.get(lo + set));
+                    codes[set][g] = tally.code;
+                    sizes[set][g] = tally.size;
+                });
+
+                listener.run();
+                OutputStream out = report.out();
+                for (int set = lo; set < hi; set++) {
+                    for (int first : groups.get(set)) {
+                        for (int g = 0; g < guesses; g++) {
+                            out.write(words[first]);
+                            out.write(words[g]);
+                            out.write(patterns[codes[set - lo][g]]);
+                            writeInt(out, sizes[set - lo][g]);
+                            out.write('\n');
+                        }
+                        pairsDone += guesses;
+                    }
+                }
+                report.checkpoint(chunk + 1 - firstChunk, pairsDone, total, "pairs");
+            }
+            report.finish();
+        }
+    }
+
+    // returns the first of chunks chunks in shard shard of shards (or chunks
+    // if shard is shards), so every shard gets the same number of chunks give
+    // or take one, in order
+    private static int firstChunk(int chunks, int shard, int shards) {
+        return (int) ((long) chunks * shard / shards);
+    }
+
+    // returns the name of the report mode for shard shard of shards, e.g.
+    // pairs:3/16 (or just mode for a whole report), recorded in its checkpoint
+    private static String modeName(String mode, int shard, int shards) {
+        if (shards == 1) return mode;
+        return mode + ":" + shard + "/" + shards;
+    }
+
+    // returns the indices of the solutions in set
+    private static int[] members(SolutionSet set) {
+        int[] sols = new int[set.size()];
+        int i = 0;
+        for (int s = set.next(0); s >= 0; s = set.next(s + 1)) sols[i++] = s;
+        return sols;
+    }
+
+    // returns the bytes of text, which is plain ASCII
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // writes the digits of value (at least 0) to out without creating a String
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        if (value >= 10) writeInt(out, value / 10);
+        out.write('0' + value % 10);
+    }
+
+    // an output file with its checkpoint, for resuming an interrupted report
+    private class Report implements AutoCloseable {
+        private final Path file;  // file the report is written to
+        private final Path checkpointFile;  // next to file
+        private final String mode;  // report being written
+        private final FileOutputStream fileOut;  // appends to file
+        private final OutputStream out;  // buffers fileOut
+        private final int chunksDone;  // chunks written before this run
+        private final long start = System.nanoTime();  // when this run started
+        private long resumedAt;  // units done before this run
+
+        // opens file for the mode's report, resuming from its checkpoint if it
+        // was left by the same report on the same word lists, and starting over
+        // with header (if not null) otherwise
+        private Report(Path file, String mode, String header) throws IOException {
+            this.file = file;
+            this.checkpointFile = Paths.get(file + CHECKPOINT_SUFFIX);
+            this.mode = mode;
+
+            int chunks = 0;
+            long length = 0;
+            if (Files.exists(checkpointFile) && Files.exists(file)) {
+                String[] fields = Files.readString(checkpointFile).trim().split(" ");
+                if (fields.length == 4 && fields[0].equals(mode) &&
+                        Long.parseLong(fields[1]) == table.checksum()) {
+                    chunks = Integer.parseInt(fields[2]);
+                    length = Long.parseLong(fields[3]);
+                }
+            }
+            // drop whatever was written after the checkpoint (or everything)
+            try (FileChannel channel = FileChannel.open(
+                    file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+            this.chunksDone = chunks;
+            this.fileOut = new FileOutputStream(file.toFile(), true);
+            this.out = new BufferedOutputStream(fileOut, BUFFER_SIZE);
+            if (chunks > 0) System.err.println("Resuming " + file + " after chunk " +
+                                                       chunks);
+            else if (header != null) out.write(ascii(header + "\n"));
+        }
+
+        // returns the number of chunks written before this run
+        private int chunksDone() {
+            return chunksDone;
+        }
+
+        // returns the stream the rows are written to
+        private OutputStream out() {
+            return out;
+        }
+
+        // records that done units were already done before this run, for
+        // estimating the time left
+        private void resumeAt(long done) {
+            resumedAt = done;
+        }
+
+        // makes the rows written so far durable, records that chunks chunks are
+        // done, and reports progress (done of total units)
+        private void checkpoint(int chunks, long done, long total, String units)
+                throws IOException {
+            out.flush();
+            fileOut.getChannel().force(false);
+            long length = fileOut.getChannel().position();
+
+            // write the checkpoint next to it and rename it into place, so a
+            // checkpoint is never partly written
+            Path tmp = Paths.get(checkpointFile + ".tmp");
+            Files.writeString(tmp, mode + " " + table.checksum() + " " + chunks +
+                    " " + length + "\n");
+            listener.run();
+            Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double rate = (done - resumedAt) / Math.max(seconds, 1e-9);
+            System.err.printf("%s: %d of %d %s (%.1f%%), %.0f s elapsed, about " +
+                                      "%.0f s left%n", mode, done, total, units,
+                              100.0 * done / total, seconds, (total - done) / rate);
+        }
+
+        // writes the rest of the report and deletes its checkpoint, once every
+        // row is written
+        private void finish() throws IOException {
+            out.flush();
+            fileOut.getChannel().force(false);
+            Files.deleteIfExists(checkpointFile);
+        }
+
+        // closes the file, keeping the checkpoint if the report is not finished
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // writes the report (or the shard of it) named by the arguments
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 ||
+                !(args[0].equals("openers") || args[0].equals("pairs"))) {
+            System.err.println("Usage: java Analytics openers|pairs [output file] " +
+                                       "[shard/shards]");
+            System.exit(1);
+        }
+        String mode = args[0];
+        Path file = Paths.get(args.length > 1 ? args[1] : mode + ".csv");
+        int shard = 0;
+        int shards = 1;
+        if (args.length > 2) {
+            String[] parts = args[2].split("/");
+            shard = Integer.parseInt(parts[0]);
+            shards = Integer.parseInt(parts[1]);
+            if (shards < 1 || shard < 0 || shard >= shards) {
+                System.err.println("Shard must be 0 to shards - 1: " + args[2]);
+                System.exit(1);
+            }
+        }
+
+        Stopwatch timer = new Stopwatch();
+        Analytics analytics = new Analytics(PatternTable.load());
+        if (mode.equals("openers")) analytics.openers(file, shard, shards);
+        else analytics.pairs(file, shard, shards);
+        System.err.printf("Wrote %s in %.1f seconds%n", file, timer.elapsedTime());
+    }
+}
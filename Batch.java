@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Plays games of Absurdle without a display, for replaying logged games and
+ * regression testing. Reads one game per line (guesses separated by spaces)
+ * from a file, or standard input if no file is given, and writes one line per
+ * game, in the same order, with tab-separated columns:
+ *
+ * game number, result, guesses used, solutions left, guesses and patterns
+ *
+ * e.g. "1   win   6   1   terns ----- aphid y---- ... offal ggggg"
+ *
+ * The result is "win", "loss" (out of guesses), "unfinished" (the line ran out
+ * of guesses first) or "invalid" (the line has a word that is not a valid
+ * guess; the game stops before it). Words after the game is over are ignored.
+ *
+ * Lines are read in chunks and the games of each chunk are played in parallel
+ * with a shared BucketCache, since many games reach the same states.
+ *
+ * Usage: java Batch [max guesses] [file]
+ ******************************************************************************/
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
+
+public class Batch {
+
+    private static final int CHUNK_SIZE = 1 << 14;  // games played per chunk
+    private static final int CACHE_SIZE = 1 << 18;  // most guess results cached
+
+    private final PatternTable table;  // valid guesses and solutions
+    private final BucketCache cache;  // results of guesses, shared by all games
+    private final int maxGuesses;  // maximum number of guesses per game
+
+    // creates a batch player of games of at most maxGuesses guesses
+    public Batch(PatternTable table, BucketCache cache, int maxGuesses) {
+        this.table = table;
+        this.cache = cache;
+        this.maxGuesses = maxGuesses;
+    }
+
+    // plays the game of guesses in line and returns its result columns (without
+    // the game number)
+    public String play(String line) {
+        Game game = new Game(table, cache, maxGuesses);
+        String result = "unfinished";
+        for (String guess : line.trim().split("\\s+")) {
+            if (guess.isEmpty() || game.isOver()) continue;
+            if (!game.isValid(guess)) {
+                result = "invalid";
+                break;
+            }
+            game.guess(guess);
+        }
+        if (game.isWon()) result = "win";
+        else if (game.isOver()) result = "loss";
+
+        StringBuilder sb = new StringBuilder(result);
+        sb.append('\t').append(game.guessCount());
+        sb.append('\t').append(game.remainingSolutions().size());
+        sb.append('\t');
+        for (int i = 0; i < game.guessCount(); i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(game.guessAt(i)).append(' ').append(game.patternAt(i));
+        }
+        return sb.toString();
+    }
+
+    // plays every line of in, writing the results to out in order
+    public void playAll(In in, PrintWriter out) {
+        String[] lines = new String[CHUNK_SIZE];
+        String[] results = new String[CHUNK_SIZE];
+        long gameNumber = 0;
+
+        while (in.hasNextLine()) {
+            int count = 0;
+            while (count < CHUNK_SIZE && in.hasNextLine()) {
+                lines[count++] = in.readLine();
+            }
+            IntStream.range(0, count).parallel()
+                     .forEach(i -> results[i] = play(lines[i]));
+            for (int i = 0; i < count; i++) {
+                out.print(++gameNumber);
+                out.print('\t');
+                out.println(results[i]);
+            }
+            out.flush();
+        }
+    }
+
+    // plays the games in the given file (or standard input)
+    public static void main(String[] args) {
+        int maxGuesses = 8;
+        if (args.length > 0) maxGuesses = Integer.parseInt(args[0]);
+        In in;
+        if (args.length > 1) in = new In(args[1]);
+        else in = new In();
+
+        PatternTable table = PatternTable.load();
+        BucketCache cache = new BucketCache(table, CACHE_SIZE);
+        Metrics.watch(cache);
+        Metrics.start();  // JMX, and periodic dumps if asked for (see Metrics)
+        Batch batch = new Batch(table, cache, maxGuesses);
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        Stopwatch timer = new Stopwatch();
+        batch.playAll(in, out);
+        out.flush();
+
+        // report the timing on standard error to keep standard output parseable
+        System.err.printf("Played games in %.2f seconds (guess cache: %s)%n",
+                          timer.elapsedTime(), cache);
+    }
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Micro-benchmarks of the game engine: scoring a single guess against a
+ * solution, Buckets on the full solution list and on the mid-game sets of
+ * Buckets.main (254, 37 and 11 solutions), guess validation, and complete
+ * headless games. Scoring is also measured with the original String/ST
+ * implementation of Buckets as a baseline.
+ *
+ * Each benchmark runs for a few warmup iterations (to let the JIT compile it),
+ * then for several measured iterations of a fixed duration, and reports the
+ * mean time per operation with its standard deviation and the bytes allocated
+ * per operation (measured per thread, where the JVM supports it).
+ *
+ * Usage: java Benchmarks [name filter]
+ ******************************************************************************/
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Benchmarks {
+
+    private static final int WARMUP_ITERATIONS = 3;  // iterations not measured
+    private static final int ITERATIONS = 5;  // measured iterations
+    private static final long ITERATION_NANOS = 500_000_000L;  // length of each
+
+    // sum of every operation's result, so the JIT can't skip the work
+    private static volatile long sink;
+
+    // a benchmarked operation, returning any value that depends on its work
+    private interface Operation {
+        long run();
+    }
+
+    private final List<String> names = new ArrayList<String>();  // benchmark names
+    private final List<Operation> ops = new ArrayList<Operation>();  // their work
+
+    // adds a benchmark of op called name
+    private void add(String name, Operation op) {
+        names.add(name);
+        ops.add(op);
+    }
+
+    // runs every benchmark whose name contains filter and prints the results
+    private void runAll(String filter) {
+        StdOut.printf("%-36s %14s %12s %12s%n", "Benchmark", "ns/op", "+/-",
+                      "B/op");
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).contains(filter)) run(names.get(i), ops.get(i));
+        }
+    }
+
+    // runs one benchmark and prints its results
+    private static void run(String name, Operation op) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) iteration(op);
+
+        double[] nanosPerOp = new double[ITERATIONS];
+        long totalOps = 0;
+        long startBytes = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long[] result = iteration(op);
+            nanosPerOp[i] = (double) result[0] / result[1];
+            totalOps += result[1];
+        }
+        long bytes = allocatedBytes() - startBytes;
+
+        String bytesPerOp = "n/a";
+        if (startBytes >= 0) {
+            bytesPerOp = String.format("%.1f", (double) bytes / totalOps);
+        }
+        StdOut.printf("%-36s %14.1f %12.1f %12s%n", name, StdStats.mean(nanosPerOp),
+                      StdStats.stddev(nanosPerOp), bytesPerOp);
+    }
+
+    // runs op repeatedly for ITERATION_NANOS, returning {nanoseconds, operations}
+    private static long[] iteration(Operation op) {
+        long total = 0;
+        long count = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            // run in batches so reading the clock doesn't dominate fast operations
+            for (int i = 0; i < 64; i++) total += op.run();
+            count += 64;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_NANOS);
+        sink += total;
+        return new long[] { elapsed, count };
+    }
+
+    // returns the bytes allocated by this thread so far, or -1 if not supported
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean sunBean =
+                (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported()) return -1;
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // scores guess against sol the way the original Buckets did (with an ST of
+    // letter counts and Strings), returning the pattern string's hash
+    private static long originalScore(String guess, String sol) {
+        ST<String, Integer> ltrFreq = new ST<String, Integer>();
+        String[] sLtrs = sol.split("");
+        for (int i = 0; i < sLtrs.length; i++) {
+            if (ltrFreq.contains(sLtrs[i])) {
+                ltrFreq.put(sLtrs[i], ltrFreq.get(sLtrs[i]) + 1);
+            }
+            else ltrFreq.put(sLtrs[i], 1);
+        }
+        char[] pattern = new char[sLtrs.length];
+        for (int i = 0; i < guess.length(); i++) {
+            if (sol.charAt(i) == guess.charAt(i)) {
+                pattern[i] = 'g';
+                String gLtr = guess.substring(i, i + 1);
+                ltrFreq.put(gLtr, ltrFreq.get(gLtr) - 1);
+            }
+        }
+        for (int i = 0; i < guess.length(); i++) {
+            if (pattern[i] == 0) {
+                String gLtr = guess.substring(i, i + 1);
+                if (sol.contains(gLtr) && ltrFreq.get(gLtr) > 0) {
+                    pattern[i] = 'y';
+                    ltrFreq.put(gLtr, ltrFreq.get(gLtr) - 1);
+                }
+                else pattern[i] = '-';
+            }
+        }
+        return new String(pattern).hashCode();
+    }
+
+    // runs the benchmarks
+    public static void main(String[] args) {
+        String filter = "";
+        if (args.length > 0) filter = args[0];
+
+        PatternTable table = PatternTable.load();
+        Dictionary guesses = table.guesses();
+
+        // the sets of Buckets.main: 2311, 254, 37 and 11 solutions
+        SolutionSet all = SolutionSet.all(table.solutionCount());
+        SolutionSet after1 = new Buckets("terns", all, table).getMostRemSols();
+        SolutionSet after2 = new Buckets("aphid", after1, table).getMostRemSols();
+        SolutionSet after3 = new Buckets("quack", after2, table).getMostRemSols();
+        int aphid = table.guessIndex("aphid");
+        int quack = table.guessIndex("quack");
+        int mambo = table.guessIndex("mambo");
+        int terns = table.guessIndex("terns");
+
+        // pairs of words to score, cycled through so branches aren't predictable
+        int pairs = 4096;
+        char[][] pairGuesses = new char[pairs][];
+        char[][] pairSols = new char[pairs][];
+        int[] pairGuessIds = new int[pairs];
+        int[] pairSolIds = new int[pairs];
+        for (int i = 0; i < pairs; i++) {
+            pairGuessIds[i] = StdRandom.uniformInt(table.guessCount());
+            pairSolIds[i] = StdRandom.uniformInt(table.solutionCount());
+            pairGuesses[i] = table.guess(pairGuessIds[i]).toCharArray();
+            pairSols[i] = table.solution(pairSolIds[i]).toCharArray();
+        }
+        Pattern scorer = new Pattern();
+        int[] next = new int[1];  // index of the next pair (or word) to use
+
+        // words to validate, half of them invalid
+        String[] words = new String[pairs];
+        for (int i = 0; i < pairs; i++) {
+            String word = table.guess(pairGuessIds[i]);
+            if (i % 2 == 0) word = word.substring(1) + "q";
+            words[i] = word;
+        }
+
+        // opening guesses of the games (all games continue the same way)
+        String[] openers = { "terns", "aesir", "audio", "crane", "slate", "pious" };
+        String[] rest = { "aphid", "quack", "mambo", "loyal", "offal", "vivid" };
+
+        Benchmarks bench = new Benchmarks();
+        bench.add("score (original String/ST)", () -> {
+            int i = next[0]++ & (pairs - 1);
+            return originalScore(table.guess(pairGuessIds[i]),
+                                 table.solution(pairSolIds[i]));
+        });
+        bench.add("score (Pattern)", () -> {
+            int i = next[0]++ & (pairs - 1);
+            return scorer.score(pairGuesses[i], pairSols[i]);
+        });
+        bench.add("score (PatternTable)", () -> {
+            int i = next[0]++ & (pairs - 1);
+            return table.get(pairGuessIds[i], pairSolIds[i]);
+        });
+        bench.add("Buckets 2311 solutions", () ->
+                new Buckets(terns, all, table).getLargestCode());
+        bench.add("Buckets 2311 solutions (parallel)", () ->
+                new Buckets(terns, all, table, true).getLargestCode());
+        bench.add("Buckets 254 solutions", () ->
+                new Buckets(aphid, after1, table).getLargestCode());
+        bench.add("Buckets 37 solutions", () ->
+                new Buckets(quack, after2, table).getLargestCode());
+        bench.add("Buckets 11 solutions", () ->
+                new Buckets(mambo, after3, table).getLargestCode());
+        bench.add("validate guess (Dictionary)", () -> {
+            int i = next[0]++ & (pairs - 1);
+            return guesses.id(words[i]);
+        });
+        bench.add("headless game (no cache hits)", () -> {
+            // a cache too small to hit, so every guess is partitioned
+            Game game = new Game(table, new BucketCache(table, 16), 8);
+            game.guess(openers[next[0]++ % openers.length]);
+            for (int i = 0; i < rest.length && !game.isOver(); i++) {
+                game.guess(rest[i]);
+            }
+            return game.remainingSolutions().size();
+        });
+
+        bench.runAll(filter);
+    }
+}
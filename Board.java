@@ -1,31 +1,85 @@
 /*******************************************************************************
  *
  *  Draws the Absurdle board (tiles and on-screen keyboard), permitting guesses
- *  of five letters each. Contains methods to update the board (tiles and keys)
- *  and detect user-input.
+ *  of four to eight letters each (five by default). Contains methods to update
+ *  the board (tiles and keys) and detect user-input. The on-screen keyboard is
+ *  drawn from a layout of rows of letters (QWERTY by default), with enter and
+ *  backspace at either end of the last row; tiles shrink to fit longer words.
+ *
+ *  Input comes from keyboard and mouse listeners on the StdDraw window, which
+ *  put each key typed or on-screen key clicked in a queue. Callers wait on the
+ *  queue (see nextKey) instead of polling StdDraw, so a waiting game uses no
+ *  CPU and gets each key as soon as it is pressed. StdDraw's own key listener
+ *  is removed, since its queue of keys typed would never be read and would
+ *  grow for as long as the board is up.
+ *
+ *  The geometry of every tile and key is computed once, with the fonts and
+ *  colors. Updating a tile, key or the message only records its new contents
+ *  and marks it dirty if they changed; show() then redraws only the dirty
+ *  parts and calls StdDraw.show() once (and not at all if nothing changed).
+ *  Clicks are matched to keys with a lookup grid instead of checking each key.
+ *
+ *  The time from each key being queued to the first show() after it is read
+ *  is recorded in Metrics (input to render latency).
  *
  ******************************************************************************/
 
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.Frame;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.swing.JFrame;
 
 public class Board {
 
-    private static final int MAX_LTRS = 5;  // max number of letters allowed per word
+    private static final int MIN_LTRS = 4;  // min number of letters allowed per word
+    private static final int MAX_LTRS = 8;  // max number of letters allowed per word
+    private static final int DEF_LTRS = 5;  // default number of letters per word
 
-    private static final int TILE_SIZE = 62;  // height, width of tile box
+    private static final int TILE_SIZE = 62;  // largest height, width of tile box
     private static final int PAD = 2; // amount of padding btw tiles/keys
+    private static final int KEY_WIDTH = 44;  // width of the keys box
+    private static final int KEY_HEIGHT = 58;  // height of the keys box
 
     private static final Font DEF_FONT = StdDraw.getFont();  // default StdDraw font
+    private static final int TILE_FONT_SIZE = 32;  // font size of TILE_SIZE tiles
     private static final String DEL_UNICODE = "\u232B";  // unicode for backspace key
+    private static final int INPUT_CAPACITY = 64;  // most keys waiting to be read
+
+    // colors of tiles and keys in each pattern
+    private static final Color GREEN = Color.GREEN.darker();
+    private static final Color YELLOW = Color.ORANGE;
+    private static final Color GREY = Color.DARK_GRAY;
+
+    // default on-screen keyboard layout, with rows of 10, 9, and 9 keys (alphabet,
+    // enter and backspace)
+    public static final String[] QWERTY = { "qwertyuiop", "asdfghjkl", "zxcvbnm" };
+
+    private final String[] keys;  // labels of the on-screen keys, row by row
+    private final int[] columns;  // number of keys in each row
+    private final int rows;  // number of rows of keys
 
-    private int canvasHeight;  // height of canvas
+    private final int maxLtrs;  // number of letters per word (tiles per row)
+    private final int tileSize;  // height, width of tile box
+    private final Font tileFont;  // font of the letters on tiles
+
+    private final int canvasHeight;  // height of canvas
     private final int canvasWidth;  // width of canvas
     private final int kbrdHeight;  // height of the keyboard region
-    private final double tileInd;  // indent to first column of tiles
 
     private final int maxGuesses; // maximum number of guesses allowed per game
 
+    // rows the win and lose sequences have shifted the tiles up by, so their
+    // first rows are off the top of smaller boards
+    private int rowShift;
+
     // helper rectangle datatype
     private class Rect {
         private double x;  // x-coordinate
@@ -53,11 +107,54 @@ public class Board {
         }
     }
 
-    // ST containing letters of keyboard and their positions on the canvas
-    private final ST<String, Rect> keys;
+    // keys of the on-screen keyboard (in the order of keys), their positions on
+    // the canvas and current colors
+    private final Rect[] keyRects;
+    private final Color[] keyBacks;
+    private final Color[] keyTexts;
+    private final boolean[] keyDirty;
+
+    // index in keys of each letter a to z (or -1 if it is not in the layout)
+    private final int[] letterKeys;
+
+    // index in keys of the key at each whole x-coordinate of each keyboard row
+    // (or -1 between keys), for matching clicks to keys
+    private final int[][] keyGrid;
+
+    // tiles by row and column, their positions on the canvas and current contents
+    private final Rect[][] tileRects;
+    private final String[][] tileTxts;
+    private final Color[][] tileBacks;
+    private final Color[][] tileTexts;
+    private final boolean[][] tileDirty;
+
+    // message above the keyboard, its position and whether it changed
+    private final Rect msgRect;
+    private String msg;
+    private boolean msgDirty;
+
+    private boolean dirty;  // whether anything needs to be redrawn
+
+    // keys typed or clicked and not read yet (filled by the window's listeners)
+    private final BlockingQueue<Character> input;
+
+    // time (System.nanoTime) each key was queued, in a ring twice the size of
+    // the queue so a time is never overwritten while its key is still queued
+    private final long[] inputTimes = new long[2 * INPUT_CAPACITY];
+    private int queuedAt;  // slot of the next key queued (event thread only)
+    private int takenAt;  // slot of the next key read (reading thread only)
+    private long keyTime;  // time the last key read was queued (0 once shown)
 
     // creates custom board of maxGuesses # of rows (maxGuesses can be at most 8)
+    // for five letter words, with a QWERTY keyboard
     public Board(int maxGuesses) {
+        this(maxGuesses, DEF_LTRS, QWERTY);
+    }
+
+    // creates custom board of maxGuesses # of rows (maxGuesses can be at most 8)
+    // for words of letters letters (4 to 8), with a keyboard of the given rows of
+    // letters (each letter a to z at most once)
+    public Board(int maxGuesses, int letters, String[] layout) {
 
         // limit maxGuesses to at most eight b/c board becomes larger than screen
         int GUESS_LIMIT = 8;
@@ -65,86 +162,188 @@ public class Board {
             throw new IllegalArgumentException("Maximum number of guesses can "
                                                        + "be at most eight.");
         }
+        if (letters < MIN_LTRS || letters > MAX_LTRS) {
+            throw new IllegalArgumentException("Words must have " + MIN_LTRS +
+                                                       " to " + MAX_LTRS +
+                                                       " letters.");
+        }
+        if (layout.length == 0) {
+            throw new IllegalArgumentException("Keyboard layout has no rows.");
+        }
         this.maxGuesses = maxGuesses;
+        this.maxLtrs = letters;
+
+        // keys row by row, with enter first and backspace last on the last row
+        rows = layout.length;
+        columns = new int[rows];
+        int keyCount = 2;
+        for (int row = 0; row < rows; row++) {
+            columns[row] = layout[row].length();
+            if (row == rows - 1) columns[row] += 2;
+            keyCount += layout[row].length();
+        }
+        keys = new String[keyCount];
+        letterKeys = new int[26];
+        Arrays.fill(letterKeys, -1);
+        int k = 0;  // current index in keys
+        for (int row = 0; row < rows; row++) {
+            if (row == rows - 1) keys[k++] = "enter";
+            for (int i = 0; i < layout[row].length(); i++) {
+                char ltr = layout[row].charAt(i);
+                if (ltr < 'a' || ltr > 'z' || letterKeys[ltr - 'a'] >= 0) {
+                    throw new IllegalArgumentException("Invalid keyboard letter: " +
+                                                               ltr);
+                }
+                letterKeys[ltr - 'a'] = k;
+                keys[k++] = String.valueOf(ltr);
+            }
+            if (row == rows - 1) keys[k++] = DEL_UNICODE;
+        }
+        int maxCols = 0;
+        for (int cols : columns) maxCols = Math.max(maxCols, cols);
 
-        int KEY_WIDTH = 44;  // width of the keys box
-        int KEY_HEIGHT = 58;  // height of the keys box
-
-        // on-screen keyboard has rows of 10, 9, and 9 (alphabet, enter and backspace)
-        int[] COLUMNS = { 10, 9, 9 };
-        int ROWS = 3;
+        kbrdHeight = (KEY_HEIGHT + PAD) * rows + PAD;
+        canvasWidth = (KEY_WIDTH + PAD) * maxCols + PAD;
 
-        kbrdHeight = (KEY_HEIGHT + PAD) * ROWS + PAD;
+        // shrink tiles (and their font) so longer words fit the keyboard's width
+        tileSize = Math.min(TILE_SIZE, (canvasWidth - PAD) / maxLtrs - PAD);
+        tileFont = new Font("Sans Serif", Font.BOLD,
+                            TILE_FONT_SIZE * tileSize / TILE_SIZE);
 
-        canvasHeight = kbrdHeight + (TILE_SIZE + PAD) * maxGuesses + PAD + TILE_SIZE
+        canvasHeight = kbrdHeight + (tileSize + PAD) * maxGuesses + PAD + tileSize
                 / 2;
-        canvasWidth = (KEY_WIDTH + PAD) * COLUMNS[0] + PAD;
 
-        tileInd = (canvasWidth - (TILE_SIZE + PAD) * MAX_LTRS - PAD) / 2.0;
+        double tileInd = (canvasWidth - (tileSize + PAD) * maxLtrs - PAD) / 2.0;
 
         StdDraw.setCanvasSize(canvasWidth, canvasHeight);
         StdDraw.setXscale(0, canvasWidth);
         StdDraw.setYscale(0, canvasHeight);
         StdDraw.enableDoubleBuffering();
 
-        String[] KEYS = {
-                "q", "w", "e", "r", "t", "y", "u", "i", "o", "p",
-                "a", "s", "d", "f", "g", "h", "j", "k", "l",
-                "enter", "z", "x", "c", "v", "b", "n", "m", DEL_UNICODE
-        };
-
-        keys = new ST<String, Rect>();
+        keyRects = new Rect[keys.length];
+        keyBacks = new Color[keys.length];
+        keyTexts = new Color[keys.length];
+        keyDirty = new boolean[keys.length];
+        keyGrid = new int[rows][canvasWidth + 1];
 
         // assign coordinates to keys to be in a staggered arrangement with padding
         // btw each key and where enter and delete keys are wider than alphabet keys
-        int ind = 0;  // current index in KEYS
-        for (int row = 0; row < ROWS; row++) {
+        int ind = 0;  // current index in keys
+        for (int row = 0; row < rows; row++) {
+            Arrays.fill(keyGrid[row], -1);
             double y = kbrdHeight - (KEY_HEIGHT / 2.0 + PAD) - (PAD + KEY_HEIGHT) *
                     row;
-            for (int col = 0; col < COLUMNS[row]; col++) {
 
-                double indent = 0;
-                if (row == 1 || row == 2) indent = KEY_WIDTH / 2.0;
+            // indent shorter rows by half a key per missing key
+            double indent = (maxCols - columns[row]) * KEY_WIDTH / 2.0;
+            for (int col = 0; col < columns[row]; col++) {
 
                 double x = indent + (KEY_WIDTH / 2.0 + PAD) + (PAD + KEY_WIDTH) * col;
 
                 // set enter, delete keys separately b/c different sizes than alpha
                 double width = KEY_WIDTH;
-                if (KEYS[ind].equals("enter")) {
+                if (keys[ind].equals("enter")) {
                     // using 4.0 and 1.5 to translate and scale the Rect as needed
                     x -= width / 4.0;
                     width *= 1.5;
                 }
-                else if (KEYS[ind].equals(DEL_UNICODE)) {  // delete key
+                else if (keys[ind].equals(DEL_UNICODE)) {  // delete key
                     x += width / 4.0;
                     width *= 1.5;
                 }
 
-                keys.put(KEYS[ind], new Rect(x, y, width, KEY_HEIGHT));
+                keyRects[ind] = new Rect(x, y, width, KEY_HEIGHT);
+                for (int gx = (int) Math.ceil(x - width / 2);
+                     gx <= x + width / 2 && gx <= canvasWidth; gx++) {
+                    keyGrid[row][gx] = ind;
+                }
                 ind++;
             }
         }
+
+        tileRects = new Rect[maxGuesses][maxLtrs];
+        tileTxts = new String[maxGuesses][maxLtrs];
+        tileBacks = new Color[maxGuesses][maxLtrs];
+        tileTexts = new Color[maxGuesses][maxLtrs];
+        tileDirty = new boolean[maxGuesses][maxLtrs];
+        for (int row = 0; row < maxGuesses; row++) {
+            double y = canvasHeight - (tileSize / 2.0 + PAD) - (PAD + tileSize) *
+                    row;
+            for (int col = 0; col < maxLtrs; col++) {
+                double x = tileInd + (tileSize / 2.0 + PAD) + (tileSize + PAD) * col;
+                tileRects[row][col] = new Rect(x, y, tileSize, tileSize);
+            }
+        }
+
+        msgRect = new Rect(canvasWidth / 2.0, kbrdHeight + tileSize / 4.0,
+                           canvasWidth, tileSize / 4.0);
+
+        input = new ArrayBlockingQueue<Character>(INPUT_CAPACITY);
+        listen();
+    }
+
+    // adds listeners to the StdDraw window that queue keys typed and on-screen
+    // keys clicked (StdDraw has no listener API, so the window is found among
+    // the open frames)
+    private void listen() {
+        JFrame window = null;
+        for (Frame frame : Frame.getFrames()) {
+            if (frame instanceof JFrame && frame.isVisible()) window = (JFrame) frame;
+        }
+        if (window == null) {
+            throw new IllegalStateException("No StdDraw window to listen to.");
+        }
+
+        // keys typed on the actual keyboard, which StdDraw would also keep in
+        // a queue of its own that nothing reads
+        for (KeyListener listener : window.getKeyListeners()) {
+            if (listener instanceof StdDraw) window.removeKeyListener(listener);
+        }
+        window.addKeyListener(new KeyAdapter() {
+            public void keyTyped(KeyEvent e) {
+                queue(e.getKeyChar());
+            }
+        });
+
+        // keys clicked on the on-screen keyboard (the canvas is drawn as the
+        // content pane, at one pixel per unit of the scale)
+        window.getContentPane().addMouseListener(new MouseAdapter() {
+            public void mousePressed(MouseEvent e) {
+                char key = keyAt(e.getX(), canvasHeight - e.getY());
+                if (key != 0) queue(key);
+            }
+        });
+    }
+
+    // queues key with the time it was queued (called on the event thread)
+    private void queue(char key) {
+        inputTimes[queuedAt] = System.nanoTime();
+        if (input.offer(key)) {  // drop keys if far behind
+            queuedAt = (queuedAt + 1) % inputTimes.length;
+        }
     }
 
     // returns the maximum # of letters per word (# of tiles per row)
     public int getMaxLetters() {
-        return MAX_LTRS;
+        return maxLtrs;
     }
 
     // draws the on-screen keyboard and tile board
     public void drawBoard() {
         // draw keyboard
-        for (String key : keys.keys()) {
-            drawRect(key, keys.get(key), StdDraw.LIGHT_GRAY, StdDraw.BLACK,
-                     DEF_FONT);
+        for (int i = 0; i < keys.length; i++) {
+            setKey(i, StdDraw.LIGHT_GRAY, StdDraw.BLACK);
+            keyDirty[i] = true;
         }
 
         // draw empty tile board (for guesses)
         for (int row = 0; row < maxGuesses; row++) {
-            for (int col = 0; col < MAX_LTRS; col++) {
+            for (int col = 0; col < maxLtrs; col++) {
                 addTile("", row, col);
+                tileDirty[row][col] = true;
             }
         }
+        dirty = true;
     }
 
     // draws a rectangle with text given txt, the region (Rect), background color
@@ -168,108 +367,165 @@ public class Board {
     // draws a tile with txt specified by the row (curGuess) and column (curLetter)
     public void addTile(String txt, int curGuess, int curLetter, Color backColor,
                         Color textColor) {
-        double y = canvasHeight - (TILE_SIZE / 2.0 + PAD) - (PAD + TILE_SIZE) *
-                curGuess;
-        double x = tileInd + (TILE_SIZE / 2.0 + PAD) + (TILE_SIZE + PAD) * curLetter;
-        int TILE_FONT_SIZE = 32;
-        drawRect(txt, new Rect(x, y, TILE_SIZE, TILE_SIZE), backColor,
-                 textColor, new Font("Sans Serif", Font.BOLD, TILE_FONT_SIZE));
-        StdDraw.square(x, y, TILE_SIZE / 2.0);  // draw border of tile
+        int row = curGuess - rowShift;
+        if (row < 0 || row >= maxGuesses) return;  // off the board
+
+        if (txt.equals(tileTxts[row][curLetter]) &&
+                backColor.equals(tileBacks[row][curLetter]) &&
+                textColor.equals(tileTexts[row][curLetter])) {
+            return;  // unchanged
+        }
+        tileTxts[row][curLetter] = txt;
+        tileBacks[row][curLetter] = backColor;
+        tileTexts[row][curLetter] = textColor;
+        tileDirty[row][curLetter] = true;
+        dirty = true;
+    }
+
+    // sets the colors of the key at index i in keys
+    private void setKey(int i, Color backColor, Color textColor) {
+        if (backColor.equals(keyBacks[i]) && textColor.equals(keyTexts[i])) return;
+        keyBacks[i] = backColor;
+        keyTexts[i] = textColor;
+        keyDirty[i] = true;
+        dirty = true;
     }
 
     // draws tiles of the specified row (curGuess), with letters in guess, according
     // to the color scheme specified by bucket
     public void updateBoard(String guess, String bucket, int curGuess) {
-        // convert bucket type to actual colors
-        String[] pat = bucket.split("");
-        Color[] colors = new Color[pat.length];
-        for (int i = 0; i < pat.length; i++) {
-            if (pat[i].equals("g")) colors[i] = Color.GREEN.darker();
-            else if (pat[i].equals("y")) colors[i] = Color.ORANGE;
-            else colors[i] = Color.DARK_GRAY;  // pat[i] == "-"
-        }
-
-        String[] ltrs = guess.split("");
+        for (int i = 0; i < maxLtrs; i++) {
+            // convert bucket type to actual colors
+            Color color = GREY;  // bucket.charAt(i) == '-'
+            if (bucket.charAt(i) == 'g') color = GREEN;
+            else if (bucket.charAt(i) == 'y') color = YELLOW;
 
-        for (int i = 0; i < MAX_LTRS; i++) {
             // update tiles
-            addTile(ltrs[i], curGuess, i, colors[i], StdDraw.WHITE);
+            char ltr = guess.charAt(i);
+            addTile(String.valueOf(ltr), curGuess, i, color, StdDraw.WHITE);
 
             // update keyboard if characters in ltrs belong to the on-screen keyboard
-            if (keys.contains(ltrs[i])) {
-                drawRect(ltrs[i], keys.get(ltrs[i]), colors[i], StdDraw.WHITE,
-                         DEF_FONT);
+            if (ltr >= 'a' && ltr <= 'z' && letterKeys[ltr - 'a'] >= 0) {
+                setKey(letterKeys[ltr - 'a'], color, StdDraw.WHITE);
             }
         }
     }
 
-    // displays a message txt, centered at 1/4 TILE_SIZE above the on-screen keyboard
+    // displays a message txt, centered at 1/4 tileSize above the on-screen keyboard
     public void throwMessage(String txt) {
-        double x = canvasWidth / 2.0;
-        double y = kbrdHeight + TILE_SIZE / 4.0;
-        drawRect(txt, new Rect(x, y, canvasWidth, TILE_SIZE / 4.0),
-                 StdDraw.WHITE, StdDraw.BLACK, DEF_FONT);
+        if (txt.equals(msg)) return;
+        msg = txt;
+        msgDirty = true;
+        dirty = true;
+    }
+
+    // redraws the tiles, keys and message that changed since the last call and
+    // shows them (does nothing if nothing changed)
+    public void show() {
+        if (!dirty) {
+            recordInput();
+            return;
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            if (!keyDirty[i]) continue;
+            drawRect(keys[i], keyRects[i], keyBacks[i], keyTexts[i], DEF_FONT);
+            keyDirty[i] = false;
+        }
+
+        for (int row = 0; row < maxGuesses; row++) {
+            for (int col = 0; col < maxLtrs; col++) {
+                if (!tileDirty[row][col]) continue;
+                Rect rect = tileRects[row][col];
+                drawRect(tileTxts[row][col], rect, tileBacks[row][col],
+                         tileTexts[row][col], tileFont);
+                StdDraw.square(rect.x, rect.y, tileSize / 2.0);  // draw border of tile
+                tileDirty[row][col] = false;
+            }
+        }
+
+        if (msgDirty) drawRect(msg, msgRect, StdDraw.WHITE, StdDraw.BLACK, DEF_FONT);
+        msgDirty = false;
+
+        StdDraw.show();
+        dirty = false;
+        recordInput();
+    }
+
+    // records the time from the last key read being queued to now, once
+    private void recordInput() {
+        if (keyTime == 0) return;
+        Metrics.INPUT_TO_RENDER_NANOS.record(System.nanoTime() - keyTime);
+        keyTime = 0;
     }
 
     // updates the tiles on the board to display the lose message
     public void loseSeq(String sol) {
-        if (sol.length() != MAX_LTRS) {
+        if (sol.length() != maxLtrs) {
             throw new IllegalArgumentException("Invalid solution given.");
         }
         String[] MSG = {
-                "     ", "     ", "     ", "the  ", "word ", "was  ",
-                "     ", sol
+                "", "", "", "the", "word", "was", "", sol
         };
         // to accommodate for boards where maxGuesses < MOST_GUESSES
-        canvasHeight += (TILE_SIZE + PAD) * (MSG.length - maxGuesses);
-        rowUpdater(MSG, "-----");
+        rowShift += MSG.length - maxGuesses;
+        rowUpdater(MSG, false, "-".repeat(maxLtrs));
     }
 
     // updates the tiles on the board to display the win message
     public void winSeq() {
         String[] MSG = {
-                "     ", " you ", "     ", " win ", "     ", "     ",
-                "     ", "     "
+                "", "you", "", "win", "", "", "", ""
         };
-        canvasHeight += (TILE_SIZE + PAD) * (MSG.length - maxGuesses);
-        rowUpdater(MSG, "ggggg");
+        rowShift += MSG.length - maxGuesses;
+        rowUpdater(MSG, true, "g".repeat(maxLtrs));
     }
 
-    // updates the rows of tiles on the board according to words and makes each row
-    // match the bucket color scheme
-    private void rowUpdater(String[] words, String bucket) {
+    // updates the rows of tiles on the board according to words (padded with
+    // spaces to fill the row, centered if centre is true, and left-aligned
+    // otherwise) and makes each row match the bucket color scheme
+    private void rowUpdater(String[] words, boolean centre, String bucket) {
         for (int i = 0; i < words.length; i++) {
-            updateBoard(words[i], bucket, i);
+            int left = 0;
+            if (centre) left = (maxLtrs - words[i].length()) / 2;
+            String row = " ".repeat(left) + words[i] +
+                    " ".repeat(maxLtrs - words[i].length() - left);
+            updateBoard(row, bucket, i);
         }
     }
 
-    // returns char of user typed key on actual keyboard
-    public char nextKeyTyped() {
-        if (StdDraw.hasNextKeyTyped()) {
-            char typedKey = StdDraw.nextKeyTyped();
-            return typedKey;
+    // waits for the user to type a key on the actual keyboard or click one on
+    // the on-screen keyboard and returns its char (10 for enter, 8 for
+    // backspace), or 0 if the thread is interrupted while waiting
+    public char nextKey() {
+        try {
+            char key = input.take();
+            keyTime = inputTimes[takenAt];
+            takenAt = (takenAt + 1) % inputTimes.length;
+            return key;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;  // char equivalent of null
         }
-        return 0;
     }
 
-    // returns char of user clicked key on the on-screen keyboard
-    public char nextKeyClicked() {
-        if (!StdDraw.isMousePressed()) return 0;  // char equivalent of null
-
-        double y = StdDraw.mouseY();
-        if (y > kbrdHeight - PAD || y < PAD) return 0;
-
-        double x = StdDraw.mouseX();
-
-        for (String key : keys.keys()) {
-            if (keys.get(key).inRect(x, y)) {
-                // convert string to char so same as nextKeyTyped
-                if (key.equals("enter")) return 10;  // char of enter key
-                else if (key.equals(DEL_UNICODE)) return 8;  // char of backspace
-                return key.charAt(0);
-            }
-        }
-        return 0;
+    // returns char of the on-screen key at x, y (or 0 if there is none)
+    private char keyAt(double x, double y) {
+        if (y > kbrdHeight - PAD || y < PAD) return 0;  // char equivalent of null
+        if (x < 0 || x > canvasWidth) return 0;
+
+        // rows are KEY_HEIGHT + PAD apart from the top of the keyboard, and
+        // each row's keys are looked up by x-coordinate
+        int row = (int) ((kbrdHeight - PAD - y) / (KEY_HEIGHT + PAD));
+        if (row >= rows) return 0;
+        int ind = keyGrid[row][(int) Math.round(x)];
+        if (ind < 0 || !keyRects[ind].inRect(x, y)) return 0;
+
+        // convert string to char so same as keys typed
+        if (keys[ind].equals("enter")) return 10;  // char of enter key
+        else if (keys[ind].equals(DEL_UNICODE)) return 8;  // char of backspace
+        return keys[ind].charAt(0);
     }
 
     // tests all instance methods to make sure they're working as expected
@@ -281,7 +537,7 @@ public class Board {
         for (int i = 0; i < MOST_GUSSES + 1; i++) {
             Board board = new Board(i);
             board.drawBoard();
-            StdDraw.show();
+            board.show();
             StdDraw.pause(1000);
         }
 
@@ -291,31 +547,31 @@ public class Board {
         Board board1 = new Board(3);
         board1.drawBoard();
         board1.addTile("h", 0, 2);
-        StdDraw.show();
+        board1.show();
         StdDraw.pause(1000);
 
         // expect the first row of tiles to spell WEARY
         // E should be yellow, A should be green, the rest should be grey
         // the E and A on the keyboard should also be yellow and green
         board1.updateBoard("weary", "-yg--", 0);
-        StdDraw.show();
+        board1.show();
         StdDraw.pause(1000);
 
         // expect a message to pop up above the on-screen keyboard saying
         // "MAX LETTERS = 5"
         board1.throwMessage("Max Letters = " + board1.getMaxLetters());
-        StdDraw.show();
+        board1.show();
         StdDraw.pause(1000);
 
         // expect the message above the on-screen keyboard to disappear
         board1.throwMessage("");
-        StdDraw.show();
+        board1.show();
         StdDraw.pause(1000);
 
         // expect a short lose sequence to appear in grey tiles, saying the word
         // was weary, expect keys on the keyboard to become grey
         board1.loseSeq("wearY");
-        StdDraw.show();
+        board1.show();
         StdDraw.pause(1000);
 
         // expect a longer lose sequence to appear in grey tiles on an 8 row board,
@@ -323,13 +579,39 @@ public class Board {
         Board board2 = new Board(8);
         board2.drawBoard();
         board2.loseSeq("lucid");
-        StdDraw.show();
+        board2.show();
         StdDraw.pause(1000);
 
         // expect a win sequence to show up in green tiles on an 8 row board,
         // expect keys on the keyboard to become green
         board2.winSeq();
-        StdDraw.show();
+        board2.show();
+        StdDraw.pause(1000);
+
+        // expect the centre of every key to be matched to that key, and the gap
+        // to the right of every key to match no key
+        boolean allMatch = true;
+        for (int i = 0; i < board2.keys.length; i++) {
+            char expected = board2.keys[i].charAt(0);
+            if (board2.keys[i].equals("enter")) expected = 10;
+            else if (board2.keys[i].equals(DEL_UNICODE)) expected = 8;
+            Rect rect = board2.keyRects[i];
+            if (board2.keyAt(rect.x, rect.y) != expected) allMatch = false;
+            if (board2.keyAt(rect.x + rect.width / 2 + PAD / 2.0, rect.y) != 0) {
+                allMatch = false;
+            }
+        }
+        StdOut.println("Every key matched (expecting true): " + allMatch);
+
+        // expect an 8 row board of seven letter words with smaller tiles and an
+        // alphabetical keyboard, ending in a lose sequence saying the word was
+        // example
+        String[] abc = { "abcdefghi", "jklmnopqr", "stuvwxyz" };
+        Board board3 = new Board(8, 7, abc);
+        board3.drawBoard();
+        board3.updateBoard("balance", "-gy--yg", 0);
+        board3.loseSeq("example");
+        board3.show();
         StdDraw.pause(1000);
 
 
@@ -338,20 +620,15 @@ public class Board {
         // enter should output "enter", backspace should output "backspace", the
         // letters should output their corresponding characters
         while (true) {
-            char nextIn = board2.nextKeyTyped();
-            // 0 is null char, (if no key is typed)
-            if (nextIn == 0) nextIn = board2.nextKeyClicked();
+            char nextIn = board2.nextKey();  // waits for a key
 
-            if (nextIn != 0) {
-                if (nextIn == 10) {
-                    StdOut.println("enter");
-                }
-                else if (nextIn == 8) {
-                    StdOut.println("backspace");
-                }
-                else StdOut.println(nextIn);
+            if (nextIn == 10) {
+                StdOut.println("enter");
+            }
+            else if (nextIn == 8) {
+                StdOut.println("backspace");
             }
-            StdDraw.pause(100);
+            else StdOut.println(nextIn);
         }
 
 
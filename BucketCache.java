@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Bounded cache of Buckets results, keyed by a guess and the set of remaining
+ * solutions it was made against. Different guess sequences often leave the
+ * same set (especially after common openers), so repeated states are answered
+ * from memory instead of partitioning the set again.
+ *
+ * The cache is split into segments by a hash of the key, each an LRU map
+ * guarded by its own lock, so threads rarely wait on each other. Each segment
+ * evicts its least recently used entry once it holds its share of the
+ * capacity. Results are computed outside the lock, so two threads missing on
+ * the same key at the same time may both compute it (with the same result).
+ ******************************************************************************/
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BucketCache {
+
+    private static final int SEGMENTS = 16;  // number of separately locked maps
+
+    private final PatternTable table;  // table to compute missing results with
+    private final Segment[] segments;  // LRU maps, chosen by key hash
+
+    private final LongAdder hits = new LongAdder();  // lookups found in the cache
+    private final LongAdder misses = new LongAdder();  // lookups computed
+    private final LongAdder evictions = new LongAdder();  // entries evicted
+
+    // a guess and the set it was made against
+    private static class Key {
+        private final int guess;  // index of the guess
+        private final SolutionSet remSols;  // remaining solutions (never modified)
+        private final long fingerprint;  // fingerprint of remSols
+        private final long hash;  // fingerprint mixed with the guess
+
+        // creates a key for guess against remSols
+        public Key(int guess, SolutionSet remSols) {
+            this.guess = guess;
+            this.remSols = remSols;
+            this.fingerprint = remSols.fingerprint();
+            long mixed = (fingerprint + guess) * 0x9E3779B97F4A7C15L;
+            this.hash = mixed ^ (mixed >>> 29);
+        }
+
+        // checks if that is a key for the same guess and solutions
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key that = (Key) other;
+            return guess == that.guess && fingerprint == that.fingerprint
+                    && remSols.equals(that.remSols);
+        }
+
+        // returns a hash code of the guess and solutions
+        public int hashCode() {
+            return (int) hash;
+        }
+    }
+
+    // LRU map of up to capacity entries
+    private class Segment extends LinkedHashMap<Key, Buckets> {
+        private static final long serialVersionUID = 1L;  // never serialized
+        private final int capacity;  // most entries kept in this segment
+
+        // creates an empty segment of at most capacity entries
+        public Segment(int capacity) {
+            super(16, 0.75f, true);  // iterate in access order
+            this.capacity = capacity;
+        }
+
+        // evicts the least recently used entry once the segment is too large
+        protected boolean removeEldestEntry(Map.Entry<Key, Buckets> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    // creates an empty cache of at most capacity results for the words of table
+    public BucketCache(PatternTable table, int capacity) {
+        if (capacity < SEGMENTS) {
+            throw new IllegalArgumentException("Capacity must be at least " +
+                                                       SEGMENTS + ".");
+        }
+        this.table = table;
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(capacity / SEGMENTS);
+        }
+    }
+
+    // returns the Buckets of guess (any case) against remSols, computing it if
+    // it is not cached (guesses that are not valid guesses are never cached)
+    public Buckets get(String guess, SolutionSet remSols) {
+        int ind = table.guessIndex(guess.toLowerCase());
+        if (ind < 0) return new Buckets(guess, remSols, table);
+        return get(ind, remSols);
+    }
+
+    // returns the Buckets of the guess at index guess against remSols, computing
+    // it if it is not cached
+    public Buckets get(int guess, SolutionSet remSols) {
+        Key key = new Key(guess, remSols);
+        Segment segment = segments[(int) (key.hash >>> 60) % SEGMENTS];
+
+        Buckets buckets;
+        synchronized (segment) {
+            buckets = segment.get(key);
+        }
+        if (buckets != null) {
+            hits.increment();
+            return buckets;
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        buckets = new Buckets(guess, remSols, table);
+        Metrics.BUCKETS_NANOS.record(System.nanoTime() - start);
+        synchronized (segment) {
+            segment.put(key, buckets);
+        }
+        return buckets;
+    }
+
+    // returns the number of results in the cache
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                total += segment.size();
+            }
+        }
+        return total;
+    }
+
+    // returns the number of lookups answered from the cache
+    public long hits() {
+        return hits.sum();
+    }
+
+    // returns the number of lookups that had to be computed
+    public long misses() {
+        return misses.sum();
+    }
+
+    // returns the number of results evicted to stay within capacity
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    // returns the fraction of lookups answered from the cache (0 if none)
+    public double hitRate() {
+        long hit = hits();
+        long total = hit + misses();
+        if (total == 0) return 0;
+        return (double) hit / total;
+    }
+
+    // returns the cache statistics, e.g. "size 10, hits 5, misses 10, ..."
+    public String toString() {
+        return String.format("size %d, hits %d, misses %d, evictions %d, " +
+                                     "hit rate %.3f", size(), hits(), misses(),
+                             evictions(), hitRate());
+    }
+
+    // tests all methods to make sure they're working as expected
+    public static void main(String[] args) {
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        SolutionSet remSols = SolutionSet.all(table.solutionCount());
+        BucketCache cache = new BucketCache(table, 64);
+
+        // expect the first lookup to miss and the second to hit with the same
+        // result, even for a different (but equal) set
+        Buckets first = cache.get("terns", remSols);
+        Buckets second = cache.get("TERNS", SolutionSet.all(table.solutionCount()));
+        StdOut.println("Same result (expecting true): " + (first == second));
+        StdOut.println("Hits, misses (expecting 1, 1): " + cache.hits() + ", " +
+                               cache.misses());
+
+        // expect a different guess on the same set to miss
+        cache.get("aphid", remSols);
+        StdOut.println("Misses (expecting 2): " + cache.misses());
+
+        // expect invalid guesses to be computed but never cached
+        Buckets empty = cache.get("", first.getMostRemSols());
+        StdOut.println("Pattern of \"\" (expecting \"\"): \"" +
+                               empty.getLargestBucket() + "\"");
+        StdOut.println("Size (expecting 2): " + cache.size());
+
+        // expect the cache to stay within its capacity of 64 (4 per segment)
+        for (int g = 0; g < 1000; g++) cache.get(g, first.getMostRemSols());
+        StdOut.println("Size at most 64 (expecting true): " + (cache.size() <= 64));
+        StdOut.println("Evictions (expecting " + (1002 - cache.size()) + "): " +
+                               cache.evictions());
+        StdOut.println(cache);
+    }
+}
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Keeps the bucket histogram (solutions per pattern code) of every tracked
+ * guess on a set of solutions up to date as the set shrinks, so the worst case
+ * of every guess (the size of its largest bucket) can be read at any time
+ * without counting buckets again (see Hints.best(BucketHistograms, int)). It
+ * is kept by the caller following a game, not by Game or the server's
+ * sessions, since it is too large to keep for every game at once.
+ *
+ * Each guess in a game only removes solutions, so an update either subtracts
+ * the removed solutions from every histogram or, when fewer solutions are
+ * left than were removed, clears the histograms and counts the ones left. An
+ * update costs the number of tracked guesses times the smaller side, instead
+ * of times every solution left: buckets are cleared through the solutions
+ * that were counted, and the largest bucket of a guess is only looked for
+ * again (through the solutions left) when one of its largest buckets lost a
+ * solution, so rows of codes are only scanned while there are more solutions
+ * than codes.
+ *
+ * Histograms are kept in one int array of tracked guesses x pattern codes,
+ * about 12 MB for all 12972 five letter guesses (track fewer guesses for
+ * longer words, which have 3^length codes). Large updates are applied to the
+ * guesses in parallel. A BucketHistograms is not safe to update from more than
+ * one thread at once.
+ ******************************************************************************/
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class BucketHistograms {
+
+    // updates touching at least this many (guess, solution) pairs are applied in
+    // parallel, smaller ones are faster in a single thread
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private final PatternTable table;  // patterns of every guess vs solution
+    private final int codes;  // number of possible pattern codes
+    private final int[] guesses;  // indices of the tracked guesses
+    private final int[] bucketFreq;  // solutions per code, codes per guess
+    private final int[] highest;  // size of the largest bucket of each guess
+    private SolutionSet sols;  // solutions counted in the histograms
+
+    // tracks every valid guess of table on sols
+    public BucketHistograms(PatternTable table, SolutionSet sols) {
+        this(table, IntStream.range(0, table.guessCount()).toArray(), sols);
+    }
+
+    // tracks the guesses at the given indices of table on sols
+    public BucketHistograms(PatternTable table, int[] guesses, SolutionSet sols) {
+        this.table = table;
+        this.codes = Pattern.count(table.wordLength());
+        this.guesses = guesses.clone();
+        this.bucketFreq = new int[Math.multiplyExact(guesses.length, codes)];
+        this.highest = new int[guesses.length];
+        this.sols = sols;
+        apply(new int[0], null, members(sols));
+    }
+
+    // returns the number of tracked guesses
+    public int size() {
+        return guesses.length;
+    }
+
+    // returns the index in table of the ith tracked guess
+    public int guess(int i) {
+        return guesses[i];
+    }
+
+    // returns the solutions counted in the histograms
+    public SolutionSet solutions() {
+        return sols;
+    }
+
+    // returns the number of solutions the ith tracked guess gives pattern code
+    public int frequency(int i, int code) {
+        return bucketFreq[i * codes + code];
+    }
+
+    // returns the most solutions the adversary could leave after the ith
+    // tracked guess (the size of its largest bucket)
+    public int worstCase(int i) {
+        return highest[i];
+    }
+
+    // returns the pattern code of the largest bucket of the ith tracked guess,
+    // with ties broken like Buckets (-1 if there are no solutions)
+    public int largestCode(int i) {
+        return Buckets.largest(Arrays.copyOfRange(bucketFreq, i * codes,
+                                                  (i + 1) * codes));
+    }
+
+    // updates the histograms to count only remaining, which must be a subset
+    // of the solutions counted so far
+    public void update(SolutionSet remaining) {
+        SolutionSet removed = sols.minus(remaining);
+        if (remaining.universe() != sols.universe() ||
+                remaining.size() != sols.size() - removed.size()) {
+            throw new IllegalArgumentException("Solutions can only be removed.");
+        }
+        SolutionSet old = sols;
+        sols = remaining;
+        if (removed.size() == 0) return;
+
+        // subtract what was removed, or count what is left, whichever is less
+        if (removed.size() <= remaining.size()) {
+            apply(null, members(removed), members(remaining));
+        }
+        else apply(members(old), null, members(remaining));
+    }
+
+    // brings every histogram from counting the solutions old to counting kept,
+    // by subtracting removed if it is not null, and otherwise by clearing the
+    // buckets of old and counting kept; rows of codes are only scanned when
+    // there are more solutions than codes
+    private void apply(int[] old, int[] removed, int[] kept) {
+        int[] changed = removed != null ? removed : kept;
+        IntStream tracked = IntStream.range(0, guesses.length);
+        if ((long) guesses.length * changed.length >= PARALLEL_THRESHOLD) {
+            tracked = tracked.parallel();
+        }
+        tracked.forEach(i -> {
+            int g = guesses[i];
+            int row = i * codes;
+            int most = 0;
+            if (removed != null) {
+                // the largest bucket can only have shrunk if one of them lost
+                // a solution
+                boolean lostHighest = false;
+                for (int s : removed) {
+                    if (bucketFreq[row + table.get(g, s)]-- == highest[i]) {
+                        lostHighest = true;
+                    }
+                }
+                if (!lostHighest) return;
+                if (kept.length < codes) {
+                    for (int s : kept) {
+                        most = Math.max(most, bucketFreq[row + table.get(g, s)]);
+                    }
+                }
+                else {
+                    for (int c = row; c < row + codes; c++) {
+                        most = Math.max(most, bucketFreq[c]);
+                    }
+                }
+            }
+            else {
+                if (old.length < codes) {
+                    for (int s : old) bucketFreq[row + table.get(g, s)] = 0;
+                }
+                else Arrays.fill(bucketFreq, row, row + codes, 0);
+                for (int s : kept) {
+                    most = Math.max(most, ++bucketFreq[row + table.get(g, s)]);
+                }
+            }
+            highest[i] = most;
+        });
+    }
+
+    // returns the indices of the solutions in set
+    private static int[] members(SolutionSet set) {
+        int[] members = new int[set.size()];
+        int i = 0;
+        for (int s = set.next(0); s >= 0; s = set.next(s + 1)) members[i++] = s;
+        return members;
+    }
+
+    // returns the milliseconds taken to run task
+    private static double time(Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    // returns the worst case of every guess on sols, counted from scratch
+    private static int[] worstCases(PatternTable table, SolutionSet sols) {
+        int[] members = members(sols);
+        int[] worst = new int[table.guessCount()];
+        int[] bucketFreq = new int[Pattern.count(table.wordLength())];
+        for (int g = 0; g < worst.length; g++) {
+            for (int s : members) {
+                worst[g] = Math.max(worst[g], ++bucketFreq[table.get(g, s)]);
+            }
+            for (int s : members) bucketFreq[table.get(g, s)] = 0;
+        }
+        return worst;
+    }
+
+    // tests all methods to make sure they're working as expected, and compares
+    // updating to counting every histogram again
+    public static void main(String[] args) {
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        SolutionSet all = SolutionSet.all(table.solutionCount());
+        Stopwatch timer = new Stopwatch();
+        BucketHistograms histograms = new BucketHistograms(table, all);
+        StdOut.println("Counted " + histograms.size() + " histograms in " +
+                               timer.elapsedTime() + " seconds");
+
+        // expect the histograms to match Buckets for every guess after every
+        // move
+        String[] line = { "terns", "aphid", "quack", "mambo", "loyal" };
+        SolutionSet[] left = new SolutionSet[line.length];
+        SolutionSet remSols = all;
+        boolean allMatch = true;
+        for (int move = 0; move < line.length; move++) {
+            remSols = new Buckets(line[move], remSols, table).getMostRemSols();
+            left[move] = remSols;
+            histograms.update(remSols);
+            for (int i = 0; i < histograms.size(); i++) {
+                Buckets buckets = new Buckets(histograms.guess(i), remSols, table);
+                if (histograms.worstCase(i) != buckets.getMostRemSols().size() ||
+                        histograms.largestCode(i) != buckets.getLargestCode()) {
+                    allMatch = false;
+                }
+            }
+        }
+        StdOut.println("Histograms match Buckets after every move (expecting " +
+                               "true): " + allMatch);
+
+        // time updating after each move against counting the worst case of
+        // every guess from scratch
+        for (int round = 0; round < 3; round++) {
+            BucketHistograms timed = new BucketHistograms(table, all);
+            StringBuilder times = new StringBuilder("Moves (updated/counted ms):");
+            for (SolutionSet after : left) {
+                times.append(String.format(" %d %.1f/%.1f", after.size(),
+                                           time(() -> timed.update(after)),
+                                           time(() -> worstCases(table, after))));
+            }
+            StdOut.println(times);
+        }
+
+        // expect the same when a few solutions are removed at a time (e.g. by a
+        // kinder adversary), where updating touches far less than counting
+        SolutionSet shrinking = all;
+        BucketHistograms slow = new BucketHistograms(table, all);
+        boolean slowMatch = true;
+        StringBuilder times = new StringBuilder("Removing 1/16 at a time " +
+                                                        "(updated/counted ms):");
+        for (int step = 0; step < 8; step++) {
+            SolutionSet next = new SolutionSet(all.universe());
+            for (int s = shrinking.next(0); s >= 0; s = shrinking.next(s + 1)) {
+                if (StdRandom.uniformInt(16) > 0) next.add(s);
+            }
+            SolutionSet after = next;
+            times.append(String.format(" %d %.1f/%.1f", after.size(),
+                                       time(() -> slow.update(after)),
+                                       time(() -> worstCases(table, after))));
+            int[] expected = worstCases(table, after);
+            for (int i = 0; i < slow.size(); i++) {
+                if (slow.worstCase(i) != expected[i]) slowMatch = false;
+            }
+            shrinking = after;
+        }
+        StdOut.println(times);
+        StdOut.println("Histograms match counting after every step (expecting " +
+                               "true): " + slowMatch);
+
+        StdOut.println("Worst case of terns (expecting 1): " +
+                               histograms.worstCase(table.guessIndex("terns")));
+
+        // expect a few tracked guesses to be kept up to date the same way
+        int[] few = { table.guessIndex("terns"), table.guessIndex("loyal") };
+        BucketHistograms tracked = new BucketHistograms(table, few, all);
+        tracked.update(new Buckets("terns", all, table).getMostRemSols());
+        StdOut.println("Worst case of loyal after terns (expecting " +
+                               new Buckets("loyal", tracked.solutions(), table)
+                                       .getMostRemSols().size() + "): " +
+                               tracked.worstCase(1));
+        StdOut.println("Solutions with pattern ----- for terns (expecting 254): " +
+                               tracked.frequency(0, 0));
+
+        // expect adding solutions back to be rejected
+        try {
+            tracked.update(all);
+            StdOut.println("Added solutions back (expecting an exception)");
+        }
+        catch (IllegalArgumentException e) {
+            StdOut.println("Adding solutions back rejected (expecting true): true");
+        }
+    }
+}
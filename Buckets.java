@@ -1,7 +1,7 @@
 /*******************************************************************************
- * Given a guess and list of solutions, Buckets determines the "bucket," or
+ * Given a guess and set of solutions, Buckets determines the "bucket," or
  * color pattern response, associated with the most solutions, and stores both
- * the bucket and list of potential solutions.
+ * the bucket and set of potential solutions.
  *
  * The bucket is a string of five characters composed of g's, y's, and -'s.
  *
@@ -15,131 +15,244 @@
  *
  * If there are multiple buckets with the same "most" solutions, the bucket with
  * the least greens, then least yellows is designated the largest bucket.
+ *
+ * Solutions are given as indices into the valid solutions (see SolutionSet).
+ * Patterns are looked up as base-3 codes in a PatternTable (or scored against
+ * every solution at once by the table's ColumnScorer for guesses that are not
+ * in the table) and counted in an array.
+ * Only the largest bucket is converted back into its string.
  ******************************************************************************/
 
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 public class Buckets {
 
+    // sets with at least this many solutions are partitioned in parallel (when
+    // asked to), smaller sets are faster to partition in a single thread
+    public static final int PARALLEL_THRESHOLD = 1024;
+
+    // number of longs of the solution bitset handled by each parallel task
+    private static final int LEAF_WORDS = 8;
+
+    // pattern code (see Pattern) of the largest bucket
+    private final int largestCode;
+
     // string of the pattern of the largest bucket
     private final String largestBucket;
 
-    // LinkedList containing remaining solutions of the largest bucket
-    private final LinkedList<String> mostRemSols;
+    // set containing remaining solutions of the largest bucket
+    private final SolutionSet mostRemSols;
 
-    // finds the largest bucket given a guess and list of possible solutions
-    public Buckets(String guess, LinkedList<String> remSols) {
+    // finds the largest bucket given a guess and set of possible solutions, with
+    // patterns looked up in table (or scored if guess is not a valid guess)
+    public Buckets(String guess, SolutionSet remSols, PatternTable table) {
+        // b/c solutions are lowercase Strings
+        this(guess.toLowerCase(), table.guessIndex(guess.toLowerCase()), remSols,
+             table, false);
+    }
 
-        ST<String, Integer> BUCKET_FREQ = new ST<String, Integer>();
-        ST<String, LinkedList<String>> BUCKET_SOLS = new ST<String,
-                LinkedList<String>>();
+    // finds the largest bucket given the index of a valid guess and set of
+    // possible solutions, with patterns looked up in table
+    public Buckets(int guess, SolutionSet remSols, PatternTable table) {
+        this(table.guess(guess), guess, remSols, table, false);
+    }
 
-        String lwrGuess = guess.toLowerCase();  // b/c solutions are lowercase Strings
+    // finds the largest bucket given the index of a valid guess and set of
+    // possible solutions, splitting sets of at least PARALLEL_THRESHOLD solutions
+    // across the common ForkJoinPool if parallel is true
+    public Buckets(int guess, SolutionSet remSols, PatternTable table,
+                   boolean parallel) {
+        this(table.guess(guess), guess, remSols, table, parallel);
+    }
 
-        for (String sol : remSols) {
+    // finds the largest bucket of guess (at index guessInd in table, or -1 if it
+    // is not in the table)
+    private Buckets(String guess, int guessInd, SolutionSet remSols,
+                    PatternTable table, boolean parallel) {
 
-            // create ST to store total occurrences of letters in sol to ensure # of
-            // yellows/greens match those that are in sol
-            ST<String, Integer> ltrFreq = new ST<String, Integer>();
+        if (parallel && guessInd >= 0 && remSols.size() >= PARALLEL_THRESHOLD) {
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            int words = (remSols.universe() + Long.SIZE - 1) / Long.SIZE;
 
-            String[] sLtrs = sol.split("");
-            for (int i = 0; i < sLtrs.length; i++) {
-                if (ltrFreq.contains(sLtrs[i])) {
-                    ltrFreq.put(sLtrs[i], ltrFreq.get(sLtrs[i]) + 1);
-                }
-                else ltrFreq.put(sLtrs[i], 1);
-            }
+            int[] bucketFreq = pool.invoke(new CountTask(guessInd, remSols, table,
+                                                         0, words));
+            int mostBucket = largest(bucketFreq);
 
-            // detect pattern associated w/ potential solution sol
-            char[] pattern = new char[sLtrs.length];
+            long[] mostBits = new long[words];
+            pool.invoke(new CollectTask(guessInd, remSols, table, 0, words,
+                                        mostBucket, mostBits));
 
-            // check correct position matches first b/c green takes priority
-            for (int i = 0; i < lwrGuess.length(); i++) {
-                if (sol.charAt(i) == lwrGuess.charAt(i)) {
-                    pattern[i] = 'g';
+            this.largestCode = mostBucket;
+            this.largestBucket = Pattern.toString(mostBucket, guess.length());
+            this.mostRemSols = SolutionSet.fromBits(remSols.universe(), mostBits);
+            return;
+        }
 
-                    // decrement number of times letter has left to appear in sol
-                    String gLtr = lwrGuess.substring(i, i + 1).toLowerCase();
-                    ltrFreq.put(gLtr, ltrFreq.get(gLtr) - 1);
-                }
-            }
-            // check matches in incorrect positions and non-matches
-            for (int i = 0; i < lwrGuess.length(); i++) {
-                if (pattern[i] == 0) {  // skip over already assigned positions (greens)
-                    String gLtr = lwrGuess.substring(i, i + 1).toLowerCase();
-                    // ensure letter is in sol and is not marked more times than in sol
-                    if (sol.contains(gLtr) && ltrFreq.get(gLtr) > 0) {
-                        pattern[i] = 'y';
-
-                        // decrement number of times letter has left to appear in sol
-                        ltrFreq.put(gLtr, ltrFreq.get(gLtr) - 1);
-                    }
-                    else {
-                        pattern[i] = '-';
-                    }
-                }
-            }
-            String bucket = new String(pattern);
+        // codes of guess against every solution, only needed when scoring
+        int[] codes = null;
+        if (guessInd < 0) {
+            codes = new int[table.solutionCount()];
+            table.columns().scoreAll(guess.toCharArray(), codes);
+        }
 
-            // add pattern to ST/increment occurrence counter
-            if (BUCKET_FREQ.contains(bucket)) {
-                BUCKET_FREQ.put(bucket, BUCKET_FREQ.get(bucket) + 1);
-            }
-            else {
-                BUCKET_FREQ.put(bucket, 1);
-                BUCKET_SOLS.put(bucket, new LinkedList<>());
-            }
+        // number of solutions per pattern code
+        int[] bucketFreq = new int[Pattern.count(guess.length())];
+        for (int s = remSols.next(0); s >= 0; s = remSols.next(s + 1)) {
+            bucketFreq[code(guessInd, codes, s, table)]++;
+        }
+
+        int mostBucket = largest(bucketFreq);
 
-            // associate sol w/ pattern in patSol ST
-            BUCKET_SOLS.get(bucket).add(sol);
+        // collect the solutions of the largest bucket
+        SolutionSet mostSols = new SolutionSet(remSols.universe());
+        for (int s = remSols.next(0); s >= 0; s = remSols.next(s + 1)) {
+            if (code(guessInd, codes, s, table) == mostBucket) mostSols.add(s);
         }
 
-        // find pattern with the highest frequency
-        String mostBucket = BUCKET_FREQ.min();
-        int highestFreq = BUCKET_FREQ.get(mostBucket);
+        this.largestCode = mostBucket;
+        this.largestBucket = Pattern.toString(mostBucket, guess.length());
+        this.mostRemSols = mostSols;
+    }
+
+    // stores bucket code of a word of length letters as the largest bucket, with
+    // solutions mostSols
+    private Buckets(int code, SolutionSet mostSols, int length) {
+        this.largestCode = code;
+        this.largestBucket = Pattern.toString(code, length);
+        this.mostRemSols = mostSols;
+    }
 
-        for (String bucket : BUCKET_FREQ.keys()) {
-            if (BUCKET_FREQ.get(bucket) > highestFreq) {
-                highestFreq = BUCKET_FREQ.get(bucket);
-                mostBucket = bucket;
-            }
-            else if (BUCKET_FREQ.get(bucket) == highestFreq) {
-                // need to update mostPattern if pat has fewer greens or, if greens
-                // are the same, fewer yellows
+    // returns the Buckets of a bucket chosen some other way than by size (see
+    // Lookahead): pattern code, with solutions mostSols, of a word of length
+    // letters
+    public static Buckets of(int code, SolutionSet mostSols, int length) {
+        return new Buckets(code, mostSols, length);
+    }
 
-                int oldG = 0;
-                int oldY = 0;
-                int newG = 0;
-                int newY = 0;
+    // returns the pattern code of the guess against the solution at index sol,
+    // looked up in table if guessInd is valid and taken from the scored codes
+    // otherwise
+    private static int code(int guessInd, int[] codes, int sol, PatternTable table) {
+        if (guessInd >= 0) return table.get(guessInd, sol);
+        return codes[sol];
+    }
 
-                String[] oldPat = mostBucket.split("");
-                String[] newPat = bucket.split("");
+    // counts the solutions per pattern code of the solutions in longs lo to hi - 1
+    // of the set's bitset, splitting the range in half until it is small
+    private static class CountTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;  // never serialized
+        private final int guess;  // index of the guess in table
+        private final SolutionSet remSols;  // set of solutions to partition
+        private final PatternTable table;  // table to look up patterns in
+        private final int lo;  // first long of the range
+        private final int hi;  // one past the last long of the range
 
-                // count number of greens and yellows in pat and current mostPattern
-                for (int i = 0; i < bucket.length(); i++) {
-                    if (oldPat[i].equals("g")) oldG++;
-                    else if (oldPat[i].equals("y")) oldY++;
+        // creates a task counting the patterns of guess in longs lo to hi - 1
+        public CountTask(int guess, SolutionSet remSols, PatternTable table,
+                         int lo, int hi) {
+            this.guess = guess;
+            this.remSols = remSols;
+            this.table = table;
+            this.lo = lo;
+            this.hi = hi;
+        }
 
-                    if (newPat[i].equals("g")) newG++;
-                    else if (newPat[i].equals("y")) newY++;
+        // returns the merged histogram of both halves, or of the range itself
+        protected int[] compute() {
+            if (hi - lo <= LEAF_WORDS) {
+                int[] bucketFreq = new int[Pattern.count(table.wordLength())];
+                int end = hi * Long.SIZE;
+                for (int s = remSols.next(lo * Long.SIZE); s >= 0 && s < end;
+                     s = remSols.next(s + 1)) {
+                    bucketFreq[table.get(guess, s)]++;
                 }
-                if (oldG > newG) {
-                    highestFreq = BUCKET_FREQ.get(bucket);
-                    mostBucket = bucket;
+                return bucketFreq;
+            }
+            int mid = (lo + hi) >>> 1;
+            CountTask left = new CountTask(guess, remSols, table, lo, mid);
+            left.fork();
+            int[] bucketFreq = new CountTask(guess, remSols, table, mid, hi)
+                    .compute();
+            int[] leftFreq = left.join();
+            for (int i = 0; i < bucketFreq.length; i++) bucketFreq[i] += leftFreq[i];
+            return bucketFreq;
+        }
+    }
+
+    // sets the bits of the solutions in longs lo to hi - 1 of the set's bitset
+    // whose pattern is bucket (each task writes its own longs of mostBits)
+    private static class CollectTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;  // never serialized
+        private final int guess;  // index of the guess in table
+        private final SolutionSet remSols;  // set of solutions to partition
+        private final PatternTable table;  // table to look up patterns in
+        private final int lo;  // first long of the range
+        private final int hi;  // one past the last long of the range
+        private final int bucket;  // pattern code of the solutions to collect
+        private final long[] mostBits;  // bitset of the collected solutions
+
+        // creates a task collecting the solutions of bucket in longs lo to hi - 1
+        public CollectTask(int guess, SolutionSet remSols, PatternTable table,
+                           int lo, int hi, int bucket, long[] mostBits) {
+            this.guess = guess;
+            this.remSols = remSols;
+            this.table = table;
+            this.lo = lo;
+            this.hi = hi;
+            this.bucket = bucket;
+            this.mostBits = mostBits;
+        }
+
+        // collects the solutions of both halves, or of the range itself
+        protected void compute() {
+            if (hi - lo <= LEAF_WORDS) {
+                int end = hi * Long.SIZE;
+                for (int s = remSols.next(lo * Long.SIZE); s >= 0 && s < end;
+                     s = remSols.next(s + 1)) {
+                    if (table.get(guess, s) == bucket) {
+                        mostBits[s / Long.SIZE] |= 1L << s;
+                    }
                 }
-                else if (oldG == newG && oldY > newY) {
-                    highestFreq = BUCKET_FREQ.get(bucket);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new CollectTask(guess, remSols, table, lo, mid, bucket,
+                                      mostBits),
+                      new CollectTask(guess, remSols, table, mid, hi, bucket,
+                                      mostBits));
+        }
+    }
+
+    // returns the pattern code with the highest frequency in bucketFreq (indexed
+    // by pattern code), or -1 if every frequency is 0
+    public static int largest(int[] bucketFreq) {
+        // codes are in the same order as their strings, so the first highest
+        // wins ties like the string version
+        int mostBucket = -1;
+        int highestFreq = 0;
+        for (int bucket = 0; bucket < bucketFreq.length; bucket++) {
+            if (bucketFreq[bucket] > highestFreq) {
+                highestFreq = bucketFreq[bucket];
+                mostBucket = bucket;
+            }
+            else if (bucketFreq[bucket] == highestFreq && highestFreq > 0) {
+                // need to update mostBucket if bucket has fewer greens or, if
+                // greens are the same, fewer yellows
+                int oldG = Pattern.greens(mostBucket);
+                int newG = Pattern.greens(bucket);
+                if (oldG > newG || (oldG == newG && Pattern.yellows(mostBucket) >
+                        Pattern.yellows(bucket))) {
                     mostBucket = bucket;
                 }
             }
         }
-        this.largestBucket = mostBucket;
-        this.mostRemSols = BUCKET_SOLS.get(mostBucket);
+        return mostBucket;
     }
 
     // returns the possible solutions associated with the largest bucket
-    public LinkedList<String> getMostRemSols() {
+    public SolutionSet getMostRemSols() {
         return mostRemSols;
     }
 
@@ -148,16 +261,21 @@ public class Buckets {
         return largestBucket;
     }
 
+    // returns the pattern code (see Pattern) of the largest bucket
+    public int getLargestCode() {
+        return largestCode;
+    }
+
     // tests all instance methods to make sure they're working as expected
     // guesses are adapted from examples at qntm.org/absurdle
     public static void main(String[] args) {
-        In solutionsFile = new In("words/valid_solutions.txt");
-        String[] VALID_SOLS = solutionsFile.readAllStrings();
-        LinkedList<String> remSols = new LinkedList<>(Arrays.asList(VALID_SOLS));
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        SolutionSet remSols = SolutionSet.all(table.solutionCount());
 
         // terns has mix of capital and lowercase letters
         // it should result in a bucket size of 256 and pattern of "-----"
-        Buckets trial1 = new Buckets("tERns", remSols);
+        Buckets trial1 = new Buckets("tERns", remSols, table);
         StdOut.println("Guess 1: terns");
         StdOut.println("Size of largest bucket (expecting 254): " +
                                trial1.getMostRemSols().size());
@@ -166,7 +284,7 @@ public class Buckets {
         StdOut.println();
 
         // aphid should result in a bucket size of 38 and pattern of "y----"
-        Buckets trial2 = new Buckets("aphid", trial1.getMostRemSols());
+        Buckets trial2 = new Buckets("aphid", trial1.getMostRemSols(), table);
         StdOut.println("Guess 2: aphid");
         StdOut.println("Size of largest bucket (expecting 37): " +
                                trial2.getMostRemSols().size());
@@ -175,7 +293,7 @@ public class Buckets {
         StdOut.println();
 
         // quack should result in a bucket size of 12 and pattern of "--y--"
-        Buckets trial3 = new Buckets("quack", trial2.getMostRemSols());
+        Buckets trial3 = new Buckets("quack", trial2.getMostRemSols(), table);
         StdOut.println("Guess 3: quack");
         StdOut.println("Size of largest bucket (expecting 11): " +
                                trial3.getMostRemSols().size());
@@ -186,7 +304,7 @@ public class Buckets {
         // mambo should have two equally sized buckets "-g---" and "-y--y" but the
         // latter is expected as output b/c it has fewer greens
         // the bucket size should be 2
-        Buckets trial4 = new Buckets("mambo", trial3.getMostRemSols());
+        Buckets trial4 = new Buckets("mambo", trial3.getMostRemSols(), table);
         StdOut.println("Guess 4: mambo");
         StdOut.println("Size of largest bucket (expecting 2): " +
                                trial4.getMostRemSols().size());
@@ -197,7 +315,7 @@ public class Buckets {
         // the only possible solution after guessing loyal should be offal
         // the expected pattern is "-y-gg" which means the first l is not marked
         // b/c there is only one l in offal, and it's in the last position
-        Buckets trial5 = new Buckets("loyal", trial4.getMostRemSols());
+        Buckets trial5 = new Buckets("loyal", trial4.getMostRemSols(), table);
         StdOut.println("Guess 5: loyal");
         StdOut.println("Size of largest bucket (expecting 1): " +
                                trial5.getMostRemSols().size());
@@ -207,11 +325,60 @@ public class Buckets {
 
         // the only possible solution left should still be offal
         // the expected pattern is ""
-        Buckets trial6 = new Buckets("", trial5.getMostRemSols());
+        Buckets trial6 = new Buckets("", trial5.getMostRemSols(), table);
         StdOut.println("Guess 6: \"\"");
         StdOut.println("Size of largest bucket (expecting 1): " +
                                trial6.getMostRemSols().size());
         StdOut.println("Pattern of largest bucket (expecting \"\"): " +
                                trial6.getLargestBucket());
+        StdOut.println("Remaining solution (expecting offal): " +
+                               table.solution(trial6.getMostRemSols().first()));
+        StdOut.println();
+
+        // the guess index constructor should give the same bucket as the string
+        Buckets trial7 = new Buckets(table.guessIndex("terns"), remSols, table);
+        StdOut.println("Guess 1 (by index): terns");
+        StdOut.println("Size of largest bucket (expecting 254): " +
+                               trial7.getMostRemSols().size());
+        StdOut.println("Pattern of largest bucket (expecting -----): " +
+                               trial7.getLargestBucket());
+        StdOut.println("Code of largest bucket (expecting 0): " +
+                               trial7.getLargestCode());
+        StdOut.println();
+
+        // partitioning in parallel should give exactly the same bucket as
+        // partitioning sequentially for every guess
+        boolean allMatch = true;
+        Stopwatch timer = new Stopwatch();
+        for (int g = 0; g < table.guessCount(); g++) {
+            Buckets sequential = new Buckets(g, remSols, table, false);
+            Buckets parallel = new Buckets(g, remSols, table, true);
+            if (sequential.getLargestCode() != parallel.getLargestCode() ||
+                    !sequential.getMostRemSols().equals(parallel.getMostRemSols())) {
+                allMatch = false;
+            }
+        }
+        StdOut.println("Parallel matches sequential for every guess (expecting " +
+                               "true): " + allMatch);
+        StdOut.println("Compared " + table.guessCount() + " guesses in " +
+                               timer.elapsedTime() + " seconds");
+
+        // scoring every guess (as if it were not in the table) should give the
+        // same bucket, ties included, as looking it up, for the full set and the
+        // set left after terns
+        allMatch = true;
+        for (SolutionSet sols : new SolutionSet[] { remSols,
+                                                    trial1.getMostRemSols() }) {
+            for (int g = 0; g < table.guessCount(); g++) {
+                Buckets lookedUp = new Buckets(g, sols, table);
+                Buckets scored = new Buckets(table.guess(g), -1, sols, table, false);
+                if (lookedUp.getLargestCode() != scored.getLargestCode() ||
+                        !lookedUp.getMostRemSols().equals(scored.getMostRemSols())) {
+                    allMatch = false;
+                }
+            }
+        }
+        StdOut.println("Scored matches looked up for every guess (expecting " +
+                               "true): " + allMatch);
     }
 }
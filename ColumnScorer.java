@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Scores one guess against every solution at once, giving the same pattern
+ * codes as Pattern.score but eight solutions at a time.
+ *
+ * The solutions are laid out column-wise: one column per letter position, each
+ * a long[] holding the letter (1 to 26) of eight solutions per long, one per
+ * byte. Comparing a column to a guess letter repeated in every byte then
+ * compares eight solutions in a few arithmetic operations (SIMD within a
+ * register), with no branches:
+ *
+ * greens   a byte is 1 where the solution's letter equals the guess letter
+ * yellows  for each distinct letter of the guess, every byte counts the
+ *          solution's non-green positions holding it, and each non-green
+ *          position of the guess with that letter (first to last) is yellow
+ *          while its count is above 0, using one up
+ *
+ * which is the same letter counting as Pattern. The digits are then folded
+ * into codes in 16 bit lanes, four solutions per long. Counts never exceed the
+ * word length, so no lane ever carries into the next.
+ *
+ * Guesses of a different length than the solutions or with characters other
+ * than a-z are scored with Pattern instead, as are all guesses if the system
+ * property absurdle.scorer is set to "scalar". A ColumnScorer is read-only once
+ * created, so it can be shared between threads.
+ ******************************************************************************/
+
+public class ColumnScorer {
+
+    private static final int LANES = Long.BYTES;  // solutions per long
+
+    private static final long ONES = 0x0101010101010101L;  // 1 in every byte
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;  // low 7 bits per byte
+    private static final long HIGH = 0x8080808080808080L;  // top bit per byte
+    private static final long EVEN = 0x00FF00FF00FF00FFL;  // bytes 0, 2, 4, 6
+
+    // whether guesses are scored by column, or always by Pattern
+    private static final boolean ENABLED =
+            !"scalar".equals(System.getProperty("absurdle.scorer"));
+
+    private final Dictionary sols;  // solutions, by index
+    private final int wordLength;  // letters per solution
+    private final int blocks;  // longs per column
+    private final long[][] columns;  // letter of each solution, by position
+
+    // lays out the letters of sols (all of the same length) by position
+    public ColumnScorer(Dictionary sols) {
+        this.sols = sols;
+        this.wordLength = sols.size() == 0 ? 0 : Dictionary.length(sols.packed(0));
+        this.blocks = (sols.size() + LANES - 1) / LANES;
+        this.columns = new long[wordLength][blocks];
+        for (int s = 0; s < sols.size(); s++) {
+            // packed letters are 1 to 26, last letter lowest, so padding
+            // solutions (0) never match a letter of a guess
+            long packed = sols.packed(s);
+            for (int i = wordLength - 1; i >= 0; i--) {
+                long ltr = packed & 31;
+                columns[i][s / LANES] |= ltr << (s % LANES * Byte.SIZE);
+                packed >>>= 5;
+            }
+        }
+    }
+
+    // returns the number of solutions
+    public int size() {
+        return sols.size();
+    }
+
+    // returns whether guess is scored by column (and not by Pattern)
+    public boolean isColumnar(char[] guess) {
+        if (!ENABLED || guess.length != wordLength) return false;
+        for (char c : guess) {
+            if (c < 'a' || c > 'z') return false;
+        }
+        return true;
+    }
+
+    // stores the pattern code of guess (lowercase) against every solution s in
+    // codes[s], where codes has room for every solution
+    public void scoreAll(char[] guess, int[] codes) {
+        if (!isColumnar(guess)) {
+            Pattern scorer = new Pattern();
+            for (int s = 0; s < sols.size(); s++) {
+                codes[s] = scorer.score(guess, sols.word(s).toCharArray());
+            }
+            return;
+        }
+
+        int length = guess.length;
+        long[] letters = new long[length];  // guess letter in every byte
+        int[] first = new int[length];  // first position of the same letter
+        for (int i = 0; i < length; i++) {
+            letters[i] = (guess[i] - 'a' + 1) * ONES;
+            first[i] = i;
+            for (int j = 0; j < i; j++) {
+                if (guess[j] == guess[i]) {
+                    first[i] = j;
+                    break;
+                }
+            }
+        }
+
+        long[] greens = new long[length];  // 1 in the bytes of greens
+        long[] digits = new long[length];  // digit of every solution
+        for (int b = 0; b < blocks; b++) {
+            for (int i = 0; i < length; i++) {
+                greens[i] = equal(columns[i][b], letters[i]);
+                digits[i] = greens[i];
+            }
+
+            // mark yellows letter by letter, from the first position of each
+            for (int i = 0; i < length; i++) {
+                if (first[i] != i) continue;
+                long available = 0;  // non-green positions of sols with the letter
+                for (int j = 0; j < length; j++) {
+                    available += equal(columns[j][b], letters[i]) & ~greens[j];
+                }
+                for (int j = i; j < length; j++) {
+                    if (first[j] != i) continue;
+                    long yellow = nonZero(available) & ~greens[j] & ONES;
+                    digits[j] += yellow << 1;
+                    available -= yellow;
+                }
+            }
+
+            // fold the digits into codes, first letter most significant
+            long even = 0;  // codes of the solutions in bytes 0, 2, 4, 6
+            long odd = 0;  // codes of the solutions in bytes 1, 3, 5, 7
+            for (int i = 0; i < length; i++) {
+                even = even * 3 + (digits[i] & EVEN);
+                odd = odd * 3 + ((digits[i] >>> Byte.SIZE) & EVEN);
+            }
+            int s = b * LANES;
+            int end = Math.min(s + LANES, sols.size());
+            for (int lane = 0; s < end; lane++, s++) {
+                long codesOfLane = (lane & 1) == 0 ? even : odd;
+                codes[s] = (int) (codesOfLane >>> (lane >>> 1) * Short.SIZE) & 0xFFFF;
+            }
+        }
+    }
+
+    // returns 1 in every byte where x and y are equal, 0 elsewhere
+    private static long equal(long x, long y) {
+        return ~nonZeroHigh(x ^ y) >>> 7 & ONES;
+    }
+
+    // returns 1 in every byte of x that is not 0, 0 elsewhere
+    private static long nonZero(long x) {
+        return nonZeroHigh(x) >>> 7;
+    }
+
+    // returns the top bit set in every byte of x that is not 0, without carries
+    // between bytes
+    private static long nonZeroHigh(long x) {
+        return (((x & LOW7) + LOW7) | x) & HIGH;
+    }
+
+    // compares column scoring to Pattern and times both
+    public static void main(String[] args) {
+        // expect the same codes as Pattern for random words of 4 to 8 letters
+        // with few letters, so they share letters and have repeats
+        Pattern scorer = new Pattern();
+        for (int length = 4; length <= 8; length++) {
+            String[] words = new String[1003];  // not a multiple of 8
+            for (int i = 0; i < words.length; i++) {
+                char[] ltrs = new char[length];
+                for (int j = 0; j < length; j++) {
+                    ltrs[j] = (char) ('a' + StdRandom.uniformInt(6));
+                }
+                words[i] = new String(ltrs);
+            }
+            Dictionary sols = new Dictionary(words);
+            ColumnScorer columns = new ColumnScorer(sols);
+            int[] codes = new int[columns.size()];
+            boolean allMatch = true;
+            for (int g = 0; g < 200; g++) {
+                char[] guess = words[g].toCharArray();
+                columns.scoreAll(guess, codes);
+                for (int s = 0; s < sols.size(); s++) {
+                    if (codes[s] != scorer.score(guess, sols.word(s).toCharArray())) {
+                        allMatch = false;
+                    }
+                }
+            }
+            StdOut.println(length + " letter codes match Pattern (expecting " +
+                                   "true): " + allMatch);
+        }
+
+        // expect the same codes as the table for every valid guess
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        ColumnScorer columns = new ColumnScorer(table.solutions());
+        int[] codes = new int[columns.size()];
+        boolean allMatch = true;
+        for (int g = 0; g < table.guessCount(); g++) {
+            columns.scoreAll(table.guess(g).toCharArray(), codes);
+            for (int s = 0; s < table.solutionCount(); s++) {
+                if (codes[s] != table.get(g, s)) allMatch = false;
+            }
+        }
+        StdOut.println("Codes match the table for every guess (expecting true): " +
+                               allMatch);
+
+        // expect guesses that cannot be scored by column to fall back to Pattern
+        StdOut.println("Columnar abc (expecting false): " +
+                               columns.isColumnar("abc".toCharArray()));
+        columns.scoreAll("ab-de".toCharArray(), codes);
+        StdOut.println("ab-de vs " + table.solution(0) + " (expecting " +
+                               Pattern.toString(scorer.score(
+                                       "ab-de".toCharArray(),
+                                       table.solution(0).toCharArray()), 5) +
+                               "): " + Pattern.toString(codes[0], 5));
+
+        // time scoring every guess against every solution both ways
+        char[][] guessLtrs = new char[table.guessCount()][];
+        char[][] solLtrs = new char[table.solutionCount()][];
+        for (int g = 0; g < guessLtrs.length; g++) {
+            guessLtrs[g] = table.guess(g).toCharArray();
+        }
+        for (int s = 0; s < solLtrs.length; s++) {
+            solLtrs[s] = table.solution(s).toCharArray();
+        }
+        for (int round = 0; round < 3; round++) {
+            Stopwatch timer = new Stopwatch();
+            long sum = 0;
+            for (char[] guess : guessLtrs) {
+                for (char[] sol : solLtrs) sum += scorer.score(guess, sol);
+            }
+            double scalar = timer.elapsedTime();
+
+            timer = new Stopwatch();
+            long columnSum = 0;
+            for (char[] guess : guessLtrs) {
+                columns.scoreAll(guess, codes);
+                for (int code : codes) columnSum += code;
+            }
+            double columnar = timer.elapsedTime();
+            StdOut.printf("All pairs: Pattern %.3f s, columns %.3f s (sums " +
+                                  "match: %b)%n", scalar, columnar,
+                          sum == columnSum);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Word list with constant time lookups, mapping each word to a stable integer
+ * id (its position in the list) and back.
+ *
+ * Each word is packed into a long with five bits per letter ('a' is 1 through
+ * 'z' is 26), so lookups hash and compare primitive keys in an open-addressing
+ * table (linear probing) instead of scanning or comparing Strings. Words with
+ * characters other than a-z, or more than 12 letters, are never in the
+ * dictionary.
+ *
+ * A dictionary can also be created from packed words alone (see WordLists),
+ * in which case each word's String is only created the first time it is asked
+ * for.
+ ******************************************************************************/
+
+public class Dictionary {
+
+    private static final int BITS_PER_LTR = 5;  // bits needed for 26 letters
+    private static final int MAX_LTRS = Long.SIZE / BITS_PER_LTR;  // 12 letters
+
+    private static final long EMPTY = 0;  // key of an empty slot (no word packs to 0)
+
+    private final long[] packed;  // packed words of the dictionary, indexed by id
+    private final String[] words;  // words by id (null until first asked for)
+
+    private final long[] keys;  // packed words, or EMPTY
+    private final int[] ids;  // id of the packed word in the same slot of keys
+    private final int mask;  // number of slots - 1 (slots is a power of two)
+
+    // loads the dictionary of words (separated by whitespace) in file
+    public static Dictionary load(String file) {
+        return new Dictionary(new In(file).readAllStrings());
+    }
+
+    // creates a dictionary where the id of words[i] is i
+    public Dictionary(String[] words) {
+        this(packAll(words), words.clone());
+    }
+
+    // returns a dictionary of packed words (see pack), where the id of the word
+    // packed[i] is i, creating each word's String only when it is asked for
+    public static Dictionary fromPacked(long[] packed) {
+        return new Dictionary(packed.clone(), new String[packed.length]);
+    }
+
+    // returns every word of words packed
+    private static long[] packAll(String[] words) {
+        long[] packed = new long[words.length];
+        for (int id = 0; id < words.length; id++) {
+            packed[id] = pack(words[id]);
+            if (packed[id] == EMPTY) {
+                throw new IllegalArgumentException("Invalid word: " + words[id]);
+            }
+        }
+        return packed;
+    }
+
+    // creates a dictionary of the words packed (and the same words, or null for
+    // words not created yet)
+    private Dictionary(long[] packed, String[] words) {
+        this.packed = packed;
+        this.words = words;
+
+        // keep the table at most half full so probe sequences stay short
+        int slots = Integer.highestOneBit(Math.max(1, packed.length) * 2) * 2;
+        keys = new long[slots];
+        ids = new int[slots];
+        mask = slots - 1;
+
+        for (int id = 0; id < packed.length; id++) {
+            long key = packed[id];
+            if (key == EMPTY) {
+                throw new IllegalArgumentException("Invalid word id: " + id);
+            }
+            int slot = slot(key);
+            while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+            // keep the first id if a word is listed twice
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                ids[slot] = id;
+            }
+        }
+    }
+
+    // returns the number of words in the dictionary
+    public int size() {
+        return packed.length;
+    }
+
+    // returns the word with the given id
+    public String word(int id) {
+        String word = words[id];
+        if (word == null) {
+            // racing threads may both create it, with the same result
+            word = unpack(packed[id]);
+            words[id] = word;
+        }
+        return word;
+    }
+
+    // returns the word with the given id packed (see pack)
+    public long packed(int id) {
+        return packed[id];
+    }
+
+    // returns the id of word, or -1 if it is not in the dictionary
+    public int id(CharSequence word) {
+        long key = pack(word);
+        if (key == EMPTY) return -1;
+        for (int slot = slot(key); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return ids[slot];
+        }
+        return -1;
+    }
+
+    // checks if word is in the dictionary
+    public boolean contains(CharSequence word) {
+        return id(word) >= 0;
+    }
+
+    // returns the first slot to probe for key
+    private int slot(long key) {
+        // multiply by the 64-bit golden ratio to spread the packed letters
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - Integer.SIZE))
+                & mask;
+    }
+
+    // returns word packed into a long (five bits per letter, first letter
+    // highest, so packed words of the same length sort like the words), or 0 if
+    // word is empty, too long or has characters other than a-z
+    public static long pack(CharSequence word) {
+        int length = word.length();
+        if (length == 0 || length > MAX_LTRS) return EMPTY;
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') return EMPTY;
+            key = (key << BITS_PER_LTR) | (c - 'a' + 1);
+        }
+        return key;
+    }
+
+    // returns the number of letters of the word packed into key (see pack)
+    public static int length(long key) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(key) + BITS_PER_LTR - 1)
+                / BITS_PER_LTR;
+    }
+
+    // returns the word packed into key (see pack)
+    public static String unpack(long key) {
+        int length = length(key);
+        char[] ltrs = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            ltrs[i] = (char) ('a' - 1 + (key & ((1 << BITS_PER_LTR) - 1)));
+            key >>>= BITS_PER_LTR;
+        }
+        return new String(ltrs);
+    }
+
+    // tests all methods to make sure they're working as expected
+    public static void main(String[] args) {
+        Dictionary guesses = Dictionary.load("words/valid_guesses.txt");
+        StdOut.println("Number of words (expecting 12972): " + guesses.size());
+
+        // expect ids to be the position of the word in the file
+        StdOut.println("Id of aahed (expecting 0): " + guesses.id("aahed"));
+        StdOut.println("Word with id 0 (expecting aahed): " + guesses.word(0));
+        StdOut.println("Id of zonal (expecting 12971): " + guesses.id("zonal"));
+
+        // expect every word to map back to its own id
+        boolean allMatch = true;
+        for (int id = 0; id < guesses.size(); id++) {
+            if (guesses.id(guesses.word(id)) != id) allMatch = false;
+        }
+        StdOut.println("All ids match (expecting true): " + allMatch);
+
+        // expect words that are not valid guesses to not be found
+        StdOut.println("Contains terns (expecting true): " +
+                               guesses.contains("terns"));
+        StdOut.println("Contains xxxxx (expecting false): " +
+                               guesses.contains("xxxxx"));
+        StdOut.println("Contains TERNS (expecting false): " +
+                               guesses.contains("TERNS"));
+        StdOut.println("Contains tern (expecting false): " + guesses.contains("tern"));
+        StdOut.println("Contains \"\" (expecting false): " + guesses.contains(""));
+
+        // expect a dictionary of packed words to find and create the same words
+        long[] packed = new long[guesses.size()];
+        for (int id = 0; id < guesses.size(); id++) packed[id] = guesses.packed(id);
+        Dictionary fromPacked = Dictionary.fromPacked(packed);
+        allMatch = true;
+        for (int id = 0; id < guesses.size(); id++) {
+            if (fromPacked.id(guesses.word(id)) != id ||
+                    !fromPacked.word(id).equals(guesses.word(id))) {
+                allMatch = false;
+            }
+        }
+        StdOut.println("Packed words match (expecting true): " + allMatch);
+        StdOut.println("Unpacked zzz (expecting zzz): " + unpack(pack("zzz")));
+
+        // time a million lookups
+        Stopwatch timer = new Stopwatch();
+        int found = 0;
+        for (int i = 0; i < 1000000; i++) {
+            if (guesses.contains(guesses.word(i % guesses.size()))) found++;
+        }
+        StdOut.println("Found " + found + " of 1000000 words in " +
+                               timer.elapsedTime() + " seconds");
+    }
+}
@@ -0,0 +1,328 @@
+/*******************************************************************************
+ * Headless state of one game of Absurdle: the remaining solutions, the number
+ * of guesses made, and the guess and pattern code (see Pattern) of every
+ * guess so far. Guesses are answered by the Buckets adversary (through a
+ * BucketCache) or a Lookahead adversary, exactly as in the interactive game,
+ * but nothing is drawn, so games can be played by other programs (see Batch).
+ * Every guess records its time and the solutions left in Metrics.
+ *
+ * In hard mode every guess must use the hints revealed so far: greens stay in
+ * place, and letters shown green or yellow are used at least as many times as
+ * they were shown. The legal guesses are kept as a set, narrowed after every
+ * answer by intersecting it with the guesses meeting the new hints (looked up
+ * in the table's GuessIndex).
+ ******************************************************************************/
+
+public class Game {
+
+    private final PatternTable table;  // valid guesses and solutions
+    private final BucketCache cache;  // results of guesses, shared between games
+    private final int maxGuesses;  // maximum number of guesses allowed
+    private final Lookahead adversary;  // lookahead adversary, or null for Buckets
+    private final boolean hard;  // whether guesses must use the revealed hints
+
+    private SolutionSet remSols;  // solutions still possible
+    private final int[] guessIds;  // index of each guess made
+    private final int[] codes;  // pattern code of each guess made
+    private int guesses;  // number of guesses made
+    private boolean won;  // whether the last guess was the only solution left
+    private SolutionSet legal;  // guesses allowed next (in hard mode), or null
+    private SolutionSet lastRemSols;  // remSols before the last guess, or null
+    private SolutionSet lastLegal;  // legal before the last guess
+
+    // starts a game of at most maxGuesses guesses with every solution possible
+    public Game(PatternTable table, BucketCache cache, int maxGuesses) {
+        this(table, cache, maxGuesses, null);
+    }
+
+    // starts a game of at most maxGuesses guesses with every solution possible,
+    // answered by adversary instead (or by Buckets, if adversary is null)
+    public Game(PatternTable table, BucketCache cache, int maxGuesses,
+                Lookahead adversary) {
+        this(table, cache, maxGuesses, adversary, false);
+    }
+
+    // starts a game like the one above, in hard mode if hard is true
+    public Game(PatternTable table, BucketCache cache, int maxGuesses,
+                Lookahead adversary, boolean hard) {
+        if (maxGuesses < 0) {
+            throw new IllegalArgumentException("Maximum number of guesses can't " +
+                                                       "be negative.");
+        }
+        this.table = table;
+        this.cache = cache;
+        this.maxGuesses = maxGuesses;
+        this.adversary = adversary;
+        this.hard = hard;
+        if (hard) this.legal = SolutionSet.all(table.guessCount());
+        this.remSols = SolutionSet.all(table.solutionCount());
+        this.guessIds = new int[maxGuesses];
+        this.codes = new int[maxGuesses];
+    }
+
+    // returns a game of at most maxGuesses guesses answered by adversary (or by
+    // Buckets, if adversary is null), in hard mode if hard is true, in the state
+    // after the first moves guesses in guessIds were answered with the pattern
+    // codes in codes, leaving remSols (e.g. recovered from a Journal)
+    public static Game restore(PatternTable table, BucketCache cache, int maxGuesses,
+                               Lookahead adversary, boolean hard, int[] guessIds,
+                               int[] codes, int moves, SolutionSet remSols) {
+        if (moves > maxGuesses) {
+            throw new IllegalArgumentException("More moves than guesses allowed.");
+        }
+        Game game = new Game(table, cache, maxGuesses, adversary, hard);
+        System.arraycopy(guessIds, 0, game.guessIds, 0, moves);
+        System.arraycopy(codes, 0, game.codes, 0, moves);
+        for (int m = 0; m < moves; m++) game.narrow(guessIds[m], codes[m]);
+        game.guesses = moves;
+        game.remSols = remSols;
+        game.won = moves > 0 && game.isWinning(guessIds[moves - 1]);
+        return game;
+    }
+
+    // checks if guess (any case) is a valid guess, and in hard mode that it
+    // uses the hints revealed so far
+    public boolean isValid(String guess) {
+        int ind = table.guessIndex(guess.toLowerCase());
+        return ind >= 0 && (legal == null || legal.contains(ind));
+    }
+
+    // plays guess (any case) and returns the adversary's response
+    public Buckets guess(String guess) {
+        int ind = table.guessIndex(guess.toLowerCase());
+        if (ind < 0) throw new IllegalArgumentException("Invalid guess: " + guess);
+        return guess(ind);
+    }
+
+    // plays the guess at index guess and returns the adversary's response;
+    // throws an IllegalArgumentException if it breaks hard mode
+    public Buckets guess(int guess) {
+        if (isOver()) throw new IllegalStateException("Game is already over.");
+        if (legal != null && !legal.contains(guess)) {
+            throw new IllegalArgumentException("Guess must use the revealed hints: " +
+                                                       table.guess(guess));
+        }
+
+        long start = System.nanoTime();
+        Buckets buckets;
+        if (adversary == null) buckets = cache.get(guess, remSols);
+        else buckets = adversary.respond(guess, remSols);
+        Metrics.MOVE_NANOS.record(System.nanoTime() - start);
+        Metrics.SOLUTIONS_BEFORE.record(remSols.size());
+        Metrics.SOLUTIONS_AFTER.record(buckets.getMostRemSols().size());
+        lastRemSols = remSols;
+        lastLegal = legal;
+        remSols = buckets.getMostRemSols();
+        guessIds[guesses] = guess;
+        codes[guesses] = buckets.getLargestCode();
+        guesses++;
+        narrow(guess, buckets.getLargestCode());
+
+        won = isWinning(guess);
+        return buckets;
+    }
+
+    // takes back the last guess (e.g. one that could not be recorded in a
+    // Journal); throws an IllegalStateException if it was already taken back or
+    // there is none
+    public void undo() {
+        if (lastRemSols == null) {
+            throw new IllegalStateException("No guess to take back.");
+        }
+        guesses--;
+        remSols = lastRemSols;
+        legal = lastLegal;
+        won = false;  // no guess could be made after a win
+        lastRemSols = null;
+        lastLegal = null;
+    }
+
+    // narrows the legal guesses (in hard mode) to those using the hints of the
+    // guess at index guess answered with pattern code
+    private void narrow(int guess, int code) {
+        if (legal == null) return;
+        GuessIndex.Constraints hints = new GuessIndex.Constraints(table.wordLength());
+        hints.addHints(table.guess(guess), code);
+        legal = legal.intersect(table.letterIndex().matching(hints));
+    }
+
+    // checks if the guess at index guess is the only solution left
+    private boolean isWinning(int guess) {
+        return remSols.size() == 1 &&
+                table.solution(remSols.first()).equals(table.guess(guess));
+    }
+
+    // checks if the game has been won
+    public boolean isWon() {
+        return won;
+    }
+
+    // checks if the game is over (won, or out of guesses)
+    public boolean isOver() {
+        return won || guesses == maxGuesses;
+    }
+
+    // returns the number of guesses made
+    public int guessCount() {
+        return guesses;
+    }
+
+    // checks if the game is in hard mode
+    public boolean isHard() {
+        return hard;
+    }
+
+    // returns the indices of the guesses allowed next: every valid guess, or in
+    // hard mode those using the hints revealed so far
+    public SolutionSet legalGuesses() {
+        if (legal == null) return SolutionSet.all(table.guessCount());
+        return legal;
+    }
+
+    // returns the maximum number of guesses allowed
+    public int maxGuesses() {
+        return maxGuesses;
+    }
+
+    // returns the solutions still possible
+    public SolutionSet remainingSolutions() {
+        return remSols;
+    }
+
+    // returns a solution that is still possible (the answer, if the game is lost)
+    public String solution() {
+        return table.solution(remSols.first());
+    }
+
+    // returns the ith guess made
+    public String guessAt(int i) {
+        checkIndex(i);
+        return table.guess(guessIds[i]);
+    }
+
+    // returns the index of the ith guess made
+    public int guessIdAt(int i) {
+        checkIndex(i);
+        return guessIds[i];
+    }
+
+    // returns the pattern code of the ith guess made
+    public int codeAt(int i) {
+        checkIndex(i);
+        return codes[i];
+    }
+
+    // returns the "g-y--" pattern of the ith guess made
+    public String patternAt(int i) {
+        return Pattern.toString(codeAt(i), table.wordLength());
+    }
+
+    // throws an exception if no ith guess has been made
+    private void checkIndex(int i) {
+        if (i < 0 || i >= guesses) {
+            throw new IndexOutOfBoundsException("No guess " + i + " was made.");
+        }
+    }
+
+    // tests all methods to make sure they're working as expected
+    public static void main(String[] args) {
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        BucketCache cache = new BucketCache(table, 1024);
+
+        // expect the same patterns as Buckets.main, ending in a win with offal
+        Game game = new Game(table, cache, 8);
+        String[] guesses = { "terns", "aphid", "quack", "mambo", "loyal", "offal" };
+        for (String guess : guesses) game.guess(guess);
+        for (int i = 0; i < game.guessCount(); i++) {
+            StdOut.print(game.guessAt(i) + " " + game.patternAt(i) + "  ");
+        }
+        StdOut.println();
+        StdOut.println("(expecting terns ----- aphid y---- quack --y-- " +
+                               "mambo -y--y loyal -y-gg offal ggggg)");
+        StdOut.println("Won (expecting true): " + game.isWon());
+        StdOut.println("Over (expecting true): " + game.isOver());
+
+        // expect taking back a guess to restore the game before it, once
+        Game undone = new Game(table, cache, 8, null, true);
+        undone.guess("terns");
+        SolutionSet beforeAphid = undone.legalGuesses();
+        undone.guess("aphid");
+        undone.undo();
+        StdOut.println("Guesses, solutions after undo (expecting 1, 254): " +
+                               undone.guessCount() + ", " +
+                               undone.remainingSolutions().size());
+        StdOut.println("Legal guesses restored (expecting true): " +
+                               undone.legalGuesses().equals(beforeAphid));
+        try {
+            undone.undo();
+            StdOut.println("Took back two guesses");
+        }
+        catch (IllegalStateException e) {
+            StdOut.println("Second undo rejected (expecting No guess to take " +
+                                   "back.): " + e.getMessage());
+        }
+
+        // expect a game of one guess to be lost after that guess
+        Game shortGame = new Game(table, cache, 1);
+        shortGame.guess("TERNS");
+        StdOut.println("Lost after 1 guess (expecting true): " +
+                               (shortGame.isOver() && !shortGame.isWon()));
+        StdOut.println("Remaining solutions (expecting 254): " +
+                               shortGame.remainingSolutions().size());
+
+        // expect a lookahead adversary to keep at least as many solutions after
+        // two guesses as Buckets does
+        Game lookGame = new Game(table, cache, 8, new Lookahead(table, 2, 10_000));
+        lookGame.guess("terns");
+        lookGame.guess("aphid");
+        StdOut.println("Lookahead keeps at least 37 solutions (expecting true): " +
+                               (lookGame.remainingSolutions().size() >= 37));
+
+        // expect hard mode to reject a guess ignoring the hints (aphid y----
+        // reveals an a), and every legal guess to use them
+        Game hardGame = new Game(table, cache, 8, null, true);
+        hardGame.guess("terns");
+        hardGame.guess("aphid");
+        StdOut.println("After aphid " + hardGame.patternAt(1) + ": valid terns " +
+                               "(expecting false): " + hardGame.isValid("terns"));
+        try {
+            hardGame.guess("terns");
+            StdOut.println("Guess ignoring the hints accepted");
+        }
+        catch (IllegalArgumentException e) {
+            StdOut.println("Guess ignoring the hints rejected (expecting Guess " +
+                                   "must use the revealed hints: terns): " +
+                                   e.getMessage());
+        }
+        SolutionSet legal = hardGame.legalGuesses();
+        int using = 0;
+        for (int g = 0; g < table.guessCount(); g++) {
+            if (table.guess(g).indexOf('a') >= 0) using++;
+        }
+        StdOut.println("Legal guesses (expecting " + using + " with an a): " +
+                               legal.size() + ", e.g. " + table.guess(legal.first()));
+        StdOut.println("Valid quack (expecting true): " + hardGame.isValid("quack"));
+
+        // expect a restored hard mode game to have the same legal guesses
+        Game restored = Game.restore(table, cache, 8, null, true,
+                                     new int[] { hardGame.guessIdAt(0),
+                                                 hardGame.guessIdAt(1) },
+                                     new int[] { hardGame.codeAt(0),
+                                                 hardGame.codeAt(1) }, 2,
+                                     hardGame.remainingSolutions());
+        StdOut.println("Restored legal guesses match (expecting true): " +
+                               restored.legalGuesses().equals(legal));
+
+        // expect invalid guesses to be rejected
+        StdOut.println("Valid xxxxx (expecting false): " + game.isValid("xxxxx"));
+        try {
+            new Game(table, cache, 8).guess("xxxxx");
+            StdOut.println("Invalid guess accepted");
+        }
+        catch (IllegalArgumentException e) {
+            StdOut.println("Invalid guess rejected (expecting Invalid guess: " +
+                                   "xxxxx): " + e.getMessage());
+        }
+    }
+}
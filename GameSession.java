@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * One player's game on the server (see Server): a Game with an id and the time
+ * it was last used, so idle sessions can be evicted by a SessionRegistry.
+ *
+ * A session only holds its Game (the remaining solutions, which are shared with
+ * the BucketCache, and two arrays of maxGuesses ints), so its memory is bounded
+ * no matter how it is played. Requests for the same session may arrive on
+ * different threads at once, so every method that reads or plays the game is
+ * synchronized. If the session has a Journal, every guess is recorded in it,
+ * and a guess that can't be recorded is taken back.
+ *
+ * Once a session is parked or removed it is closed, and a request still
+ * holding it gets a Closed exception instead of playing a game that is no
+ * longer the session's, so it can look the session up again (see
+ * SessionRegistry.with()).
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class GameSession {
+
+    // thrown by a session that was parked or removed after it was looked up
+    public static class Closed extends RuntimeException {
+        private static final long serialVersionUID = 1L;  // never serialized
+
+        public Closed(String id) {
+            super("Session " + id + " was parked or removed.");
+        }
+    }
+
+    private final String id;  // id the player refers to the session by
+    private final Game game;  // state of the game
+    private volatile long lastUsed;  // System.nanoTime() of the last request
+    private final Journal journal;  // journal the guesses are recorded in, or null
+    private final long journalId;  // id of the game in the journal
+    private boolean closed;  // whether it was parked or removed (under lock)
+
+    // creates a session called id playing game, last used at now (nanoseconds)
+    public GameSession(String id, Game game, long now) {
+        this(id, game, now, null, -1);
+    }
+
+    // creates a session called id playing game, last used at now (nanoseconds),
+    // recording its guesses in journal as the game with journalId
+    public GameSession(String id, Game game, long now, Journal journal,
+                       long journalId) {
+        this.id = id;
+        this.game = game;
+        this.lastUsed = now;
+        this.journal = journal;
+        this.journalId = journalId;
+    }
+
+    // returns the id of the game in the journal (-1 if it has no journal)
+    public long journalId() {
+        return journalId;
+    }
+
+    // returns the id of the session
+    public String id() {
+        return id;
+    }
+
+    // marks the session as used at now (nanoseconds)
+    public void touch(long now) {
+        lastUsed = now;
+    }
+
+    // returns when the session was last used (nanoseconds)
+    public long lastUsed() {
+        return lastUsed;
+    }
+
+    // parks the game of the closed session in store (see SessionRegistry),
+    // returning true, or returns false if it can't be parked (the store is full,
+    // or its games allow fewer guesses)
+    public synchronized boolean parkIn(SessionStore store) {
+        if (!closed) throw new IllegalStateException("Session is still open.");
+        try {
+            return store.park(id, game, journalId);
+        }
+        catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // closes the session (before it is parked or removed), waiting for a
+    // request playing it to finish, and returns false if it was already closed
+    public synchronized boolean close() {
+        if (closed) return false;
+        closed = true;
+        return true;
+    }
+
+    // throws a Closed exception if the session is closed (called under the
+    // lock)
+    private void checkOpen() {
+        if (closed) throw new Closed(id);
+    }
+
+    // plays guess (any case) and returns the session as JSON; throws an
+    // IllegalArgumentException if guess is not a valid guess, an
+    // IllegalStateException if the game is over, a Closed exception if the
+    // session is closed and an UncheckedIOException (leaving the game as it
+    // was) if the journal can't record the guess
+    public synchronized String guess(String guess) {
+        checkOpen();
+        game.guess(guess);
+        if (journal != null) {
+            try {
+                journal.move(journalId, game);
+            }
+            catch (UncheckedIOException e) {
+                game.undo();
+                throw e;
+            }
+        }
+        return toJson();
+    }
+
+    // returns the best k hints (see Hints) for the next guess as JSON, e.g.
+    // {"hints":[{"guess":"cabal","worstCase":3,"canWin":true}]}, only from the
+    // legal guesses in hard mode; throws an IllegalStateException if the game is
+    // over and a Closed exception if the session is closed
+    public synchronized String hints(Hints hints, int k) {
+        checkOpen();
+        if (game.isOver()) throw new IllegalStateException("Game is already over.");
+        StringBuilder sb = new StringBuilder("{\"hints\":[");
+        Hints.Hint[] best;
+        if (game.isHard()) {
+            best = hints.best(game.remainingSolutions(), k, game.legalGuesses());
+        }
+        else best = hints.best(game.remainingSolutions(), k);
+        for (int i = 0; i < best.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"guess\":\"").append(best[i].guess());
+            sb.append("\",\"worstCase\":").append(best[i].worstCase());
+            sb.append(",\"canWin\":").append(best[i].canWin()).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    // returns the state of the session as JSON, e.g. {"id":"...","guesses":1,
+    // "maxGuesses":8,"remaining":254,"won":false,"over":false,
+    // "history":[{"guess":"terns","pattern":"-----"}]}, with "hard":true in hard
+    // mode and the solution once the game is lost; throws a Closed exception if
+    // the session is closed
+    public synchronized String toJson() {
+        checkOpen();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"id\":\"").append(id).append('"');
+        sb.append(",\"guesses\":").append(game.guessCount());
+        sb.append(",\"maxGuesses\":").append(game.maxGuesses());
+        sb.append(",\"remaining\":").append(game.remainingSolutions().size());
+        sb.append(",\"won\":").append(game.isWon());
+        sb.append(",\"over\":").append(game.isOver());
+        if (game.isHard()) sb.append(",\"hard\":true");
+        if (game.isOver() && !game.isWon()) {
+            sb.append(",\"solution\":\"").append(game.solution()).append('"');
+        }
+        sb.append(",\"history\":[");
+        for (int i = 0; i < game.guessCount(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"guess\":\"").append(game.guessAt(i));
+            sb.append("\",\"pattern\":\"").append(game.patternAt(i)).append("\"}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    // tests all methods to make sure they're working as expected
+    public static void main(String[] args) throws IOException {
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        BucketCache cache = new BucketCache(table, 1024);
+        GameSession session = new GameSession("abc", new Game(table, cache, 8), 0);
+
+        // expect the state to follow the guesses
+        StdOut.println(session.guess("terns"));
+        StdOut.println("(expecting {\"id\":\"abc\",\"guesses\":1,\"maxGuesses\":8," +
+                               "\"remaining\":254,\"won\":false,\"over\":false," +
+                               "\"history\":[{\"guess\":\"terns\"," +
+                               "\"pattern\":\"-----\"}]})");
+
+        // expect the best hint after terns to leave 15 solutions at most
+        StdOut.println(session.hints(Hints.load(table), 1));
+        StdOut.println("(expecting {\"hints\":[{\"guess\":\"idola\"," +
+                               "\"worstCase\":15,\"canWin\":false}]})");
+
+        // expect hints in hard mode to use the revealed hints (aphid y----
+        // reveals an a)
+        GameSession hardSession = new GameSession("hard", new Game(table, cache, 8,
+                                                                   null, true), 0);
+        hardSession.guess("terns");
+        StdOut.println(hardSession.guess("aphid"));
+        StdOut.println("(expecting ...\"over\":false,\"hard\":true,...)");
+        StdOut.println(hardSession.hints(Hints.load(table), 2));
+        StdOut.println("(expecting guesses with an a)");
+
+        // expect touching to update the time last used
+        session.touch(42);
+        StdOut.println("Last used (expecting 42): " + session.lastUsed());
+
+        // expect a lost game to reveal a solution
+        GameSession shortSession = new GameSession("def", new Game(table, cache, 1),
+                                                   0);
+        StdOut.println(shortSession.guess("terns"));
+        StdOut.println("(expecting over and a solution)");
+
+        // expect a guess the journal can't record to fail and be taken back (a
+        // closed journal fails its next write)
+        Path file = Files.createTempFile("session", ".journal");
+        Journal journal = new Journal(file, table, Journal.DEFAULT_SNAPSHOT_EVERY);
+        Game journaled = new Game(table, cache, 8);
+        GameSession recorded = new GameSession("ghi", journaled, 0, journal,
+                                               journal.start("ghi", journaled));
+        journal.close();
+        recorded.guess("terns");
+        try {
+            journal.sync();
+        }
+        catch (UncheckedIOException e) {
+            // the write failed, so the next append fails
+        }
+        boolean failed = false;
+        try {
+            recorded.guess("aphid");
+        }
+        catch (UncheckedIOException e) {
+            failed = true;
+        }
+        StdOut.println("Guess failed, guesses (expecting true, 1): " + failed +
+                               ", " + journaled.guessCount());
+        Files.delete(file);
+
+        // expect a session that was parked (or, as abc is no session id, could
+        // not be) to refuse guesses, so they aren't lost
+        session.close();
+        session.parkIn(new SessionStore(table, 8, 1));
+        try {
+            session.guess("aphid");
+            StdOut.println("Guessed after parking (expecting Closed)");
+        }
+        catch (Closed e) {
+            StdOut.println(e.getMessage() + " (expecting Closed)");
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Inverted index of the valid guesses for finding every guess that meets some
+ * constraints (e.g. the hints revealed so far, for hard mode) without looking
+ * at the words:
+ *
+ * at[position][letter]   guesses with letter at position
+ * atLeast[letter][n - 1] guesses with letter at least n times
+ *
+ * Each entry is a bitset over the guess indices (see SolutionSet, which is
+ * used for the result), so a query is a few dozen ANDs of 203 longs for the
+ * 12972 default guesses: a few microseconds instead of scanning every word.
+ * The index is about 400 KB and read-only, so it is shared between threads
+ * (see PatternTable.letterIndex()).
+ ******************************************************************************/
+
+import java.util.Arrays;
+
+public class GuessIndex {
+
+    private static final int ALPHABET = 26;  // number of letters a-z
+
+    private final int guesses;  // number of valid guesses (bits per bitset)
+    private final int length;  // letters per guess
+    private final int words;  // longs per bitset
+    private final long[][][] at;  // guesses by position and letter
+    private final long[][][] atLeast;  // guesses by letter and count - 1
+
+    // letters required or ruled out where, and how many times each can appear
+    public static class Constraints {
+        private final int length;  // letters per word
+        private final int[] required;  // letter required at each position, or -1
+        private final int[] forbidden;  // bit per letter ruled out at each position
+        private final int[] min;  // fewest times each letter must appear
+        private final int[] max;  // most times each letter may appear
+
+        // creates constraints on words of length letters that every word meets
+        public Constraints(int length) {
+            this.length = length;
+            this.required = new int[length];
+            this.forbidden = new int[length];
+            this.min = new int[ALPHABET];
+            this.max = new int[ALPHABET];
+            Arrays.fill(required, -1);
+            Arrays.fill(max, length);
+        }
+
+        // requires letter ltr (a-z) at position pos
+        public Constraints requireAt(int pos, char ltr) {
+            required[pos] = ltr - 'a';
+            return this;
+        }
+
+        // rules out letter ltr (a-z) at position pos
+        public Constraints forbidAt(int pos, char ltr) {
+            forbidden[pos] |= 1 << (ltr - 'a');
+            return this;
+        }
+
+        // requires letter ltr (a-z) at least n times
+        public Constraints atLeast(char ltr, int n) {
+            min[ltr - 'a'] = Math.max(min[ltr - 'a'], n);
+            return this;
+        }
+
+        // allows letter ltr (a-z) at most n times
+        public Constraints atMost(char ltr, int n) {
+            max[ltr - 'a'] = Math.min(max[ltr - 'a'], n);
+            return this;
+        }
+
+        // adds what hard mode requires after guess (lowercase) got pattern code:
+        // every green kept in place, and every letter shown green or yellow used
+        // at least as many times as it was shown
+        public Constraints addHints(String guess, int code) {
+            int[] shown = new int[ALPHABET];
+            int[] digits = digits(code);
+            for (int i = 0; i < length; i++) {
+                if (digits[i] == Pattern.GREEN) requireAt(i, guess.charAt(i));
+                if (digits[i] != Pattern.GREY) shown[guess.charAt(i) - 'a']++;
+            }
+            for (int ltr = 0; ltr < ALPHABET; ltr++) {
+                if (shown[ltr] > 0) atLeast((char) ('a' + ltr), shown[ltr]);
+            }
+            return this;
+        }
+
+        // adds everything guess (lowercase) getting pattern code reveals, so
+        // only words that would score the same pattern are left: greens in
+        // place, yellows elsewhere, and each letter used exactly as many times
+        // as it was shown if it was also grey (and at least as many otherwise)
+        public Constraints addPattern(String guess, int code) {
+            addHints(guess, code);
+            int[] shown = new int[ALPHABET];
+            boolean[] grey = new boolean[ALPHABET];
+            int[] digits = digits(code);
+            for (int i = 0; i < length; i++) {
+                int ltr = guess.charAt(i) - 'a';
+                if (digits[i] != Pattern.GREEN) forbidAt(i, guess.charAt(i));
+                if (digits[i] == Pattern.GREY) grey[ltr] = true;
+                else shown[ltr]++;
+            }
+            for (int ltr = 0; ltr < ALPHABET; ltr++) {
+                if (grey[ltr]) atMost((char) ('a' + ltr), shown[ltr]);
+            }
+            return this;
+        }
+
+        // returns the digits of pattern code, first letter first
+        private int[] digits(int code) {
+            int[] digits = new int[length];
+            for (int i = length - 1; i >= 0; i--) {
+                digits[i] = code % 3;
+                code /= 3;
+            }
+            return digits;
+        }
+    }
+
+    // indexes the words of guesses (all of the same length)
+    public GuessIndex(Dictionary guesses) {
+        this.guesses = guesses.size();
+        this.length = guesses.size() == 0 ? 0 : Dictionary.length(guesses.packed(0));
+        this.words = (this.guesses + Long.SIZE - 1) / Long.SIZE;
+        this.at = new long[length][ALPHABET][words];
+        this.atLeast = new long[ALPHABET][length][words];
+
+        int[] count = new int[ALPHABET];
+        for (int g = 0; g < this.guesses; g++) {
+            // packed letters are 1 to 26, last letter lowest
+            long packed = guesses.packed(g);
+            Arrays.fill(count, 0);
+            for (int i = length - 1; i >= 0; i--) {
+                int ltr = (int) (packed & 31) - 1;
+                packed >>>= 5;
+                at[i][ltr][g / Long.SIZE] |= 1L << g;
+                atLeast[ltr][count[ltr]++][g / Long.SIZE] |= 1L << g;
+            }
+        }
+    }
+
+    // returns the guesses with letter ltr (a-z) at position pos
+    public SolutionSet withLetterAt(int pos, char ltr) {
+        return SolutionSet.fromBits(guesses, at[pos][ltr - 'a'].clone());
+    }
+
+    // returns the guesses with letter ltr (a-z) at least n times (n at least 1)
+    public SolutionSet withAtLeast(char ltr, int n) {
+        if (n > length) return new SolutionSet(guesses);
+        return SolutionSet.fromBits(guesses, atLeast[ltr - 'a'][n - 1].clone());
+    }
+
+    // returns the guesses meeting every one of the constraints
+    public SolutionSet matching(Constraints constraints) {
+        if (constraints.length != length) {
+            throw new IllegalArgumentException("Constraints are on words of " +
+                                                       constraints.length +
+                                                       " letters, not " + length +
+                                                       ".");
+        }
+        long[] bits = new long[words];
+        Arrays.fill(bits, -1L);
+        if (guesses % Long.SIZE != 0) bits[words - 1] = (1L << guesses) - 1;
+        for (int i = 0; i < length; i++) {
+            int required = constraints.required[i];
+            if (required >= 0) and(bits, at[i][required]);
+            for (int f = constraints.forbidden[i]; f != 0; f &= f - 1) {
+                andNot(bits, at[i][Integer.numberOfTrailingZeros(f)]);
+            }
+        }
+        for (int ltr = 0; ltr < ALPHABET; ltr++) {
+            int min = constraints.min[ltr];
+            int max = constraints.max[ltr];
+            if (min > length || min > max) return new SolutionSet(guesses);
+            if (min > 0) and(bits, atLeast[ltr][min - 1]);
+            if (max < length) andNot(bits, atLeast[ltr][max]);
+        }
+        return SolutionSet.fromBits(guesses, bits);
+    }
+
+    // keeps only the bits of bits that are also in mask
+    private static void and(long[] bits, long[] mask) {
+        for (int i = 0; i < bits.length; i++) bits[i] &= mask[i];
+    }
+
+    // clears the bits of bits that are in mask
+    private static void andNot(long[] bits, long[] mask) {
+        for (int i = 0; i < bits.length; i++) bits[i] &= ~mask[i];
+    }
+
+    // tests all methods to make sure they're working as expected, against
+    // scanning every guess
+    public static void main(String[] args) {
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        Stopwatch timer = new Stopwatch();
+        GuessIndex index = new GuessIndex(table.guesses());
+        StdOut.println("Indexed " + table.guessCount() + " guesses in " +
+                               timer.elapsedTime() + " seconds");
+
+        // expect simple lookups to match the words
+        StdOut.println("Guesses ending in x (expecting " + count(table, "....x") +
+                               "): " + index.withLetterAt(4, 'x').size());
+        StdOut.println("Guesses with three e's (expecting " + count(table, "e.*e.*e") +
+                               "): " + index.withAtLeast('e', 3).size());
+
+        // expect hard mode after terns ----- and loyal -y-gg to need an a in
+        // the fourth place, an l in the fifth, and an l and an o somewhere
+        GuessIndex.Constraints hard = new GuessIndex.Constraints(5);
+        hard.addHints("terns", Pattern.fromString("-----"));
+        hard.addHints("loyal", Pattern.fromString("-y-gg"));
+        SolutionSet legal = index.matching(hard);
+        boolean allMatch = true;
+        for (int g = 0; g < table.guessCount(); g++) {
+            String w = table.guess(g);
+            boolean expected = w.charAt(3) == 'a' && w.charAt(4) == 'l' &&
+                    w.indexOf('o') >= 0;
+            if (legal.contains(g) != expected) allMatch = false;
+        }
+        StdOut.println("Hard mode guesses after loyal (expecting true): " + allMatch +
+                               " (" + legal.size() + " guesses, e.g. " +
+                               table.guess(legal.first()) + ")");
+
+        // expect the guesses consistent with random patterns to be exactly the
+        // guesses scoring the same patterns, and queries to take microseconds
+        allMatch = true;
+        for (int trial = 0; trial < 200; trial++) {
+            int s = StdRandom.uniformInt(table.solutionCount());
+            int[] played = { StdRandom.uniformInt(table.guessCount()),
+                             StdRandom.uniformInt(table.guessCount()) };
+            GuessIndex.Constraints consistent = new GuessIndex.Constraints(5);
+            for (int g : played) {
+                consistent.addPattern(table.guess(g), table.get(g, s));
+            }
+            SolutionSet matching = index.matching(consistent);
+            for (int g = 0; g < table.guessCount(); g++) {
+                // a guess is consistent if, as the answer, it would give the
+                // same patterns to both guesses played
+                Pattern scorer = new Pattern();
+                boolean same = true;
+                for (int p : played) {
+                    int code = scorer.score(table.guess(p).toCharArray(),
+                                            table.guess(g).toCharArray());
+                    if (code != table.get(p, s)) same = false;
+                }
+                if (matching.contains(g) != same) allMatch = false;
+            }
+        }
+        StdOut.println("Consistent guesses match scoring (expecting true): " +
+                               allMatch);
+
+        // time queries once they are compiled
+        GuessIndex.Constraints query = new GuessIndex.Constraints(5);
+        query.addPattern("terns", Pattern.fromString("-----"));
+        query.addPattern("loyal", Pattern.fromString("-y-gg"));
+        int queries = 100_000;
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) found += index.matching(query).size();
+        StdOut.printf("Mean query time: %.2f us (%d matches)%n",
+                      (System.nanoTime() - start) / 1000.0 / queries,
+                      found / queries);
+
+        // expect impossible constraints to match nothing
+        GuessIndex.Constraints none = new GuessIndex.Constraints(5).atLeast('q', 2)
+                                                                  .atMost('q', 1);
+        StdOut.println("Impossible constraints (expecting 0): " +
+                               index.matching(none).size());
+    }
+
+    // returns the number of guesses matching regex (anywhere in the word)
+    private static int count(PatternTable table, String regex) {
+        java.util.regex.Pattern p = java.util.regex.Pattern.compile(regex);
+        int total = 0;
+        for (int g = 0; g < table.guessCount(); g++) {
+            if (p.matcher(table.guess(g)).find()) total++;
+        }
+        return total;
+    }
+}
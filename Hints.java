@@ -0,0 +1,472 @@
+/*******************************************************************************
+ * Suggests the next guess: ranks every valid guess by the most solutions the
+ * adversary could leave after it (the size of its largest bucket), fewest
+ * first. Ties go to guesses that are still possible solutions (which could win
+ * outright), then to the earlier guess.
+ *
+ * Guesses are ranked in parallel, in chunks that each keep their own best
+ * few. The worst of the best k found so far in any chunk is shared as a bound,
+ * and counting a guess's buckets stops as soon as one bucket is larger than
+ * it, so most guesses are rejected after a few solutions.
+ *
+ * The first two moves (the full set, and the set the Buckets adversary leaves
+ * after each first guess) are the most expensive to rank and the same for
+ * every game, so their best BOOK_HINTS guesses are precomputed into an opening
+ * book next to the pattern table (e.g. valid_guesses.book.bin), keyed by the
+ * fingerprint of the set. The book holds the checksum of the word lists, so it
+ * is rebuilt whenever the lists change. Sets not in the book are ranked live.
+ * A caller following a single game can instead keep a BucketHistograms up to
+ * date over its moves and read the hints from it (see best(BucketHistograms,
+ * int)); the server and Game don't, since it takes about 12 MB per game.
+ *
+ * Usage: java Hints [guesses to play first ...]
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class Hints {
+
+    public static final int BOOK_HINTS = 5;  // best guesses stored per book entry
+
+    private static final int CHUNK = 512;  // guesses ranked per parallel task
+
+    private static final String TABLE_SUFFIX = ".patterns.bin";  // of PatternTable
+    private static final String FILE_SUFFIX = ".book.bin";  // after list name
+
+    private static final int MAGIC = 0x41425348;  // "ABSH", start of every book
+    private static final int VERSION = 1;  // layout version of the book file
+
+    // magic, version, hints per entry, # of entries (ints) and the checksum of
+    // the word lists (long)
+    private static final int HEADER_SIZE = 4 * Integer.BYTES + Long.BYTES;
+
+    // fingerprint of the set (long), its size and BOOK_HINTS pairs of guess
+    // index and worst case (ints, with -1 for missing hints)
+    private static final int ENTRY_SIZE = Long.BYTES + Integer.BYTES +
+            2 * BOOK_HINTS * Integer.BYTES;
+
+    private final PatternTable table;  // patterns of every guess vs solution
+    private final int codes;  // number of possible pattern codes
+    private final int[] solutionOf;  // solution index of each guess, or -1
+
+    private final MappedByteBuffer book;  // entries sorted by fingerprint
+    private final int entries;  // number of entries in the book
+
+    // a suggested guess and the most solutions the adversary could leave
+    public static class Hint {
+        private final String guess;  // suggested guess
+        private final int worstCase;  // most solutions left after it
+        private final boolean canWin;  // whether the guess is still a solution
+
+        // creates a hint of guess leaving at most worstCase solutions
+        private Hint(String guess, int worstCase, boolean canWin) {
+            this.guess = guess;
+            this.worstCase = worstCase;
+            this.canWin = canWin;
+        }
+
+        // returns the suggested guess
+        public String guess() {
+            return guess;
+        }
+
+        // returns the most solutions the adversary could leave after the guess
+        public int worstCase() {
+            return worstCase;
+        }
+
+        // returns whether the guess is one of the remaining solutions
+        public boolean canWin() {
+            return canWin;
+        }
+
+        // returns the hint, e.g. "raise (168)"
+        public String toString() {
+            return guess + " (" + worstCase + ")";
+        }
+    }
+
+    // best guesses of one chunk, kept sorted (fewest solutions left first)
+    private class Best {
+        private final int[] guesses;  // guess indices
+        private final int[] worst;  // worst case of each guess
+        private int size;  // number of guesses kept
+
+        // creates an empty list of the best k guesses
+        public Best(int k) {
+            guesses = new int[k];
+            worst = new int[k];
+        }
+
+        // adds the guess at index g with worstCase, unless k better guesses
+        // are already kept
+        public void offer(int g, int worstCase, SolutionSet remSols) {
+            int i = size;
+            while (i > 0 && before(g, worstCase, guesses[i - 1], worst[i - 1],
+                                   remSols)) {
+                i--;
+            }
+            if (i == guesses.length) return;
+            int moved = Math.min(size, guesses.length - 1) - i;
+            System.arraycopy(guesses, i, guesses, i + 1, moved);
+            System.arraycopy(worst, i, worst, i + 1, moved);
+            guesses[i] = g;
+            worst[i] = worstCase;
+            if (size < guesses.length) size++;
+        }
+
+        // returns the worst case of the kth best guess, or the most possible
+        // until k guesses are kept
+        public int bound() {
+            if (size < guesses.length) return Integer.MAX_VALUE;
+            return worst[size - 1];
+        }
+    }
+
+    // creates hints for the guesses of table, with the opening book from file
+    // (building it first if it is missing or was built from other word lists)
+    public Hints(PatternTable table, Path file) {
+        this.table = table;
+        this.codes = Pattern.count(table.wordLength());
+        this.solutionOf = new int[table.guessCount()];
+        for (int g = 0; g < table.guessCount(); g++) {
+            solutionOf[g] = table.solutionIndex(table.guess(g));
+        }
+
+        try {
+            if (!isValid(file)) build(file);
+            try (FileChannel channel = FileChannel.open(file,
+                                                        StandardOpenOption.READ)) {
+                book = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not load opening book " + file, e);
+        }
+        this.entries = book.getInt(3 * Integer.BYTES);
+    }
+
+    // creates hints for the guesses of table, with the opening book next to the
+    // table's file
+    public static Hints load(PatternTable table) {
+        String name = table.file().getFileName().toString();
+        if (name.endsWith(TABLE_SUFFIX)) {
+            name = name.substring(0, name.length() - TABLE_SUFFIX.length());
+        }
+        return new Hints(table, table.file().resolveSibling(name + FILE_SUFFIX));
+    }
+
+    // returns the best k guesses on remSols (fewer if there are fewer guesses),
+    // best first
+    public Hint[] best(SolutionSet remSols, int k) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1.");
+        if (k <= BOOK_HINTS) {
+            Hint[] booked = lookup(remSols, k);
+            if (booked != null) return booked;
+        }
+        Best best = search(remSols, k, null);
+        Hint[] hints = new Hint[best.size];
+        for (int i = 0; i < best.size; i++) {
+            hints[i] = hint(best.guesses[i], best.worst[i], remSols);
+        }
+        return hints;
+    }
+
+    // returns the best k guesses among those tracked by histograms on the
+    // solutions it counts (fewer if it tracks fewer guesses), best first, read
+    // from the worst cases it keeps up to date instead of counting buckets
+    public Hint[] best(BucketHistograms histograms, int k) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1.");
+        SolutionSet remSols = histograms.solutions();
+        Best best = new Best(k);
+        for (int i = 0; i < histograms.size(); i++) {
+            if (histograms.worstCase(i) > best.bound()) continue;
+            best.offer(histograms.guess(i), histograms.worstCase(i), remSols);
+        }
+        Hint[] hints = new Hint[best.size];
+        for (int i = 0; i < best.size; i++) {
+            hints[i] = hint(best.guesses[i], best.worst[i], remSols);
+        }
+        return hints;
+    }
+
+    // returns the best k of the guesses in allowed (a set of guess indices, e.g.
+    // the legal guesses in hard mode) on remSols, best first; the book only
+    // holds the best of every guess, so these are always ranked live
+    public Hint[] best(SolutionSet remSols, int k, SolutionSet allowed) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1.");
+        Best best = search(remSols, k, allowed);
+        Hint[] hints = new Hint[best.size];
+        for (int i = 0; i < best.size; i++) {
+            hints[i] = hint(best.guesses[i], best.worst[i], remSols);
+        }
+        return hints;
+    }
+
+    // returns the hint of the guess at index g leaving at most worstCase of
+    // remSols
+    private Hint hint(int g, int worstCase, SolutionSet remSols) {
+        boolean canWin = solutionOf[g] >= 0 && remSols.contains(solutionOf[g]);
+        return new Hint(table.guess(g), worstCase, canWin);
+    }
+
+    // checks if the guess at index g with worstCase ranks before the guess at
+    // index h with hWorst on remSols
+    private boolean before(int g, int worstCase, int h, int hWorst,
+                           SolutionSet remSols) {
+        if (worstCase != hWorst) return worstCase < hWorst;
+        boolean gWins = solutionOf[g] >= 0 && remSols.contains(solutionOf[g]);
+        boolean hWins = solutionOf[h] >= 0 && remSols.contains(solutionOf[h]);
+        if (gWins != hWins) return gWins;
+        return g < h;
+    }
+
+    // ranks every guess in allowed (or every guess, if allowed is null) on
+    // remSols in parallel and returns the best k
+    private Best search(SolutionSet remSols, int k, SolutionSet allowed) {
+        int[] sols = new int[remSols.size()];
+        for (int s = remSols.next(0), i = 0; s >= 0; s = remSols.next(s + 1)) {
+            sols[i++] = s;
+        }
+
+        // worst case of the kth best guess found in any chunk so far
+        AtomicInteger bound = new AtomicInteger(Integer.MAX_VALUE);
+        int chunks = (table.guessCount() + CHUNK - 1) / CHUNK;
+        List<Best> found = IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            Best best = new Best(k);
+            int[] bucketFreq = new int[codes];
+            int last = Math.min(table.guessCount(), (c + 1) * CHUNK);
+            for (int g = c * CHUNK; g < last; g++) {
+                if (allowed != null && !allowed.contains(g)) continue;
+                // a guess worse than the bound can't be in the best k
+                int limit = Math.min(bound.get(), best.bound());
+                int worstCase = highestFreq(g, sols, bucketFreq, limit);
+                if (worstCase > limit) continue;
+                best.offer(g, worstCase, remSols);
+                if (best.bound() < bound.get()) {
+                    bound.accumulateAndGet(best.bound(), Math::min);
+                }
+            }
+            return best;
+        }).collect(Collectors.toList());
+
+        Best merged = new Best(k);
+        for (Best best : found) {
+            for (int i = 0; i < best.size; i++) {
+                merged.offer(best.guesses[i], best.worst[i], remSols);
+            }
+        }
+        return merged;
+    }
+
+    // returns the most solutions of sols sharing a pattern with the guess at
+    // index g, counting only until some pattern has more than limit solutions;
+    // bucketFreq is all zeros before and after
+    private int highestFreq(int g, int[] sols, int[] bucketFreq, int limit) {
+        int highestFreq = 0;
+        int counted = 0;
+        while (counted < sols.length && highestFreq <= limit) {
+            int freq = ++bucketFreq[table.get(g, sols[counted++])];
+            if (freq > highestFreq) highestFreq = freq;
+        }
+
+        // reset only the patterns counted, unless that is more than every code
+        if (counted < bucketFreq.length) {
+            for (int i = 0; i < counted; i++) bucketFreq[table.get(g, sols[i])] = 0;
+        }
+        else Arrays.fill(bucketFreq, 0);
+        return highestFreq;
+    }
+
+    // returns the best k (at most BOOK_HINTS) guesses on remSols from the book,
+    // or null if remSols is not in it
+    private Hint[] lookup(SolutionSet remSols, int k) {
+        long fingerprint = remSols.fingerprint();
+        int lo = 0;
+        int hi = entries - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = HEADER_SIZE + mid * ENTRY_SIZE;
+            long key = book.getLong(at);
+            if (key < fingerprint) lo = mid + 1;
+            else if (key > fingerprint) hi = mid - 1;
+            else {
+                if (book.getInt(at + Long.BYTES) != remSols.size()) return null;
+                List<Hint> hints = new ArrayList<Hint>();
+                int pairs = at + Long.BYTES + Integer.BYTES;
+                for (int i = 0; i < k; i++) {
+                    int g = book.getInt(pairs + 2 * i * Integer.BYTES);
+                    if (g < 0) break;
+                    int worstCase = book.getInt(pairs + (2 * i + 1) * Integer.BYTES);
+                    hints.add(hint(g, worstCase, remSols));
+                }
+                return hints.toArray(new Hint[0]);
+            }
+        }
+        return null;
+    }
+
+    // checks that file exists and its header matches the word lists
+    private boolean isValid(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) return false;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) return false;
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) return false;
+        if (header.getInt() != BOOK_HINTS) return false;
+        int count = header.getInt();
+        return header.getLong() == table.checksum() &&
+                Files.size(file) == HEADER_SIZE + (long) count * ENTRY_SIZE;
+    }
+
+    // ranks the first move and the second move after every first guess (against
+    // the Buckets adversary) and writes them to file
+    private void build(Path file) throws IOException {
+        SolutionSet all = SolutionSet.all(table.solutionCount());
+
+        // every set the player can face on the first two moves, once each
+        SolutionSet[] sets = IntStream.range(0, table.guessCount()).parallel()
+                                      .mapToObj(g -> new Buckets(g, all, table)
+                                              .getMostRemSols())
+                                      .toArray(SolutionSet[]::new);
+        List<SolutionSet> distinct = new ArrayList<SolutionSet>();
+        distinct.add(all);
+        distinct.addAll(Arrays.asList(sets));
+        distinct = distinct.stream().distinct().collect(Collectors.toList());
+        distinct.sort(Comparator.comparingLong(SolutionSet::fingerprint));
+
+        // rank each set (each ranking is itself parallel)
+        Best[] ranked = distinct.parallelStream()
+                                .map(set -> search(set, BOOK_HINTS, null))
+                                .toArray(Best[]::new);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE +
+                                                        distinct.size() * ENTRY_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(BOOK_HINTS)
+              .putInt(distinct.size()).putLong(table.checksum());
+        for (int e = 0; e < distinct.size(); e++) {
+            buffer.putLong(distinct.get(e).fingerprint());
+            buffer.putInt(distinct.get(e).size());
+            for (int i = 0; i < BOOK_HINTS; i++) {
+                boolean has = i < ranked[e].size;
+                buffer.putInt(has ? ranked[e].guesses[i] : -1);
+                buffer.putInt(has ? ranked[e].worst[i] : -1);
+            }
+        }
+        buffer.flip();
+
+        // write to a temporary file first, so other JVMs never read a partial book
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(),
+                                        file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp,
+                                                        StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            tmp.toFile().setReadable(true, false);  // temp files are owner-only
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // prints the best hints after playing the given guesses, and tests that the
+    // book and the live ranking agree with Buckets
+    public static void main(String[] args) {
+        PatternTable table = PatternTable.load();
+        Stopwatch timer = new Stopwatch();
+        Hints hints = Hints.load(table);
+        StdOut.println("Loaded opening book in " + timer.elapsedTime() +
+                               " seconds (" + hints.entries + " sets)");
+
+        Game game = new Game(table, new BucketCache(table, 1024), args.length + 1);
+        for (String guess : args) game.guess(guess);
+        SolutionSet remSols = game.remainingSolutions();
+        timer = new Stopwatch();
+        Hint[] best = hints.best(remSols, BOOK_HINTS);
+        StdOut.println("Best guesses for " + remSols.size() + " solutions (in " +
+                               timer.elapsedTime() + " seconds): " +
+                               Arrays.toString(best));
+
+        // expect the book and the live ranking to give the same hints
+        SolutionSet all = SolutionSet.all(table.solutionCount());
+        timer = new Stopwatch();
+        Best live = hints.search(all, BOOK_HINTS, null);
+        StdOut.println("Ranked the first move live in " + timer.elapsedTime() +
+                               " seconds");
+        Hint[] booked = hints.lookup(all, BOOK_HINTS);
+        boolean same = booked != null && booked.length == live.size;
+        for (int i = 0; same && i < live.size; i++) {
+            same = booked[i].guess().equals(table.guess(live.guesses[i]));
+        }
+        StdOut.println("Book matches live ranking (expecting true): " + same);
+
+        // expect the worst case of every hint to be the size of its Buckets, and
+        // no guess to do better than the best hint
+        Game terns = new Game(table, new BucketCache(table, 1024), 8);
+        terns.guess("terns");
+        terns.guess("aphid");
+        SolutionSet after = terns.remainingSolutions();
+        timer = new Stopwatch();
+        Hint[] ranked = hints.best(after, 10);
+        double seconds = timer.elapsedTime();
+        boolean sizesMatch = true;
+        for (Hint hint : ranked) {
+            int size = new Buckets(hint.guess(), after, table).getMostRemSols().size();
+            if (size != hint.worstCase()) sizesMatch = false;
+        }
+        int fewest = Integer.MAX_VALUE;
+        for (int g = 0; g < table.guessCount(); g++) {
+            fewest = Math.min(fewest, new Buckets(g, after, table).getMostRemSols()
+                                                               .size());
+        }
+        StdOut.println("Hints after terns, aphid (live, " + seconds + " seconds): " +
+                               Arrays.toString(ranked));
+        StdOut.println("Worst cases match Buckets (expecting true): " + sizesMatch);
+        StdOut.println("Best hint is optimal (expecting true): " +
+                               (ranked[0].worstCase() == fewest));
+
+        // expect histograms kept up to date over the same moves to give the same
+        // hints as ranking live
+        BucketHistograms histograms = new BucketHistograms(table, all);
+        Game tracked = new Game(table, new BucketCache(table, 1024), 8);
+        for (String guess : new String[] { "terns", "aphid" }) {
+            tracked.guess(guess);
+            histograms.update(tracked.remainingSolutions());
+        }
+        timer = new Stopwatch();
+        Hint[] fromHistograms = hints.best(histograms, 10);
+        StdOut.println("Hints from histograms (in " + timer.elapsedTime() +
+                               " seconds) match live ranking (expecting true): " +
+                               Arrays.equals(fromHistograms, ranked, (a, b) ->
+                                       a.toString().compareTo(b.toString())));
+
+        // expect a set of one solution to be won by guessing it
+        SolutionSet one = new SolutionSet(table.solutionCount());
+        one.add(table.solutionIndex("offal"));
+        StdOut.println("Hint for offal alone (expecting offal (1)): " +
+                               hints.best(one, 1)[0]);
+    }
+}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Lock-free histogram of non-negative long values (e.g. nanoseconds or set
+ * sizes), for recording samples on hot paths from many threads at once.
+ *
+ * Values are counted in log-linear buckets, in the style of HdrHistogram:
+ * values below 32 each have their own bucket, and every larger power of two is
+ * split into 32 equal buckets, so a reported percentile is within about 3% of
+ * the true value. All buckets are allocated up front and recording is an
+ * atomic increment of its bucket and of the total (plus a compare-and-set of
+ * the max for a new largest value), so it never allocates or blocks.
+ *
+ * Reading (percentiles, count, mean) is not atomic with respect to recording,
+ * so a report taken while samples are being recorded may be off by the few
+ * samples recorded during the report.
+ ******************************************************************************/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Histogram {
+
+    private static final int SUB_BITS = 5;  // log2 of the buckets per power of two
+    private static final int SUB_COUNT = 1 << SUB_BITS;  // buckets per power of two
+
+    // number of buckets for every long value (powers of two above SUB_COUNT, and
+    // the values below it)
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();  // sum of the samples
+    private final AtomicLong max = new AtomicLong();  // largest sample
+
+    // summary of the histogram at one moment, with getters so it can be read
+    // as a JMX attribute (see MetricsMXBean)
+    public static class Snapshot {
+        private final long count;  // number of samples
+        private final double mean;  // mean of the samples
+        private final long p50;  // median
+        private final long p90;  // 90th percentile
+        private final long p99;  // 99th percentile
+        private final long p999;  // 99.9th percentile
+        private final long max;  // largest sample
+
+        // creates a summary of the given statistics
+        private Snapshot(long count, double mean, long p50, long p90, long p99,
+                         long p999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        // returns the number of samples
+        public long getCount() {
+            return count;
+        }
+
+        // returns the mean of the samples (0 if there are none)
+        public double getMean() {
+            return mean;
+        }
+
+        // returns the median
+        public long getP50() {
+            return p50;
+        }
+
+        // returns the 90th percentile
+        public long getP90() {
+            return p90;
+        }
+
+        // returns the 99th percentile
+        public long getP99() {
+            return p99;
+        }
+
+        // returns the 99.9th percentile
+        public long getP999() {
+            return p999;
+        }
+
+        // returns the largest sample
+        public long getMax() {
+            return max;
+        }
+
+        // returns the summary, e.g. "count 10, mean 4.2, p50 4, ..., max 9",
+        // with every value divided by scale (e.g. 1000 for nanoseconds in us)
+        public String toString(double scale) {
+            return String.format("count %d, mean %.1f, p50 %.1f, p90 %.1f, " +
+                                         "p99 %.1f, p99.9 %.1f, max %.1f", count,
+                                 mean / scale, p50 / scale, p90 / scale,
+                                 p99 / scale, p999 / scale, max / scale);
+        }
+
+        // returns the summary with values as recorded
+        public String toString() {
+            return toString(1);
+        }
+    }
+
+    // returns the bucket of value
+    private static int bucket(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    // returns the largest value in bucket b
+    private static long highest(int b) {
+        if (b < SUB_COUNT) return b;
+        int shift = b / SUB_COUNT - 1;
+        long lowest = (long) (SUB_COUNT + b % SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    // records one sample of value (negative values are recorded as 0)
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        total.add(value);
+        long cur = max.get();
+        while (value > cur && !max.compareAndSet(cur, value)) cur = max.get();
+    }
+
+    // returns the number of samples (the sum of the buckets, so recording
+    // updates one counter less)
+    public long count() {
+        long n = 0;
+        for (int b = 0; b < BUCKETS; b++) n += counts.get(b);
+        return n;
+    }
+
+    // returns the mean of the samples (0 if there are none)
+    public double mean() {
+        long n = count();
+        if (n == 0) return 0;
+        return (double) total.sum() / n;
+    }
+
+    // returns the largest sample (0 if there are none)
+    public long max() {
+        return max.get();
+    }
+
+    // returns the value that percent (0 to 100) of the samples are at most, to
+    // within the precision of the buckets (0 if there are none)
+    public long percentile(double percent) {
+        long n = count();
+        if (n == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) return Math.min(highest(b), max());
+        }
+        return max();
+    }
+
+    // returns a summary of the samples so far
+    public Snapshot snapshot() {
+        return new Snapshot(count(), mean(), percentile(50), percentile(90),
+                            percentile(99), percentile(99.9), max());
+    }
+
+    // forgets every sample
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++) counts.set(b, 0);
+        total.reset();
+        max.set(0);
+    }
+
+    // returns a summary of the samples, e.g. "count 10, mean 4.2, ..."
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    // tests all methods to make sure they're working as expected
+    public static void main(String[] args) throws InterruptedException {
+        Histogram histogram = new Histogram();
+
+        // expect exact values below 32 and the median of 1 to 100 to be 50
+        for (int i = 1; i <= 100; i++) histogram.record(i);
+        StdOut.println("Count (expecting 100): " + histogram.count());
+        StdOut.println("Mean (expecting 50.5): " + histogram.mean());
+        StdOut.println("p10 (expecting 10): " + histogram.percentile(10));
+        StdOut.println("p50 (expecting 50): " + histogram.percentile(50));
+        StdOut.println("p100 (expecting 100): " + histogram.percentile(100));
+
+        // expect every bucket to hold the values that map to it
+        boolean allMatch = true;
+        for (long value = 0; value < 1 << 20; value += 7) {
+            int b = bucket(value);
+            if (value > highest(b) || (b > 0 && value <= highest(b - 1))) {
+                allMatch = false;
+            }
+        }
+        allMatch &= bucket(Long.MAX_VALUE) == BUCKETS - 1;
+        allMatch &= highest(BUCKETS - 1) == Long.MAX_VALUE;
+        StdOut.println("Buckets cover every value (expecting true): " + allMatch);
+
+        // expect large values to be reported within about 3%
+        histogram.reset();
+        for (int i = 1; i <= 1000; i++) histogram.record(i * 1_000_000L);
+        long p99 = histogram.percentile(99);
+        StdOut.println("p99 of 1ms..1000ms within 3% of 990ms (expecting true): " +
+                               (Math.abs(p99 - 990_000_000L) < 0.03 * 990_000_000L));
+        StdOut.println(histogram.snapshot().toString(1_000_000));
+
+        // expect no samples to be lost when threads record at once
+        histogram.reset();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) histogram.record(i);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        StdOut.println("Count from 4 threads (expecting 400000): " +
+                               histogram.count());
+        StdOut.println("Max (expecting 99999): " + histogram.max());
+    }
+}
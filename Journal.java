@@ -0,0 +1,665 @@
+/*******************************************************************************
+ * Append-only binary journal of played games, so games in progress survive the
+ * process dying and every game played is on record. The file starts with a
+ * header (magic and version ints, and the checksum of the word lists, see
+ * PatternTable.checksum()), since records hold guess and solution indices,
+ * followed by the records. Each record is framed as
+ *
+ * length       length of the payload (int)
+ * type         START, MOVE, SNAPSHOT or END (byte)
+ * payload      START: game id (long), max guesses (int), name (short length
+ *                     and UTF-8 bytes, e.g. a server session id), and 1 for
+ *                     a hard mode game (byte, missing in older journals)
+ *              MOVE: game id (long), move number (int), guess index (int),
+ *                    pattern code (int)
+ *              SNAPSHOT: game id (long), move number (int), # of longs (int),
+ *                        bitset of the solutions left after the move (longs)
+ *              END: game id (long)
+ * checksum     CRC32 of the type and payload (int)
+ *
+ * Appending only copies the record into an in-memory buffer, so it adds no
+ * I/O to a guess: a background thread writes the buffer and fsyncs it every
+ * FLUSH_INTERVAL milliseconds (a group commit of every record appended in the
+ * meantime), and sync() waits for the records appended so far to be on disk.
+ *
+ * Opening a journal recovers every game that was started and not ended (see
+ * recovered()). Moves are re-applied from their recorded pattern codes, which
+ * gives the same sets as asking the adversary again (even a Lookahead, whose
+ * answers depend on its time budget) without searching; a snapshot of the set
+ * is written every snapshotEvery moves so recovery only filters the moves
+ * after the last one. A record cut short by a crash (or with a bad checksum)
+ * ends the journal: it and anything after it are truncated. A journal written
+ * for other word lists (or without a header) is moved aside to name.old and a
+ * new one is started, instead of replaying indices into the wrong lists.
+ *
+ * If a write fails, the file is truncated back to the records that were on
+ * disk, so it never holds a torn record in the middle, and every append from
+ * then on (and sync() and close()) throws an UncheckedIOException: games can't
+ * go on being played without being recorded.
+ ******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+public class Journal implements AutoCloseable {
+
+    public static final int DEFAULT_SNAPSHOT_EVERY = 4;  // moves between snapshots
+
+    private static final long FLUSH_INTERVAL = 5;  // milliseconds between fsyncs
+    private static final int BUFFER_SIZE = 1 << 20;  // bytes buffered before writing
+
+    private static final int MAGIC = 0x41424A4E;  // "ABJN", start of a file
+    private static final int VERSION = 1;  // layout of the file
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+
+    private static final byte START = 1;  // a game was started
+    private static final byte MOVE = 2;  // a guess was answered
+    private static final byte SNAPSHOT = 3;  // solutions left after a move
+    private static final byte END = 4;  // a game was ended (no longer recovered)
+
+    // length and type before the payload, and checksum after it
+    private static final int FRAME_SIZE = Integer.BYTES + 1 + Integer.BYTES;
+
+    private final PatternTable table;  // patterns to re-apply moves with
+    private final int snapshotEvery;  // moves between snapshots of a game
+    private final FileChannel channel;  // journal file, positioned at its end
+    private final List<Recovered> recovered;  // games open when it was opened
+
+    // records are appended to active and written from spare, swapping the two
+    // under the lock of this journal
+    private ByteBuffer active;
+    private ByteBuffer spare;
+    private final CRC32 crc = new CRC32();  // checksum of records (under lock)
+    private long nextId;  // id of the next game started (under lock)
+    private long appended;  // number of records appended (under lock)
+
+    private final Object writeLock = new Object();  // held while writing
+    private long durable;  // number of records on disk (under writeLock)
+    private long durableBytes;  // length of the file on disk (under writeLock)
+    private volatile IOException failure;  // error of the failed write, if any
+
+    private final Thread flusher;  // writes and fsyncs the buffer periodically
+    private volatile boolean closed;  // whether close() has been called
+
+    // a game recovered from the journal
+    public static class Recovered {
+        private final long id;  // id of the game in the journal
+        private final String name;  // name given when it was started
+        private final int maxGuesses;  // maximum number of guesses
+        private final boolean hard;  // whether the game is in hard mode
+        private final int[] guessIds;  // index of each guess made
+        private final int[] codes;  // pattern code of each guess made
+        private int moves;  // number of guesses made
+        private SolutionSet remSols;  // solutions left after the last snapshot
+        private int snapshotMoves;  // number of guesses made at that snapshot
+
+        // creates a game started with no guesses made
+        private Recovered(long id, String name, int maxGuesses, boolean hard,
+                          int solutions) {
+            this.id = id;
+            this.name = name;
+            this.maxGuesses = maxGuesses;
+            this.hard = hard;
+            this.guessIds = new int[maxGuesses];
+            this.codes = new int[maxGuesses];
+            this.remSols = SolutionSet.all(solutions);
+        }
+
+        // returns the id of the game in the journal
+        public long id() {
+            return id;
+        }
+
+        // returns the name the game was started with
+        public String name() {
+            return name;
+        }
+
+        // returns the number of guesses made
+        public int moves() {
+            return moves;
+        }
+
+        // returns the game in its recovered state, with guesses answered from
+        // cache (or by adversary, if it is not null)
+        public Game game(PatternTable table, BucketCache cache, Lookahead adversary) {
+            // filter the set of the last snapshot by the moves after it
+            SolutionSet sols = remSols;
+            for (int m = snapshotMoves; m < moves; m++) {
+                SolutionSet next = new SolutionSet(sols.universe());
+                for (int s = sols.next(0); s >= 0; s = sols.next(s + 1)) {
+                    if (table.get(guessIds[m], s) == codes[m]) next.add(s);
+                }
+                sols = next;
+            }
+            return Game.restore(table, cache, maxGuesses, adversary, hard, guessIds,
+                                codes, moves, sols);
+        }
+    }
+
+    // opens the journal in file (creating it if it is missing), recovering the
+    // games that were not ended, and snapshotting games every snapshotEvery
+    // moves (0 for never)
+    public Journal(Path file, PatternTable table, int snapshotEvery) {
+        this.table = table;
+        this.snapshotEvery = snapshotEvery;
+        this.active = ByteBuffer.allocate(BUFFER_SIZE);
+        this.spare = ByteBuffer.allocate(BUFFER_SIZE);
+        try {
+            Map<Long, Recovered> open = new LinkedHashMap<Long, Recovered>();
+            if (Files.exists(file) && !hasHeader(file, table)) {
+                Path old = Paths.get(file + ".old");
+                System.err.println("Journal " + file + " is for other word lists; " +
+                                           "moved it to " + old);
+                Files.move(file, old, StandardCopyOption.REPLACE_EXISTING);
+            }
+            long end = HEADER_SIZE;
+            if (Files.exists(file) && Files.size(file) >= HEADER_SIZE) {
+                end = read(file, open);
+            }
+            this.recovered = new ArrayList<Recovered>(open.values());
+
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(table.checksum());
+                header.flip();
+                while (header.hasRemaining()) channel.write(header, header.position());
+                channel.force(false);
+            }
+            channel.truncate(end);  // drop a record cut short by a crash
+            channel.position(end);
+            durableBytes = end;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not open journal " + file, e);
+        }
+
+        flusher = new Thread(this::flushPeriodically, "journal-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // returns the journal called name (e.g. name.journal) for the words of
+    // table, in the folder named by the system property absurdle.journal.dir
+    // (or the working directory)
+    public static Journal open(PatternTable table, String name) {
+        Path dir = Paths.get(System.getProperty("absurdle.journal.dir", "."));
+        return new Journal(dir.resolve(name + ".journal"), table,
+                           DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    // returns the games that were started and not ended when the journal was
+    // opened, in the order they were started
+    public List<Recovered> recovered() {
+        return recovered;
+    }
+
+    // returns whether file starts with the header of a journal for the word
+    // lists of table (an empty file has no header, but is no one else's either)
+    private static boolean hasHeader(Path file, PatternTable table)
+            throws IOException {
+        long size = Files.size(file);
+        if (size == 0) return true;
+        if (size < HEADER_SIZE) return false;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION &&
+                    in.readLong() == table.checksum();
+        }
+    }
+
+    // reads the records of file (after its header) into the games in open,
+    // returning the position after the last complete record
+    private long read(Path file, Map<Long, Recovered> open) throws IOException {
+        long end = HEADER_SIZE;
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(stream))) {
+            in.skipNBytes(HEADER_SIZE);
+            byte[] record = new byte[64];
+            CRC32 check = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                }
+                catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > BUFFER_SIZE) break;
+                if (record.length < length + 1) record = new byte[length + 1];
+                try {
+                    in.readFully(record, 0, length + 1);
+                    check.reset();
+                    check.update(record, 0, length + 1);
+                    if (in.readInt() != (int) check.getValue()) break;
+                }
+                catch (EOFException e) {
+                    break;  // cut short by a crash
+                }
+                apply(ByteBuffer.wrap(record, 1, length), record[0], open);
+                end += FRAME_SIZE + length;
+            }
+        }
+        return end;
+    }
+
+    // applies the record of type with payload to the games in open
+    private void apply(ByteBuffer payload, byte type, Map<Long, Recovered> open) {
+        long id = payload.getLong();
+        nextId = Math.max(nextId, id + 1);
+        if (type == START) {
+            int maxGuesses = payload.getInt();
+            byte[] name = new byte[payload.getShort()];
+            payload.get(name);
+            boolean hard = payload.hasRemaining() && payload.get() == 1;
+            open.put(id, new Recovered(id, new String(name, StandardCharsets.UTF_8),
+                                       maxGuesses, hard, table.solutionCount()));
+            return;
+        }
+        if (type == END) {
+            open.remove(id);
+            return;
+        }
+
+        Recovered game = open.get(id);
+        if (game == null) return;  // ended, or started before a truncation
+        int move = payload.getInt();
+        if (type == MOVE && move == game.moves && move < game.maxGuesses) {
+            game.guessIds[move] = payload.getInt();
+            game.codes[move] = payload.getInt();
+            game.moves++;
+        }
+        else if (type == SNAPSHOT && move == game.moves) {
+            long[] bits = new long[payload.getInt()];
+            for (int i = 0; i < bits.length; i++) bits[i] = payload.getLong();
+            game.remSols = SolutionSet.fromBits(table.solutionCount(), bits);
+            game.snapshotMoves = move;
+        }
+    }
+
+    // records that game was started, called name, and returns its id
+    public long start(String name, Game game) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Name is too long.");
+        }
+        long id;
+        int length = Long.BYTES + Integer.BYTES + Short.BYTES + bytes.length + 1;
+        while (true) {
+            synchronized (this) {
+                checkWritable();
+                if (active.remaining() >= FRAME_SIZE + length) {
+                    id = nextId++;
+                    int at = begin(START, length);
+                    active.putLong(id).putInt(game.maxGuesses())
+                          .putShort((short) bytes.length).put(bytes)
+                          .put((byte) (game.isHard() ? 1 : 0));
+                    finish(at);
+                    break;
+                }
+            }
+            flush();
+        }
+        // record the moves of a game that was already played (e.g. resumed)
+        for (int m = 0; m < game.guessCount(); m++) record(id, game, m);
+        return id;
+    }
+
+    // records the last guess made in game (with id), and a snapshot of its
+    // solutions every snapshotEvery moves
+    public void move(long id, Game game) {
+        record(id, game, game.guessCount() - 1);
+    }
+
+    // records guess m of game (with id), with a snapshot if it is due
+    private void record(long id, Game game, int m) {
+        boolean snapshot = snapshotEvery > 0 && (m + 1) % snapshotEvery == 0 &&
+                m == game.guessCount() - 1;
+        SolutionSet sols = game.remainingSolutions();
+        int length = Long.BYTES + 3 * Integer.BYTES;
+        int snapLength = Long.BYTES + 2 * Integer.BYTES + sols.words() * Long.BYTES;
+        int needed = FRAME_SIZE + length;
+        if (snapshot) needed += FRAME_SIZE + snapLength;
+        while (true) {
+            synchronized (this) {
+                checkWritable();
+                if (active.remaining() >= needed) {
+                    int at = begin(MOVE, length);
+                    active.putLong(id).putInt(m).putInt(game.guessIdAt(m))
+                          .putInt(game.codeAt(m));
+                    finish(at);
+                    if (snapshot) {
+                        at = begin(SNAPSHOT, snapLength);
+                        active.putLong(id).putInt(m + 1).putInt(sols.words());
+                        for (int i = 0; i < sols.words(); i++) {
+                            active.putLong(sols.word(i));
+                        }
+                        finish(at);
+                    }
+                    return;
+                }
+            }
+            flush();
+        }
+    }
+
+    // records that the game with id ended, so it is no longer recovered
+    public void end(long id) {
+        while (true) {
+            synchronized (this) {
+                checkWritable();
+                if (active.remaining() >= FRAME_SIZE + Long.BYTES) {
+                    int at = begin(END, Long.BYTES);
+                    active.putLong(id);
+                    finish(at);
+                    return;
+                }
+            }
+            flush();
+        }
+    }
+
+    // starts a record of type with a payload of length bytes in the active
+    // buffer and returns its position (called under the lock)
+    private int begin(byte type, int length) {
+        int at = active.position();
+        active.putInt(length).put(type);
+        return at;
+    }
+
+    // ends the record started at position at with its checksum (called under
+    // the lock)
+    private void finish(int at) {
+        crc.reset();
+        crc.update(active.array(), at + Integer.BYTES,
+                   active.position() - at - Integer.BYTES);
+        active.putInt((int) crc.getValue());
+        appended++;
+    }
+
+    // throws an UncheckedIOException if a write has failed
+    private void checkWritable() {
+        IOException e = failure;
+        if (e != null) throw new UncheckedIOException("Could not write journal", e);
+    }
+
+    // writes and fsyncs every record appended so far, or after a failure,
+    // truncates the file back to the records on disk and stops writing
+    private void flush() {
+        synchronized (writeLock) {
+            if (failure != null) return;
+            long upTo;
+            ByteBuffer full;
+            synchronized (this) {
+                upTo = appended;
+                if (upTo == durable) return;
+                full = active;
+                active = spare;
+                spare = full;
+            }
+            try {
+                full.flip();
+                while (full.hasRemaining()) channel.write(full);
+                channel.force(false);
+                durable = upTo;
+                durableBytes = channel.position();
+            }
+            catch (IOException e) {
+                try {
+                    channel.truncate(durableBytes);
+                    channel.position(durableBytes);
+                }
+                catch (IOException t) {
+                    e.addSuppressed(t);
+                }
+                failure = e;
+                System.err.println("Could not write journal: " + e);
+            }
+            finally {
+                full.clear();
+                writeLock.notifyAll();
+            }
+        }
+    }
+
+    // flushes the buffer every FLUSH_INTERVAL milliseconds until closed
+    private void flushPeriodically() {
+        while (!closed) {
+            try {
+                Thread.sleep(FLUSH_INTERVAL);
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            flush();
+        }
+    }
+
+    // waits until every record appended so far is on disk
+    public void sync() {
+        flush();
+        checkWritable();
+    }
+
+    // writes every record appended so far and closes the journal
+    public void close() {
+        closed = true;
+        // wait for the flusher to stop rather than interrupting it: a thread
+        // interrupted while writing to a FileChannel closes the channel
+        try {
+            flusher.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sync();
+        }
+        finally {
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Could not close journal", e);
+            }
+        }
+    }
+
+    // tests all methods to make sure they're working as expected
+    public static void main(String[] args) throws IOException {
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        BucketCache cache = new BucketCache(table, 1 << 16);
+        Path file = Files.createTempFile("games", ".journal");
+        String[] guesses = { "terns", "aphid", "quack", "mambo", "loyal", "offal" };
+
+        // expect a game left unfinished to be recovered in the same state, and a
+        // game that was ended not to be
+        Journal journal = new Journal(file, table, 4);
+        Game played = new Game(table, cache, 8);
+        long id = journal.start("unfinished", played);
+        for (int i = 0; i < 5; i++) {
+            played.guess(guesses[i]);
+            journal.move(id, played);
+        }
+        Game ended = new Game(table, cache, 8);
+        long endedId = journal.start("ended", ended);
+        ended.guess("terns");
+        journal.move(endedId, ended);
+        journal.end(endedId);
+        journal.close();
+
+        journal = new Journal(file, table, 4);
+        StdOut.println("Games recovered (expecting 1): " + journal.recovered().size());
+        Recovered rec = journal.recovered().get(0);
+        Game resumed = rec.game(table, cache, null);
+        StdOut.println("Name, moves (expecting unfinished, 5): " + rec.name() + ", " +
+                               rec.moves());
+        StdOut.println("Same solutions (expecting true): " +
+                               resumed.remainingSolutions()
+                                      .equals(played.remainingSolutions()));
+        StdOut.println("Pattern of loyal (expecting -y-gg): " + resumed.patternAt(4));
+        resumed.guess("offal");
+        StdOut.println("Won after resuming (expecting true): " + resumed.isWon());
+
+        // expect the next game to get a new id
+        long next = journal.start("next", new Game(table, cache, 8));
+        StdOut.println("New id after the recovered ones (expecting true): " +
+                               (next > endedId));
+        journal.close();
+
+        // expect a hard mode game to be recovered in hard mode, with the same
+        // legal guesses
+        Path hardFile = Files.createTempFile("hard", ".journal");
+        Journal hardJournal = new Journal(hardFile, table, 4);
+        Game hard = new Game(table, cache, 8, null, true);
+        long hardId = hardJournal.start("hard", hard);
+        for (int i = 0; i < 2; i++) {
+            hard.guess(guesses[i]);
+            hardJournal.move(hardId, hard);
+        }
+        hardJournal.close();
+        hardJournal = new Journal(hardFile, table, 4);
+        Game hardResumed = hardJournal.recovered().get(0).game(table, cache, null);
+        StdOut.println("Hard mode recovered (expecting true, true): " +
+                               hardResumed.isHard() + ", " +
+                               (hardResumed.legalGuesses().equals(hard.legalGuesses())
+                                       && hard.legalGuesses().size() < table
+                                       .guessCount()));
+        hardJournal.close();
+        Files.delete(hardFile);
+
+        // expect a journal for other word lists not to be replayed, but moved
+        // aside for a new one
+        Path otherFile = Files.createTempFile("other", ".journal");
+        Journal other = new Journal(otherFile, table, 4);
+        other.start("other lists", new Game(table, cache, 8));
+        other.close();
+        try (FileChannel ch = FileChannel.open(otherFile, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(Long.BYTES).putLong(0, ~table.checksum()),
+                     2 * Integer.BYTES);
+        }
+        other = new Journal(otherFile, table, 4);
+        Path moved = Paths.get(otherFile + ".old");
+        StdOut.println("Games for other lists (expecting 0): " +
+                               other.recovered().size());
+        StdOut.println("Moved aside (expecting true): " + Files.exists(moved));
+        other.close();
+        other = new Journal(otherFile, table, 4);
+        StdOut.println("Games after reopening (expecting 0): " +
+                               other.recovered().size());
+        other.close();
+        Files.delete(otherFile);
+        Files.delete(moved);
+
+        // expect appends after a failed write to fail, and the records written
+        // before it to be recovered
+        Path failFile = Files.createTempFile("fail", ".journal");
+        Journal failing = new Journal(failFile, table, 4);
+        Game failed = new Game(table, cache, 8);
+        long failedId = failing.start("failing", failed);
+        failing.sync();
+        failing.channel.close();
+        failed.guess("terns");
+        failing.move(failedId, failed);
+        boolean syncFailed = false;
+        try {
+            failing.sync();
+        }
+        catch (UncheckedIOException e) {
+            syncFailed = true;
+        }
+        boolean appendFailed = false;
+        try {
+            failing.end(failedId);
+        }
+        catch (UncheckedIOException e) {
+            appendFailed = true;
+        }
+        boolean closeFailed = false;
+        try {
+            failing.close();
+        }
+        catch (UncheckedIOException e) {
+            closeFailed = true;
+        }
+        StdOut.println("Sync, append and close failed (expecting true, true, " +
+                               "true): " + syncFailed + ", " + appendFailed + ", " +
+                               closeFailed);
+        failing = new Journal(failFile, table, 4);
+        StdOut.println("Games recovered, moves (expecting 1, 0): " +
+                               failing.recovered().size() + ", " +
+                               failing.recovered().get(0).moves());
+        failing.close();
+        Files.delete(failFile);
+
+        // expect a record cut short by a crash to be dropped, and the games
+        // before it to be recovered
+        long size = Files.size(file);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(size - 3);
+        }
+        journal = new Journal(file, table, 4);
+        StdOut.println("Games after a torn record (expecting 1): " +
+                               journal.recovered().size());
+        journal.close();
+        StdOut.println("Torn record truncated (expecting true): " +
+                               (Files.size(file) < size - 3));
+
+        // expect appending to take well under a microsecond, with fsyncs batched
+        Files.delete(file);
+        journal = new Journal(file, table, DEFAULT_SNAPSHOT_EVERY);
+        int games = 20_000;
+        long appendNanos = 0;
+        long moves = 0;
+        for (int g = 0; g < games; g++) {
+            Game game = new Game(table, cache, 8);
+            long start = System.nanoTime();
+            long gameId = journal.start("", game);
+            appendNanos += System.nanoTime() - start;
+            for (int m = 0; m < 6 && !game.isOver(); m++) {
+                game.guess(guesses[(g + m) % guesses.length]);
+                start = System.nanoTime();
+                journal.move(gameId, game);
+                appendNanos += System.nanoTime() - start;
+                moves++;
+            }
+            start = System.nanoTime();
+            journal.end(gameId);
+            appendNanos += System.nanoTime() - start;
+        }
+        Stopwatch timer = new Stopwatch();
+        journal.sync();
+        StdOut.printf("Journaled %d moves at %.0f ns per record (final sync %.3f " +
+                              "seconds, %d bytes)%n", moves,
+                      (double) appendNanos / (moves + 2 * games), timer.elapsedTime(),
+                      Files.size(file));
+        journal.close();
+        timer = new Stopwatch();
+        journal = new Journal(file, table, DEFAULT_SNAPSHOT_EVERY);
+        StdOut.println("Recovered " + journal.recovered().size() + " open games " +
+                               "(expecting 0) in " + timer.elapsedTime() + " seconds");
+        journal.close();
+        Files.delete(file);
+    }
+}
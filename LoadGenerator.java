@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Load tests the game engine with simulated players, playing games through
+ * Game, the Buckets adversary and a shared BucketCache exactly like Absurdle
+ * and Server, and reports the throughput and latency of each operation:
+ *
+ * start  starting a game (after the last one is over)
+ * hints  asking for the best guess (see Hints)
+ * guess  playing a guess and getting the adversary's answer
+ *
+ * Each player follows a strategy: random (any valid guess), frequency (valid
+ * guesses weighted by how many solutions contain each of their letters, like
+ * a person favouring common letters) or hint (asks for the best guess before
+ * every guess and plays it). The mix of strategies is given as weights, e.g.
+ * random=6,frequency=3,hint=1.
+ *
+ * Actions are scheduled open loop: the ith action is due at i / rate seconds,
+ * whether or not earlier actions are done, and goes to the players in turn.
+ * A player does one action at a time, so an action waits for the player's
+ * last one as well as for a free thread. Latency is measured from when an
+ * action was due, not from when it started, so time spent waiting behind a
+ * slow action is counted instead of hidden (coordinated omission); the
+ * service time (from when it started) is reported as well. Actions due in
+ * the warmup (5 seconds, or absurdle.load.warmup) are not counted, and
+ * neither are engine Metrics recorded during it.
+ *
+ * The threads (twice the processors by default, or absurdle.load.threads) and
+ * the seed of the players' choices (absurdle.load.seed) can also be set.
+ *
+ * Usage: java LoadGenerator [actions per second] [seconds] [players] [mix]
+ ******************************************************************************/
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator {
+
+    private static final int CACHE_SIZE = 1 << 18;  // most guess results cached
+    private static final int MAX_GUESSES = 8;  // guesses per game
+    private static final double MICROS = 1000;  // nanoseconds per microsecond
+    private static final double SECONDS = 1e9;  // nanoseconds per second
+
+    // how a simulated player picks its guesses
+    public enum Strategy { RANDOM, FREQUENCY, HINT }
+
+    private final PatternTable table;  // valid guesses and solutions
+    private final BucketCache cache;  // results of guesses, shared by all games
+    private final Hints hints;  // best guesses, for hint players
+    private final double[] weights;  // frequency weights of the guesses, summed
+
+    // latencies of each operation, counted from when actions were due
+    private final Histogram startNanos = new Histogram();
+    private final Histogram hintsNanos = new Histogram();
+    private final Histogram guessNanos = new Histogram();
+
+    // service times of each operation, counted from when actions started
+    private final Histogram startService = new Histogram();
+    private final Histogram hintsService = new Histogram();
+    private final Histogram guessService = new Histogram();
+
+    private final AtomicLong gamesPlayed = new AtomicLong();  // finished games
+    private final AtomicLong gamesWon = new AtomicLong();  // of which were won
+
+    // creates a load generator for games on the word lists of table
+    public LoadGenerator(PatternTable table) {
+        this.table = table;
+        this.cache = new BucketCache(table, CACHE_SIZE);
+        this.hints = Hints.load(table);
+        Metrics.watch(cache);
+
+        // weigh each guess by the solutions containing each of its letters
+        int[] withLetter = new int[26];
+        for (int s = 0; s < table.solutionCount(); s++) {
+            for (int ltr : distinctLetters(table.solution(s))) withLetter[ltr]++;
+        }
+        this.weights = new double[table.guessCount()];
+        double sum = 0;
+        for (int g = 0; g < weights.length; g++) {
+            for (int ltr : distinctLetters(table.guess(g))) sum += withLetter[ltr];
+            weights[g] = sum;
+        }
+    }
+
+    // returns the distinct letters of word (0 for a to 25 for z)
+    private static int[] distinctLetters(String word) {
+        return word.chars().filter(c -> c >= 'a' && c <= 'z').map(c -> c - 'a')
+                   .distinct().toArray();
+    }
+
+    // one simulated player, playing one game after another
+    private class Player {
+        private final Strategy strategy;  // how the player picks guesses
+        private final SplittableRandom random;  // the player's choices
+        private Game game;  // current game, or null before the first
+        private int hinted = -1;  // guess the last hint gave, or -1
+
+        // creates a player following strategy, choosing with random
+        private Player(Strategy strategy, SplittableRandom random) {
+            this.strategy = strategy;
+            this.random = random;
+        }
+
+        // does the player's next action, which was due at due (System.nanoTime),
+        // recording its time if record is true
+        private synchronized void act(long due, boolean record) {
+            long start = System.nanoTime();
+            Histogram latency;
+            Histogram service;
+            if (game == null || game.isOver()) {
+                if (game != null && record) {
+                    gamesPlayed.incrementAndGet();
+                    if (game.isWon()) gamesWon.incrementAndGet();
+                }
+                game = new Game(table, cache, MAX_GUESSES);
+                latency = startNanos;
+                service = startService;
+            }
+            else if (strategy == Strategy.HINT && hinted < 0) {
+                Hints.Hint[] best = hints.best(game.remainingSolutions(), 1);
+                hinted = table.guessIndex(best[0].guess());
+                latency = hintsNanos;
+                service = hintsService;
+            }
+            else {
+                game.guess(nextGuess());
+                hinted = -1;
+                latency = guessNanos;
+                service = guessService;
+            }
+            long end = System.nanoTime();
+            if (record) {
+                latency.record(end - due);
+                service.record(end - start);
+            }
+        }
+
+        // returns the index of the player's next guess
+        private int nextGuess() {
+            if (strategy == Strategy.HINT) return hinted;
+            if (strategy == Strategy.RANDOM) return random.nextInt(table.guessCount());
+            double target = random.nextDouble() * weights[weights.length - 1];
+            int g = Arrays.binarySearch(weights, target);
+            return Math.min(g < 0 ? -g - 1 : g, weights.length - 1);
+        }
+    }
+
+    // returns the strategies in mix (e.g. random=6,frequency=3,hint=1) with
+    // their weights, in order
+    public static Map<Strategy, Integer> parseMix(String mix) {
+        Map<Strategy, Integer> parsed = new LinkedHashMap<Strategy, Integer>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Mix must be strategy=weight " +
+                                                           "pairs: " + mix);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights can't be negative: " +
+                                                           mix);
+            }
+            parsed.put(Strategy.valueOf(pair[0].trim().toUpperCase()), weight);
+        }
+        return parsed;
+    }
+
+    // runs actions at rate per second for seconds seconds (the first warmup of
+    // them not counted) among players players with the given mix of strategies,
+    // on threads threads, and returns the report
+    public String run(double rate, double seconds, int players,
+                      Map<Strategy, Integer> mix, double warmup, int threads,
+                      long seed) throws InterruptedException {
+        // give each strategy its share of the players, in turn by weight
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        if (total == 0) throw new IllegalArgumentException("Mix has no players.");
+        Strategy[] order = new Strategy[total];
+        int next = 0;
+        for (Map.Entry<Strategy, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) order[next++] = entry.getKey();
+        }
+        SplittableRandom seeds = new SplittableRandom(seed);
+        Player[] all = new Player[players];
+        for (int p = 0; p < players; p++) {
+            all[p] = new Player(order[p % total], seeds.split());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long begin = System.nanoTime();
+        long counted = begin + (long) (warmup * SECONDS);  // first action counted
+        long end = begin + (long) (seconds * SECONDS);
+        long lateNanos = 0;  // most the scheduler was late handing out an action
+        boolean reset = false;  // whether engine metrics were reset after warmup
+        long actions = 0;
+        for (long i = 0; ; i++) {
+            long due = begin + (long) (i / rate * SECONDS);
+            if (due >= end) break;
+            long wait = due - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            boolean record = due >= counted;
+            if (record && !reset) {
+                Metrics.resetAll();
+                reset = true;
+            }
+            if (record) {
+                lateNanos = Math.max(lateNanos, System.nanoTime() - due);
+                actions++;
+            }
+            Player player = all[(int) (i % players)];
+            pool.execute(() -> player.act(due, record));
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        double elapsed = (System.nanoTime() - counted) / SECONDS;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Target %.1f actions/s, did %d in %.1f s (%.1f/s), " +
+                                        "%d players %s, %d threads, %.1f s warmup" +
+                                        " not counted%n", rate, actions, elapsed,
+                                actions / elapsed, players, mix, threads, warmup));
+        sb.append(String.format("Scheduler at most %.1f us late%n",
+                                lateNanos / MICROS));
+        sb.append(line("start", startNanos, startService, elapsed));
+        sb.append(line("hints", hintsNanos, hintsService, elapsed));
+        sb.append(line("guess", guessNanos, guessService, elapsed));
+        sb.append(String.format("Games finished %d, won %d%n", gamesPlayed.get(),
+                                gamesWon.get()));
+        sb.append(Metrics.report());
+        return sb.toString();
+    }
+
+    // returns the report lines of the operation called name
+    private static String line(String name, Histogram latency, Histogram service,
+                               double elapsed) {
+        return String.format("%-6s %.1f/s%n  latency (us) %s%n  service (us) %s%n",
+                             name, latency.count() / elapsed,
+                             latency.snapshot().toString(MICROS),
+                             service.snapshot().toString(MICROS));
+    }
+
+    // runs the load test described by the arguments and prints its report
+    public static void main(String[] args) throws InterruptedException {
+        double rate = args.length > 0 ? Double.parseDouble(args[0]) : 200;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 30;
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        String mix = args.length > 3 ? args[3] : "random=6,frequency=3,hint=1";
+        double warmup = Double.parseDouble(System.getProperty("absurdle.load.warmup",
+                                                              "5"));
+        int processors = Runtime.getRuntime().availableProcessors();
+        int threads = Integer.getInteger("absurdle.load.threads", 2 * processors);
+        long seed = Long.getLong("absurdle.load.seed", 1);
+        if (rate <= 0 || seconds <= warmup || players < 1 || threads < 1) {
+            System.err.println("Usage: java LoadGenerator [actions per second] " +
+                                       "[seconds] [players] [mix], with a positive " +
+                                       "rate, more seconds than the warmup and at " +
+                                       "least one player");
+            System.exit(1);
+        }
+
+        LoadGenerator generator = new LoadGenerator(PatternTable.load());
+        StdOut.print(generator.run(rate, seconds, players, parseMix(mix), warmup,
+                                   threads, seed));
+    }
+}
@@ -0,0 +1,378 @@
+/*******************************************************************************
+ * Adversary that looks more than one move ahead. Buckets always keeps the
+ * bucket with the most solutions right now; Lookahead keeps the bucket that
+ * leaves the most solutions after the player's best replies over the next
+ * few moves, assuming the adversary keeps choosing this way.
+ *
+ * A lookahead of depth 1 is the Buckets adversary. With depth d, the value of
+ * a bucket is the number of solutions left after d - 1 more guesses when the
+ * player picks each guess to leave as few as possible and the adversary picks
+ * each bucket to leave as many as possible. The bucket with the highest value
+ * is kept, with ties broken by size and then like Buckets (fewest greens, then
+ * fewest yellows).
+ *
+ * Each move is searched one depth at a time (1, 2, ...) until the depth or the
+ * time budget runs out, and the answer of the deepest completed search is
+ * used, so a move never takes much longer than the budget. The search prunes
+ * with alpha-beta bounds (a bucket can never be worth more than its size, and
+ * a player's guess is dropped as soon as one of its buckets is too large),
+ * remembers the bounds found for each set it visits, and evaluates the
+ * candidate buckets of each move in parallel.
+ ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+public class Lookahead {
+
+    public static final int DEFAULT_DEPTH = 2;  // moves looked ahead by default
+    public static final long DEFAULT_BUDGET = 50;  // default milliseconds per move
+
+    private static final int MEMO_LIMIT = 1 << 20;  // most sets remembered
+    private static final int CLOCK_INTERVAL = 256;  // guesses between time checks
+
+    private final PatternTable table;  // patterns of every guess vs solution
+    private final int depth;  // most moves to look ahead
+    private final long budget;  // nanoseconds allowed per move
+    private final int codes;  // number of possible pattern codes
+
+    // bounds found for visited sets, where memo.get(d) holds sets searched with
+    // d guesses left, each as (lowest value << 32) | highest value
+    private final List<Map<SolutionSet, Long>> memo;
+    private final AtomicInteger memoSize;  // number of sets in the memo
+
+    // thrown (without a stack trace) to abandon a search that ran out of time
+    private static class OutOfTime extends RuntimeException {
+        private static final long serialVersionUID = 1L;  // never serialized
+
+        public OutOfTime() {
+            super("Out of time.", null, false, false);
+        }
+    }
+
+    private static final OutOfTime OUT_OF_TIME = new OutOfTime();
+
+    // creates an adversary for the words of table that looks up to depth moves
+    // ahead, spending at most about budget milliseconds per move
+    public Lookahead(PatternTable table, int depth, long budget) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be at least 1.");
+        }
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget can't be negative.");
+        }
+        this.table = table;
+        this.depth = depth;
+        this.budget = budget * 1_000_000L;
+        this.codes = Pattern.count(table.wordLength());
+        this.memo = new ArrayList<Map<SolutionSet, Long>>();
+        this.memoSize = new AtomicInteger();
+    }
+
+    // returns the adversary's response to the guess at index guess on remSols
+    public Buckets respond(int guess, SolutionSet remSols) {
+        long deadline = System.nanoTime() + budget;
+        SolutionSet[] parts = remSols.partition(guess, table);
+
+        // depth 1 is the Buckets adversary, which needs no search
+        int[] bucketFreq = new int[codes];
+        for (int code = 0; code < codes; code++) {
+            if (parts[code] != null) bucketFreq[code] = parts[code].size();
+        }
+        int chosen = Buckets.largest(bucketFreq);
+
+        for (int d = 2; d <= depth; d++) {
+            try {
+                chosen = choose(parts, d, deadline);
+            }
+            catch (OutOfTime e) {
+                break;  // keep the answer of the last completed depth
+            }
+        }
+        return Buckets.of(chosen, parts[chosen], table.wordLength());
+    }
+
+    // returns the pattern code of the part with the highest value looking d
+    // moves ahead, evaluating the parts in parallel
+    private int choose(SolutionSet[] parts, int d, long deadline) {
+        // candidates in the order they win ties: largest first, then like Buckets
+        Integer[] order = new Integer[codes];
+        int candidates = 0;
+        for (int code = 0; code < codes; code++) {
+            if (parts[code] != null) order[candidates++] = code;
+        }
+        Arrays.sort(order, 0, candidates, (a, b) -> {
+            if (parts[a].size() != parts[b].size()) {
+                return parts[b].size() - parts[a].size();
+            }
+            if (Pattern.greens(a) != Pattern.greens(b)) {
+                return Pattern.greens(a) - Pattern.greens(b);
+            }
+            if (Pattern.yellows(a) != Pattern.yellows(b)) {
+                return Pattern.yellows(a) - Pattern.yellows(b);
+            }
+            return a - b;
+        });
+
+        // highest value found so far, which prunes the remaining parts
+        AtomicInteger highest = new AtomicInteger();
+        int[] values = new int[candidates];
+        IntStream.range(0, candidates).parallel().forEach(i -> {
+            SolutionSet part = parts[order[i]];
+            // a part can't be worth more than its size (an earlier part of the
+            // same value wins the tie, so equal sizes must still be searched)
+            if (part.size() < highest.get()) return;
+            int value = playerValue(part, d - 1, highest.get() - 1,
+                                    Integer.MAX_VALUE, deadline);
+            values[i] = value;
+            highest.accumulateAndGet(value, Math::max);
+        });
+
+        int best = 0;
+        for (int i = 1; i < candidates; i++) {
+            if (values[i] > values[best]) best = i;
+        }
+        return order[best];
+    }
+
+    // returns the value of remSols when the player has d guesses left: the
+    // fewest solutions the player can be sure to leave (an upper bound if it is
+    // at most alpha, a lower bound if it is at least beta)
+    private int playerValue(SolutionSet remSols, int d, int alpha, int beta,
+                            long deadline) {
+        int size = remSols.size();
+        if (d == 0 || size <= 1) return size;
+
+        Map<SolutionSet, Long> known = memo(d);
+        Long bounds = known.get(remSols);
+        int low = 1;
+        int high = size;
+        if (bounds != null) {
+            low = (int) (bounds >>> 32);
+            high = (int) (long) bounds;
+            if (low == high || low >= beta) return low;
+            if (high <= alpha) return high;
+        }
+
+        // solutions of the set, so each guess doesn't walk the bitset
+        int[] sols = new int[size];
+        for (int s = remSols.next(0), i = 0; s >= 0; s = remSols.next(s + 1)) {
+            sols[i++] = s;
+        }
+        int[] bucketFreq = new int[codes];
+
+        // d guesses split the set into at most codes^d buckets, so the player
+        // can't be sure to leave fewer than this many solutions
+        long buckets = 1;
+        for (int i = 0; i < d && buckets < size; i++) buckets *= codes;
+        int least = Math.max(low, (int) ((size + buckets - 1) / buckets));
+
+        int best = high;
+        for (int g = 0; g < table.guessCount() && best > alpha && best > least;
+             g++) {
+            if (g % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                throw OUT_OF_TIME;
+            }
+            int value = adversaryValue(g, remSols, sols, bucketFreq, d, alpha,
+                                       Math.min(beta, best), deadline);
+            if (value < best) best = value;
+        }
+
+        // remember what this search proved about the set
+        if (best <= alpha) high = Math.min(high, best);
+        else if (best >= beta) low = Math.max(low, best);
+        else {
+            low = best;
+            high = best;
+        }
+        if (memoSize.get() < MEMO_LIMIT) {
+            if (known.put(remSols, ((long) low << 32) | high) == null) {
+                memoSize.incrementAndGet();
+            }
+        }
+        return best;
+    }
+
+    // returns the value of the guess at index g on remSols (whose solutions are
+    // sols) when the player has d guesses left including g: the most solutions
+    // the adversary can keep (an upper bound if it is at most alpha, a lower
+    // bound if it is at least beta); bucketFreq is all zeros and reused between
+    // calls
+    private int adversaryValue(int g, SolutionSet remSols, int[] sols,
+                               int[] bucketFreq, int d, int alpha, int beta,
+                               long deadline) {
+        // on the last guess, stop once the bucket is too large for the player
+        int stop = Integer.MAX_VALUE;
+        if (d == 1) stop = beta;
+        int highestFreq = highestFreq(g, sols, bucketFreq, stop);
+        if (highestFreq >= beta && d == 1) return highestFreq;
+
+        // no bucket can be worth more than its size
+        if (d == 1 || highestFreq <= alpha || highestFreq == 1) return highestFreq;
+
+        // search the buckets largest first, stopping once the rest are too small
+        SolutionSet[] parts = remSols.partition(g, table);
+        Arrays.sort(parts, (a, b) -> {
+            if (a == null || b == null) {
+                return (a == null ? 1 : 0) - (b == null ? 1 : 0);
+            }
+            return b.size() - a.size();
+        });
+        int best = 0;
+        for (SolutionSet part : parts) {
+            if (part == null || part.size() <= best) break;
+            int value = playerValue(part, d - 1, Math.max(alpha, best), beta,
+                                    deadline);
+            if (value > best) best = value;
+            if (best >= beta) break;
+        }
+        return best;
+    }
+
+    // returns the most solutions of sols sharing a pattern with the guess at
+    // index g, counting only until some pattern has stop solutions; bucketFreq
+    // is all zeros before and after
+    private int highestFreq(int g, int[] sols, int[] bucketFreq, int stop) {
+        int highestFreq = 0;
+        int counted = 0;
+        while (counted < sols.length && highestFreq < stop) {
+            int freq = ++bucketFreq[table.get(g, sols[counted++])];
+            if (freq > highestFreq) highestFreq = freq;
+        }
+
+        // reset only the patterns counted when there are fewer of them than
+        // codes (3^8 for eight letter words), instead of clearing every code
+        if (counted < bucketFreq.length) {
+            for (int i = 0; i < counted; i++) bucketFreq[table.get(g, sols[i])] = 0;
+        }
+        else Arrays.fill(bucketFreq, 0);
+        return highestFreq;
+    }
+
+    // returns the map of the memo holding sets searched with d guesses left
+    private synchronized Map<SolutionSet, Long> memo(int d) {
+        while (memo.size() <= d) memo.add(new ConcurrentHashMap<SolutionSet, Long>());
+        return memo.get(d);
+    }
+
+    // returns the value of remSols with d guesses left (see playerValue) by
+    // trying every guess and every bucket, without pruning (for testing)
+    private static int unprunedValue(PatternTable table, SolutionSet remSols,
+                                     int d) {
+        int size = remSols.size();
+        if (d == 0 || size <= 1) return size;
+        int best = size;
+        int[] bucketFreq = new int[Pattern.count(table.wordLength())];
+        for (int g = 0; g < table.guessCount(); g++) {
+            int worst = 0;
+            if (d == 1) {
+                Arrays.fill(bucketFreq, 0);
+                for (int s = remSols.next(0); s >= 0; s = remSols.next(s + 1)) {
+                    worst = Math.max(worst, ++bucketFreq[table.get(g, s)]);
+                }
+            }
+            else {
+                for (SolutionSet part : remSols.partition(g, table)) {
+                    if (part != null) {
+                        worst = Math.max(worst, unprunedValue(table, part, d - 1));
+                    }
+                }
+            }
+            best = Math.min(best, worst);
+        }
+        return best;
+    }
+
+    // tests all methods to make sure they're working as expected, and measures
+    // the time per move
+    public static void main(String[] args) throws java.io.IOException {
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        SolutionSet all = SolutionSet.all(table.solutionCount());
+        int terns = table.guessIndex("terns");
+
+        // expect a lookahead of depth 1 to answer exactly like Buckets
+        Lookahead greedy = new Lookahead(table, 1, DEFAULT_BUDGET);
+        Buckets expected = new Buckets(terns, all, table);
+        Buckets actual = greedy.respond(terns, all);
+        StdOut.println("Depth 1 matches Buckets (expecting true): " +
+                               (expected.getLargestCode() == actual.getLargestCode()
+                                       && expected.getMostRemSols()
+                                                  .equals(actual.getMostRemSols())));
+
+        // expect a deeper lookahead to keep a bucket no easier to reduce
+        Lookahead deep = new Lookahead(table, 2, 10_000);
+        Buckets chosen = deep.respond(terns, all);
+        StdOut.println("Depth 2 after terns: " + chosen.getLargestBucket() + " (" +
+                               chosen.getMostRemSols().size() + " solutions)");
+        int greedyLeft = deep.playerValue(expected.getMostRemSols(), 1, 0,
+                                          Integer.MAX_VALUE, Long.MAX_VALUE);
+        int chosenLeft = deep.playerValue(chosen.getMostRemSols(), 1, 0,
+                                          Integer.MAX_VALUE, Long.MAX_VALUE);
+        StdOut.println("Left after best reply to " + expected.getLargestBucket() +
+                               ", " + chosen.getLargestBucket() + ": " + greedyLeft +
+                               ", " + chosenLeft + " (expecting the second to be " +
+                               "at least the first): " + (chosenLeft >= greedyLeft));
+
+        // expect the player's value with two guesses left (as searched at depth
+        // 3) to match a search without pruning, on a set of several times more
+        // solutions than codes (27 for random three letter words, which keep
+        // the unpruned search short)
+        Random random = new Random(4);
+        Set<String> words = new LinkedHashSet<String>();
+        while (words.size() < 400) {
+            char[] ltrs = new char[3];
+            for (int j = 0; j < ltrs.length; j++) {
+                ltrs[j] = (char) ('a' + random.nextInt(8));
+            }
+            words.add(new String(ltrs));
+        }
+        String[] smallGuesses = words.toArray(new String[0]);
+        String[] smallSols = Arrays.copyOf(smallGuesses, 150);
+        java.nio.file.Path smallFile = java.nio.file.Files.createTempFile(
+                "small", ".patterns.bin");
+        PatternTable small = new PatternTable(new Dictionary(smallGuesses),
+                                              new Dictionary(smallSols), smallFile);
+        Lookahead three = new Lookahead(small, 3, 10_000);
+        SolutionSet smallAll = SolutionSet.all(small.solutionCount());
+        int pruned = three.playerValue(smallAll, 2, 0, Integer.MAX_VALUE,
+                                       Long.MAX_VALUE);
+        int unpruned = unprunedValue(small, smallAll, 2);
+        StdOut.println("Two guesses left, pruned and not: " + pruned + ", " +
+                               unpruned + " (expecting equal): " +
+                               (pruned == unpruned));
+        java.nio.file.Files.delete(smallFile);
+
+        // expect a budget of 0 to fall back to the Buckets answer
+        Lookahead hurried = new Lookahead(table, 3, 0);
+        StdOut.println("No budget matches Buckets (expecting true): " +
+                               (hurried.respond(terns, all).getLargestCode() ==
+                                       expected.getLargestCode()));
+
+        // time moves of random guesses on the full list and the sets of random
+        // games, with the default budget
+        Lookahead timed = new Lookahead(table, DEFAULT_DEPTH, DEFAULT_BUDGET);
+        int moves = 200;
+        double[] millis = new double[moves];
+        SolutionSet remSols = all;
+        for (int i = 0; i < moves; i++) {
+            if (remSols.size() == 1 || i % 5 == 0) remSols = all;
+            int guess = StdRandom.uniformInt(table.guessCount());
+            long start = System.nanoTime();
+            remSols = timed.respond(guess, remSols).getMostRemSols();
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        StdOut.printf("Milliseconds per move: median %.1f, p99 %.1f, max %.1f%n",
+                      millis[moves / 2], millis[moves * 99 / 100],
+                      millis[moves - 1]);
+    }
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Metrics of the engine's hot paths, recorded all the time by the code being
+ * measured (Game, BucketCache and Board) into lock-free Histograms, so they
+ * cost a few atomic increments per sample and never allocate:
+ *
+ * move           nanoseconds taken by the adversary to answer a guess
+ * buckets        nanoseconds taken to compute a Buckets missing from the cache
+ * before, after  number of solutions left before and after each guess
+ * input          nanoseconds from a key typed or clicked to the board being
+ *                shown after it was read
+ *
+ * with the hit rate of every BucketCache being watched. start() registers the
+ * metrics with JMX (see MetricsMXBean) and, if the system property
+ * absurdle.metrics.dump is set to a number of seconds, also prints them to
+ * standard error that often (e.g. java -Dabsurdle.metrics.dump=10 Server).
+ ******************************************************************************/
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class Metrics implements MetricsMXBean {
+
+    public static final String OBJECT_NAME = "absurdle:type=Metrics";  // JMX name
+
+    private static final double MICROS = 1000;  // nanoseconds per microsecond
+
+    public static final Histogram MOVE_NANOS = new Histogram();
+    public static final Histogram BUCKETS_NANOS = new Histogram();
+    public static final Histogram SOLUTIONS_BEFORE = new Histogram();
+    public static final Histogram SOLUTIONS_AFTER = new Histogram();
+    public static final Histogram INPUT_TO_RENDER_NANOS = new Histogram();
+
+    // caches whose hit rates are reported
+    private static final List<BucketCache> CACHES =
+            new CopyOnWriteArrayList<BucketCache>();
+
+    private static final Metrics INSTANCE = new Metrics();  // registered with JMX
+    private static boolean started;  // whether start() has been called
+
+    // the metrics are static, so there is only the one JMX view of them
+    private Metrics() { }
+
+    // reports the hit rate of cache along with the other metrics
+    public static void watch(BucketCache cache) {
+        CACHES.add(cache);
+    }
+
+    // registers the metrics with JMX and starts printing them periodically if
+    // absurdle.metrics.dump is set (does nothing after the first call)
+    public static synchronized void start() {
+        if (started) return;
+        started = true;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException e) {
+            System.err.println("Could not register metrics with JMX: " + e);
+        }
+
+        long period = Long.getLong("absurdle.metrics.dump", 0);
+        if (period <= 0) return;
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(
+                r -> {
+                    Thread t = new Thread(r, "metrics-dump");
+                    t.setDaemon(true);
+                    return t;
+                });
+        dumper.scheduleAtFixedRate(() -> System.err.print(report()), period, period,
+                                   TimeUnit.SECONDS);
+    }
+
+    // returns every metric as text, one per line (times in microseconds)
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("move (us)      ").append(MOVE_NANOS.snapshot().toString(MICROS));
+        sb.append("\nbuckets (us)   ")
+          .append(BUCKETS_NANOS.snapshot().toString(MICROS));
+        sb.append("\nbefore         ").append(SOLUTIONS_BEFORE.snapshot());
+        sb.append("\nafter          ").append(SOLUTIONS_AFTER.snapshot());
+        sb.append("\ninput (us)     ")
+          .append(INPUT_TO_RENDER_NANOS.snapshot().toString(MICROS));
+        sb.append(String.format("%ncache          hits %d, misses %d, hit rate %.3f%n",
+                                cacheHits(), cacheMisses(), cacheHitRate()));
+        return sb.toString();
+    }
+
+    // returns the number of lookups answered by the watched caches
+    private static long cacheHits() {
+        long hits = 0;
+        for (BucketCache cache : CACHES) hits += cache.hits();
+        return hits;
+    }
+
+    // returns the number of lookups the watched caches had to compute
+    private static long cacheMisses() {
+        long misses = 0;
+        for (BucketCache cache : CACHES) misses += cache.misses();
+        return misses;
+    }
+
+    // returns the fraction of lookups answered by the watched caches (0 if none)
+    private static double cacheHitRate() {
+        long hits = cacheHits();
+        long total = hits + cacheMisses();
+        if (total == 0) return 0;
+        return (double) hits / total;
+    }
+
+    // forgets every sample recorded so far (cache counts belong to the caches,
+    // so they are not reset)
+    public static void resetAll() {
+        MOVE_NANOS.reset();
+        BUCKETS_NANOS.reset();
+        SOLUTIONS_BEFORE.reset();
+        SOLUTIONS_AFTER.reset();
+        INPUT_TO_RENDER_NANOS.reset();
+    }
+
+    // MetricsMXBean attributes and operations
+
+    public Histogram.Snapshot getMoveNanos() {
+        return MOVE_NANOS.snapshot();
+    }
+
+    public Histogram.Snapshot getBucketsNanos() {
+        return BUCKETS_NANOS.snapshot();
+    }
+
+    public Histogram.Snapshot getSolutionsBefore() {
+        return SOLUTIONS_BEFORE.snapshot();
+    }
+
+    public Histogram.Snapshot getSolutionsAfter() {
+        return SOLUTIONS_AFTER.snapshot();
+    }
+
+    public Histogram.Snapshot getInputToRenderNanos() {
+        return INPUT_TO_RENDER_NANOS.snapshot();
+    }
+
+    public long getCacheHits() {
+        return cacheHits();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses();
+    }
+
+    public double getCacheHitRate() {
+        return cacheHitRate();
+    }
+
+    public String getReport() {
+        return report();
+    }
+
+    public void reset() {
+        resetAll();
+    }
+
+    // plays a few games and reads the metrics back through JMX
+    public static void main(String[] args) throws Exception {
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        BucketCache cache = new BucketCache(table, 1024);
+        watch(cache);
+        start();
+
+        // expect one move per guess, and the same first guess to hit the cache
+        String[] guesses = { "terns", "aphid", "quack", "mambo", "loyal", "offal" };
+        for (int i = 0; i < 3; i++) {
+            Game game = new Game(table, cache, 8);
+            for (String guess : guesses) game.guess(guess);
+        }
+        StdOut.println("Moves (expecting 18): " + MOVE_NANOS.count());
+        StdOut.println("Buckets computed (expecting 6): " + BUCKETS_NANOS.count());
+        StdOut.println("Most solutions before (expecting 2311): " +
+                               SOLUTIONS_BEFORE.max());
+        StdOut.println("Most solutions after (expecting 254): " +
+                               SOLUTIONS_AFTER.max());
+
+        // expect the same counts through JMX
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        javax.management.openmbean.CompositeData move =
+                (javax.management.openmbean.CompositeData)
+                        ManagementFactory.getPlatformMBeanServer()
+                                         .getAttribute(name, "MoveNanos");
+        StdOut.println("Moves through JMX (expecting 18): " + move.get("count"));
+        Object hitRate = ManagementFactory.getPlatformMBeanServer()
+                                          .getAttribute(name, "CacheHitRate");
+        StdOut.println("Cache hit rate through JMX (expecting 0.667): " +
+                               String.format("%.3f", (Double) hitRate));
+        StdOut.print(report());
+
+        // expect reset to forget the samples
+        ManagementFactory.getPlatformMBeanServer().invoke(name, "reset", null, null);
+        StdOut.println("Moves after reset (expecting 0): " + MOVE_NANOS.count());
+    }
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * JMX view of the engine's metrics (see Metrics), registered as
+ * absurdle:type=Metrics so it can be read with jconsole or any JMX client.
+ * Histograms are read as composite attributes (count, mean, percentiles and
+ * max; see Histogram.Snapshot).
+ ******************************************************************************/
+
+public interface MetricsMXBean {
+
+    // returns the nanoseconds taken by the adversary to answer each guess
+    Histogram.Snapshot getMoveNanos();
+
+    // returns the nanoseconds taken to compute each Buckets not in a cache
+    Histogram.Snapshot getBucketsNanos();
+
+    // returns the number of solutions left before each guess
+    Histogram.Snapshot getSolutionsBefore();
+
+    // returns the number of solutions left after each guess
+    Histogram.Snapshot getSolutionsAfter();
+
+    // returns the nanoseconds from each key typed or clicked on a Board to the
+    // board being shown after it was read
+    Histogram.Snapshot getInputToRenderNanos();
+
+    // returns the number of lookups answered by the watched caches
+    long getCacheHits();
+
+    // returns the number of lookups the watched caches had to compute
+    long getCacheMisses();
+
+    // returns the fraction of lookups answered by the watched caches
+    double getCacheHitRate();
+
+    // returns every metric as text (see Metrics.report)
+    String getReport();
+
+    // forgets every sample recorded so far (but not the caches' counts)
+    void reset();
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Scores a guess against a solution, encoding the color pattern response as a
+ * base-3 integer instead of a string. Each position of the guess contributes
+ * one digit, with the first letter as the most significant digit:
+ *
+ * 0 (grey) means the letter is not in the solution (or already used up).
+ * 1 (green) means the letter is in the same position in the solution.
+ * 2 (yellow) means the letter is in the solution in a different position.
+ *
+ * The digits are ordered grey < green < yellow so that comparing two codes
+ * compares their "g-y--" strings in the same order ('-' < 'g' < 'y'), which
+ * keeps the tie-breaking in Buckets identical to the string version.
+ *
+ * A five letter guess has 3^5 = 243 possible codes (0 to 242), and an eight
+ * letter guess 3^8 = 6561 (0 to 6560). Scoring reuses a fixed 26 slot letter
+ * counter, so a Pattern object does not allocate after it is created (but
+ * should not be shared between threads).
+ ******************************************************************************/
+
+public class Pattern {
+
+    public static final int GREY = 0;  // digit for a letter not in the solution
+    public static final int GREEN = 1;  // digit for a letter in the right spot
+    public static final int YELLOW = 2;  // digit for a letter in the wrong spot
+
+    private static final int ALPHABET = 26;  // number of letters a-z
+
+    // number of times each letter a-z is left to appear in the solution
+    private final int[] ltrFreq = new int[ALPHABET];
+
+    // returns the pattern code of guess against sol (both lowercase), where
+    // sol is at least as long as guess
+    public int score(char[] guess, char[] sol) {
+        // count the letters of sol that are not already matched by a green
+        for (int i = 0; i < sol.length; i++) {
+            if (i >= guess.length || sol[i] != guess[i]) ltrFreq[sol[i] - 'a']++;
+        }
+
+        int code = 0;
+        for (int i = 0; i < guess.length; i++) {
+            int digit = GREY;
+            if (guess[i] == sol[i]) digit = GREEN;
+            else {
+                int ltr = guess[i] - 'a';
+                // ensure letter is in sol and is not marked more times than in sol
+                if (ltr >= 0 && ltr < ALPHABET && ltrFreq[ltr] > 0) {
+                    digit = YELLOW;
+                    ltrFreq[ltr]--;
+                }
+            }
+            code = code * 3 + digit;
+        }
+
+        // reset the counter for the next call
+        for (int i = 0; i < sol.length; i++) ltrFreq[sol[i] - 'a'] = 0;
+
+        return code;
+    }
+
+    // returns the number of possible codes for a guess with length letters
+    public static int count(int length) {
+        int total = 1;
+        for (int i = 0; i < length; i++) total *= 3;
+        return total;
+    }
+
+    // returns the number of greens in the pattern code
+    public static int greens(int code) {
+        return digits(code, GREEN);
+    }
+
+    // returns the number of yellows in the pattern code
+    public static int yellows(int code) {
+        return digits(code, YELLOW);
+    }
+
+    // returns the number of digits in code equal to digit
+    private static int digits(int code, int digit) {
+        int total = 0;
+        while (code > 0) {
+            if (code % 3 == digit) total++;
+            code /= 3;
+        }
+        return total;
+    }
+
+    // returns the "g-y--" string of the pattern code for a guess with length
+    // letters
+    public static String toString(int code, int length) {
+        char[] pattern = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            int digit = code % 3;
+            if (digit == GREEN) pattern[i] = 'g';
+            else if (digit == YELLOW) pattern[i] = 'y';
+            else pattern[i] = '-';
+            code /= 3;
+        }
+        return new String(pattern);
+    }
+
+    // returns the pattern code of a "g-y--" string
+    public static int fromString(String pattern) {
+        int code = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            int digit = GREY;
+            if (c == 'g') digit = GREEN;
+            else if (c == 'y') digit = YELLOW;
+            code = code * 3 + digit;
+        }
+        return code;
+    }
+
+    // tests all methods to make sure they're working as expected
+    public static void main(String[] args) {
+        Pattern scorer = new Pattern();
+
+        // expect the pattern -y-gg b/c the first l is not marked as there is only
+        // one l in offal, and it's in the last position
+        int code = scorer.score("loyal".toCharArray(), "offal".toCharArray());
+        StdOut.println("loyal vs offal (expecting -y-gg): " +
+                               toString(code, 5));
+
+        // expect the first e to be grey b/c both e's in terse are already green
+        code = scorer.score("eerie".toCharArray(), "terse".toCharArray());
+        StdOut.println("eerie vs terse (expecting -gg-g): " +
+                               toString(code, 5));
+
+        // expect only one e to be yellow (and the counter to be reset between calls)
+        code = scorer.score("speed".toCharArray(), "abide".toCharArray());
+        StdOut.println("speed vs abide (expecting --y-y): " +
+                               toString(code, 5));
+
+        // expect codes to range from 0 (-----) to 242 (yyyyy)
+        StdOut.println("Number of codes (expecting 243): " + count(5));
+        StdOut.println("Code of ----- (expecting 0): " + fromString("-----"));
+        StdOut.println("Code of yyyyy (expecting 242): " + fromString("yyyyy"));
+
+        // expect counts of greens and yellows to match the string
+        code = fromString("gyg-y");
+        StdOut.println("Greens in gyg-y (expecting 2): " + greens(code));
+        StdOut.println("Yellows in gyg-y (expecting 2): " + yellows(code));
+        StdOut.println("gyg-y round trip (expecting gyg-y): " +
+                               toString(code, 5));
+    }
+}
@@ -0,0 +1,395 @@
+/*******************************************************************************
+ * Precomputed table of the pattern code (see Pattern) of every valid guess
+ * against every valid solution, one byte per pair for words of up to five
+ * letters (about 30 MB for the default word lists) and two bytes per pair for
+ * longer words (up to ten letters).
+ *
+ * The table is generated from the word lists once (scoring rows of guesses in
+ * parallel with a ColumnScorer) and written to a file next to them. The file
+ * starts with a header holding the word counts and a checksum of the word
+ * lists, so it is regenerated whenever the lists change. The file is then
+ * memory-mapped read-only, so every JVM on the same machine shares the same
+ * pages instead of holding its own copy. Tables too large for one mapping
+ * (over 1 GB) are mapped in chunks of whole rows.
+ *
+ * The word lists default to the ones in the words folder, and can be changed
+ * with the system properties absurdle.guesses and absurdle.solutions (e.g.
+ * java -Dabsurdle.guesses=words/six.txt -Dabsurdle.solutions=words/six_sols.txt
+ * Absurdle). All words of both lists must have the same length.
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+public class PatternTable {
+
+    public static final String GUESSES_FILE = "words/valid_guesses.txt";
+    public static final String SOLUTIONS_FILE = "words/valid_solutions.txt";
+
+    public static final int MAX_WORD_LENGTH = 10;  // longest words (3^10 < 2^16)
+
+    private static final String FILE_SUFFIX = ".patterns.bin";  // after list name
+
+    private static final int MAGIC = 0x41425344;  // "ABSD", start of every table
+    private static final int VERSION = 3;  // layout version of the table file
+
+    // magic, version, word length, # of guesses, # of solutions (ints) and the
+    // checksum of the word lists (long)
+    private static final int HEADER_SIZE = 5 * Integer.BYTES + Long.BYTES;
+
+    private static final long CHUNK_SIZE = 1L << 30;  // most bytes per mapping
+
+    private final Dictionary guesses;  // valid guesses, by index
+    private final Dictionary sols;  // valid solutions, by index
+    private final int wordLength;  // letters per word
+    private final Path file;  // file the table is mapped from
+    private final long checksum;  // checksum of the word lists (see checksum)
+
+    private final int rowSize;  // codes per guess row (# of solutions)
+    private final int codeBytes;  // bytes per code (1 or 2)
+    private final int rowShift;  // log2 of the number of guess rows per chunk
+    private final int rowMask;  // rows per chunk - 1
+    private final MappedByteBuffer[] chunks;  // codes, whole rows per chunk
+    private final MappedByteBuffer bytes;  // only chunk of 1 byte codes, or null
+    private volatile ColumnScorer columns;  // solutions by column, made when needed
+    private volatile GuessIndex letterIndex;  // guesses by letter, made when needed
+
+    // loads (or generates) the table for the word lists named by the system
+    // properties absurdle.guesses and absurdle.solutions, or the default lists
+    public static PatternTable load() {
+        return load(System.getProperty("absurdle.guesses", GUESSES_FILE),
+                    System.getProperty("absurdle.solutions", SOLUTIONS_FILE));
+    }
+
+    // loads (or generates) the table for the word lists in the given files (see
+    // WordLists for the order of their ids)
+    public static PatternTable load(String guessesFile, String solutionsFile) {
+        WordLists lists = WordLists.load(guessesFile, solutionsFile);
+        return new PatternTable(lists.guesses(), lists.solutions(),
+                                WordLists.binaryFile(guessesFile, FILE_SUFFIX));
+    }
+
+    // loads the table for guesses x sols from file, generating the file first if
+    // it is missing or was generated from different word lists
+    public PatternTable(Dictionary guesses, Dictionary sols, Path file) {
+        this.guesses = guesses;
+        this.sols = sols;
+        this.wordLength = checkLengths(guesses, sols);
+        this.rowSize = sols.size();
+        this.codeBytes = Pattern.count(wordLength) <= 256 ? 1 : 2;
+
+        // whole rows per chunk, rounded down to a power of two
+        long rowBytes = Math.max(1L, (long) sols.size() * codeBytes);
+        long rows = Math.max(1L, Math.min(CHUNK_SIZE / rowBytes, 1L << 30));
+        this.rowShift = Long.SIZE - 1 - Long.numberOfLeadingZeros(rows);
+        this.rowMask = (1 << rowShift) - 1;
+
+        this.file = file;
+        this.checksum = checksum(guesses, sols);
+        try {
+            if (!isValid(file, checksum)) generate(file, checksum);
+            this.chunks = map(file, FileChannel.MapMode.READ_ONLY);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not load pattern table " + file, e);
+        }
+        // the default lists fit one chunk of bytes, so look them up directly
+        if (chunks.length == 1 && codeBytes == 1) this.bytes = chunks[0];
+        else this.bytes = null;
+    }
+
+    // returns the length shared by every word of guesses and sols
+    private static int checkLengths(Dictionary guesses, Dictionary sols) {
+        int length = 0;
+        if (sols.size() > 0) length = Dictionary.length(sols.packed(0));
+        else if (guesses.size() > 0) length = Dictionary.length(guesses.packed(0));
+        if (length > MAX_WORD_LENGTH) {
+            throw new IllegalArgumentException("Words can have at most " +
+                                                       MAX_WORD_LENGTH + " letters.");
+        }
+        for (int g = 0; g < guesses.size(); g++) {
+            if (Dictionary.length(guesses.packed(g)) != length) {
+                throw new IllegalArgumentException("Guess " + guesses.word(g) +
+                                                           " is not " + length +
+                                                           " letters long.");
+            }
+        }
+        for (int s = 0; s < sols.size(); s++) {
+            if (Dictionary.length(sols.packed(s)) != length) {
+                throw new IllegalArgumentException("Solution " + sols.word(s) +
+                                                           " is not " + length +
+                                                           " letters long.");
+            }
+        }
+        return length;
+    }
+
+    // returns the number of valid guesses
+    public int guessCount() {
+        return guesses.size();
+    }
+
+    // returns the number of valid solutions
+    public int solutionCount() {
+        return sols.size();
+    }
+
+    // returns the dictionary of valid guesses
+    public Dictionary guesses() {
+        return guesses;
+    }
+
+    // returns the dictionary of valid solutions
+    public Dictionary solutions() {
+        return sols;
+    }
+
+    // returns the guess at index guess
+    public String guess(int guess) {
+        return guesses.word(guess);
+    }
+
+    // returns the solution at index sol
+    public String solution(int sol) {
+        return sols.word(sol);
+    }
+
+    // returns the index of guess, or -1 if it is not a valid guess
+    public int guessIndex(String guess) {
+        return guesses.id(guess);
+    }
+
+    // returns the index of sol, or -1 if it is not a valid solution
+    public int solutionIndex(String sol) {
+        return sols.id(sol);
+    }
+
+    // returns the pattern code of the guess at index guess against the solution
+    // at index sol
+    public int get(int guess, int sol) {
+        if (bytes != null) return bytes.get(guess * rowSize + sol) & 0xFF;
+        int pair = (guess & rowMask) * rowSize + sol;
+        if (codeBytes == 1) return chunks[guess >>> rowShift].get(pair) & 0xFF;
+        return chunks[guess >>> rowShift].getShort(pair * 2) & 0xFFFF;
+    }
+
+    // returns the bytes of the table file (header and codes)
+    private long fileSize() {
+        return HEADER_SIZE + (long) guesses.size() * sols.size() * codeBytes;
+    }
+
+    // maps the codes of file in chunks of whole rows
+    private MappedByteBuffer[] map(Path file, FileChannel.MapMode mode)
+            throws IOException {
+        int rows = 1 << rowShift;
+        int count = (guesses.size() + rows - 1) / rows;
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        long rowBytes = (long) sols.size() * codeBytes;
+        StandardOpenOption[] options = { StandardOpenOption.READ };
+        if (mode == FileChannel.MapMode.READ_WRITE) {
+            options = new StandardOpenOption[] {
+                    StandardOpenOption.READ, StandardOpenOption.WRITE
+            };
+        }
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            for (int i = 0; i < count; i++) {
+                long first = (long) i * rows;
+                long last = Math.min(guesses.size(), first + rows);
+                mapped[i] = channel.map(mode, HEADER_SIZE + first * rowBytes,
+                                        (last - first) * rowBytes);
+            }
+        }
+        return mapped;
+    }
+
+    // checks that file exists and its header matches the word lists
+    private boolean isValid(Path file, long checksum) throws IOException {
+        if (!Files.exists(file)) return false;
+        if (Files.size(file) != fileSize()) return false;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) return false;
+            }
+        }
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION
+                && header.getInt() == wordLength && header.getInt() == guesses.size()
+                && header.getInt() == sols.size() && header.getLong() == checksum;
+    }
+
+    // scores every guess against every solution and writes the table to file
+    private void generate(Path file, long checksum) throws IOException {
+        // write to a temporary file first, so other JVMs never map a partial table
+        // (a bare file name has no parent, so resolve it against the directory)
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(),
+                                        file.getFileName().toString(), ".tmp");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(wordLength)
+                  .putInt(guesses.size()).putInt(sols.size()).putLong(checksum);
+            header.flip();
+            try (FileChannel channel = FileChannel.open(tmp,
+                                                        StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) channel.write(header);
+                // extend the file to its full size before mapping it
+                channel.write(ByteBuffer.allocate(1), fileSize() - 1);
+            }
+
+            // score rows of guesses in parallel, each into its own part of the file
+            ColumnScorer scorer = columns();
+            MappedByteBuffer[] out = map(tmp, FileChannel.MapMode.READ_WRITE);
+            IntStream.range(0, guesses.size()).parallel().forEach(g -> {
+                int[] codes = new int[sols.size()];
+                scorer.scoreAll(guesses.word(g).toCharArray(), codes);
+                MappedByteBuffer chunk = out[g >>> rowShift];
+                int row = (g & rowMask) * sols.size();
+                for (int s = 0; s < sols.size(); s++) {
+                    if (codeBytes == 1) chunk.put(row + s, (byte) codes[s]);
+                    else chunk.putShort((row + s) * 2, (short) codes[s]);
+                }
+            });
+            for (MappedByteBuffer chunk : out) chunk.force();
+
+            tmp.toFile().setReadable(true, false);  // temp files are owner-only
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // returns the solutions laid out by column for scoring guesses against all
+    // of them at once (see ColumnScorer)
+    public ColumnScorer columns() {
+        ColumnScorer scorer = columns;
+        if (scorer == null) {
+            // racing threads build equal scorers, so either one can be kept
+            scorer = new ColumnScorer(sols);
+            columns = scorer;
+        }
+        return scorer;
+    }
+
+    // returns the index of the guesses by letter and position (see GuessIndex)
+    public GuessIndex letterIndex() {
+        GuessIndex index = letterIndex;
+        if (index == null) {
+            // racing threads build equal indexes, so either one can be kept
+            index = new GuessIndex(guesses);
+            letterIndex = index;
+        }
+        return index;
+    }
+
+    // returns the file the table is mapped from
+    public Path file() {
+        return file;
+    }
+
+    // returns the checksum of the word lists, which changes whenever the lists
+    // (or their order) change, for files derived from the table (see Hints)
+    public long checksum() {
+        return checksum;
+    }
+
+    // returns the number of letters per word (0 if there are no words)
+    public int wordLength() {
+        return wordLength;
+    }
+
+    // returns a checksum of the contents (and order) of both word lists, from the
+    // packed words so no Strings are created
+    private static long checksum(Dictionary guesses, Dictionary sols) {
+        CRC32 crc = new CRC32();
+        ByteBuffer word = ByteBuffer.allocate(Long.BYTES);
+        for (int g = 0; g < guesses.size(); g++) {
+            crc.update(word.clear().putLong(guesses.packed(g)).flip());
+        }
+        crc.update(0);  // separates the two lists (no word packs to 0)
+        for (int s = 0; s < sols.size(); s++) {
+            crc.update(word.clear().putLong(sols.packed(s)).flip());
+        }
+        return crc.getValue();
+    }
+
+    // tests all instance methods to make sure they're working as expected
+    public static void main(String[] args) throws IOException {
+        Stopwatch timer = new Stopwatch();
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        StdOut.println("Loaded table in " + timer.elapsedTime() + " seconds");
+
+        StdOut.println("Number of guesses (expecting 12972): " + table.guessCount());
+        StdOut.println("Number of solutions (expecting 2311): " +
+                               table.solutionCount());
+
+        // expect the same pattern as scoring loyal against offal directly
+        int guess = table.guessIndex("loyal");
+        int sol = table.solutionIndex("offal");
+        StdOut.println("loyal vs offal (expecting -y-gg): " +
+                               Pattern.toString(table.get(guess, sol), 5));
+
+        // expect words that are not in the lists to have no index
+        StdOut.println("Index of xxxxx (expecting -1): " + table.guessIndex("xxxxx"));
+        StdOut.println("Index of aahed as a solution (expecting -1): " +
+                               table.solutionIndex("aahed"));
+
+        // expect a second load to map the existing file instead of regenerating
+        timer = new Stopwatch();
+        PatternTable.load("words/valid_guesses.txt", "words/valid_solutions.txt");
+        StdOut.println("Reloaded table in " + timer.elapsedTime() + " seconds");
+
+        // expect tables of random words of 4 to 8 letters (with two byte codes
+        // past 5 letters) to hold the same codes as scoring the words directly
+        Path dir = Files.createTempDirectory("patterns");
+        Pattern scorer = new Pattern();
+        for (int length = 4; length <= 8; length++) {
+            String[] words = new String[500];
+            for (int i = 0; i < words.length; i++) {
+                char[] ltrs = new char[length];
+                // few letters, so words share letters and have repeats
+                for (int j = 0; j < length; j++) {
+                    ltrs[j] = (char) ('a' + StdRandom.uniformInt(8));
+                }
+                words[i] = new String(ltrs);
+            }
+            Dictionary guesses = new Dictionary(words);
+            Dictionary sols = new Dictionary(java.util.Arrays.copyOf(words, 100));
+            PatternTable small = new PatternTable(guesses, sols,
+                                                  dir.resolve(length + ".bin"));
+            boolean allMatch = true;
+            for (int g = 0; g < guesses.size(); g++) {
+                for (int s = 0; s < sols.size(); s++) {
+                    int code = scorer.score(guesses.word(g).toCharArray(),
+                                            sols.word(s).toCharArray());
+                    if (small.get(g, s) != code) allMatch = false;
+                }
+            }
+            StdOut.println(length + " letter table matches scoring (expecting " +
+                                   "true): " + allMatch);
+            Files.delete(dir.resolve(length + ".bin"));
+        }
+        Files.delete(dir);
+
+        // expect a table at a bare file name to be written to the working
+        // directory
+        Path bare = java.nio.file.Paths.get("patterns-test.bin");
+        Dictionary few = new Dictionary(new String[] { "aback", "crane", "zonal" });
+        PatternTable bareTable = new PatternTable(few, few, bare);
+        StdOut.println("Table at a bare name written (expecting true, 121): " +
+                               Files.exists(bare) + ", " + bareTable.get(0, 0));
+        Files.delete(bare);
+    }
+}
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Serves games of Absurdle over HTTP with JSON responses on localhost, for
+ * many players at once. Each game is a GameSession in a SessionRegistry:
+ *
+ * POST   /games             starts a game, returning its state (with its id);
+ *                           a body of {"hard":true} starts it in hard mode
+ * GET    /games/{id}        returns the state of a game
+ * POST   /games/{id}/guess  plays the guess in the body, e.g. {"guess":"terns"}
+ *                           (or just terns), returning the new state
+ * GET    /games/{id}/hints  returns the best next guesses (see Hints)
+ * DELETE /games/{id}        ends a game
+ *
+ * Errors are returned as {"error":"..."} with status 400 (invalid guess or
+ * request), 404 (no such game), 409 (game over) or 503 (too many games).
+ *
+ * Each request is handled on its own virtual thread where the JVM has them
+ * (Java 21 and later), and on a pool of platform threads otherwise. Sessions
+ * idle for longer than the timeout are evicted in the background. Sessions are
+ * recorded in a Journal (server.journal), so they survive a restart. With
+ * -Dabsurdle.parked=<games>, idle sessions are parked off the heap in a
+ * SessionStore of that many games instead of being evicted (in the file
+ * absurdle.parked.file, if it is set, so they stay parked across restarts).
+ *
+ * Usage: java Server [port] [max guesses] [max sessions] [timeout seconds]
+ ******************************************************************************/
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+public class Server {
+
+    private static final int CACHE_SIZE = 1 << 18;  // most guess results cached
+    private static final int MAX_BODY = 1024;  // most bytes of a request body read
+    private static final int HINTS = Hints.BOOK_HINTS;  // hints returned per request
+
+    // guess in a JSON body, e.g. {"guess":"terns"}
+    private static final java.util.regex.Pattern GUESS_JSON =
+            java.util.regex.Pattern.compile("\"guess\"\\s*:\\s*\"([^\"]*)\"");
+
+    // hard mode asked for in a JSON body, i.e. {"hard":true}
+    private static final java.util.regex.Pattern HARD_JSON =
+            java.util.regex.Pattern.compile("\"hard\"\\s*:\\s*true");
+
+    private final SessionRegistry registry;  // games being played
+    private final Hints hints;  // suggests the next guess of a game
+
+    // creates a server of the games in registry, with hints from hints
+    public Server(SessionRegistry registry, Hints hints) {
+        this.registry = registry;
+        this.hints = hints;
+    }
+
+    // handles one request to /games
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String uri = exchange.getRequestURI().getPath();
+            // the context also matches paths that only start with /games
+            if (!uri.equals("/games") && !uri.startsWith("/games/")) {
+                respond(exchange, 404, error("Not found."));
+                return;
+            }
+            String[] path = uri.split("/");
+            // path is "", "games", then the id and action if given
+            long now = System.nanoTime();
+
+            if (path.length == 2 && method.equals("POST")) {
+                GameSession session = registry.create(now, readHard(exchange));
+                if (session == null) respond(exchange, 503, error("Too many games."));
+                else respond(exchange, 201, session.toJson());
+                return;
+            }
+            if (path.length < 3 || path.length > 4) {
+                respond(exchange, 404, error("Not found."));
+                return;
+            }
+
+            // the session is played through the registry, which looks it up
+            // again if it is parked while this request waits for it
+            String id = path[2];
+            if (path.length == 4 && path[3].equals("guess") && method.equals("POST")) {
+                try {
+                    String guess = readGuess(exchange);
+                    respondWith(exchange, registry.with(id, now, s -> s.guess(guess)));
+                }
+                catch (IllegalArgumentException e) {
+                    respond(exchange, 400, error(e.getMessage()));
+                }
+                catch (IllegalStateException e) {
+                    respond(exchange, 409, error(e.getMessage()));
+                }
+            }
+            else if (path.length == 4 && path[3].equals("hints") &&
+                    method.equals("GET")) {
+                try {
+                    respondWith(exchange,
+                                registry.with(id, now, s -> s.hints(hints, HINTS)));
+                }
+                catch (IllegalStateException e) {
+                    respond(exchange, 409, error(e.getMessage()));
+                }
+            }
+            else if (path.length == 3 && method.equals("GET")) {
+                respondWith(exchange, registry.with(id, now, GameSession::toJson));
+            }
+            else if (path.length == 3 && method.equals("DELETE")) {
+                if (registry.remove(id)) respond(exchange, 204, null);
+                else respond(exchange, 404, error("No such game."));
+            }
+            else respond(exchange, 405, error("Method not allowed."));
+        }
+        catch (UncheckedIOException e) {
+            // the journal could not record the game
+            respond(exchange, 500, error("Could not record the game."));
+        }
+        catch (RuntimeException e) {
+            // a bug, which would otherwise drop the connection without a response
+            System.err.println("Error handling " + exchange.getRequestMethod() + " " +
+                                       exchange.getRequestURI() + ":");
+            e.printStackTrace();
+            respond(exchange, 500, error("Internal error."));
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    // returns the guess in the body of the request (as JSON or plain text)
+    private static String readGuess(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        byte[] bytes = in.readNBytes(MAX_BODY);
+        String body = new String(bytes, StandardCharsets.UTF_8).trim();
+        Matcher matcher = GUESS_JSON.matcher(body);
+        if (matcher.find()) return matcher.group(1);
+        if (body.startsWith("{")) {
+            throw new IllegalArgumentException("Body has no guess.");
+        }
+        return body;
+    }
+
+    // checks if the body of the request asks for hard mode
+    private static boolean readHard(HttpExchange exchange) throws IOException {
+        byte[] bytes = exchange.getRequestBody().readNBytes(MAX_BODY);
+        return HARD_JSON.matcher(new String(bytes, StandardCharsets.UTF_8)).find();
+    }
+
+    // returns message as a JSON error, escaping quotes, backslashes and control
+    // characters
+    private static String error(String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":\"");
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '\\' || c == '"') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append("\"}").toString();
+    }
+
+    // sends json, the state of a game, or a 404 if it is null (there was no
+    // such game)
+    private static void respondWith(HttpExchange exchange, String json)
+            throws IOException {
+        if (json == null) respond(exchange, 404, error("No such game."));
+        else respond(exchange, 200, json);
+    }
+
+    // sends json (or nothing, if json is null) with status code
+    private static void respond(HttpExchange exchange, int code, String json)
+            throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // returns an executor running each task on a new virtual thread, or a pool
+    // of platform threads if the JVM has no virtual threads
+    public static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            int threads = 4 * Runtime.getRuntime().availableProcessors();
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    // starts serving the games of registry (with hints from hints) on port of
+    // localhost (0 for any free port) and returns the HTTP server
+    public static HttpServer start(SessionRegistry registry, Hints hints, int port)
+            throws IOException {
+        Server server = new Server(registry, hints);
+        InetSocketAddress address = new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port);
+        HttpServer http = HttpServer.create(address, 0);
+        http.createContext("/games", server::handle);
+        http.setExecutor(newExecutor());
+        http.start();
+        return http;
+    }
+
+    // serves games until the process is stopped
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        int maxGuesses = 8;
+        int maxSessions = 100_000;
+        long timeout = 600;
+        if (args.length > 0) port = Integer.parseInt(args[0]);
+        if (args.length > 1) maxGuesses = Integer.parseInt(args[1]);
+        if (args.length > 2) maxSessions = Integer.parseInt(args[2]);
+        if (args.length > 3) timeout = Long.parseLong(args[3]);
+
+        PatternTable table = PatternTable.load();
+        BucketCache cache = new BucketCache(table, CACHE_SIZE);
+        Metrics.watch(cache);
+        Metrics.start();  // JMX, and periodic dumps if asked for (see Metrics)
+        Journal journal = Journal.open(table, "server");
+        SessionStore parked = null;
+        int parkedGames = Integer.getInteger("absurdle.parked", 0);
+        if (parkedGames > 0) {
+            String file = System.getProperty("absurdle.parked.file");
+            parked = new SessionStore(table, maxGuesses, parkedGames,
+                                      file == null ? null : Paths.get(file));
+        }
+        SessionRegistry registry = new SessionRegistry(table, cache, maxGuesses,
+                                                       maxSessions, timeout * 1000,
+                                                       journal, parked);
+        StdOut.println("Restored " + registry.size() + " games from the journal");
+        if (parked != null) {
+            StdOut.println(registry.parkedSize() + " games parked in the store");
+        }
+
+        // evict idle sessions a few times per timeout
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(
+                r -> {
+                    Thread t = new Thread(r, "session-evictor");
+                    t.setDaemon(true);
+                    return t;
+                });
+        long period = Math.max(1, timeout * 1000 / 4);
+        evictor.scheduleAtFixedRate(() -> {
+            // an exception escaping the task would cancel every later run
+            try {
+                registry.evictIdle(System.nanoTime());
+            }
+            catch (RuntimeException e) {
+                System.err.println("Could not evict idle games: " + e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+
+        Hints hints = Hints.load(table);  // builds the opening book the first time
+        HttpServer http = start(registry, hints, port);
+        StdOut.println("Serving games on http://localhost:" +
+                               http.getAddress().getPort() + "/games");
+    }
+}
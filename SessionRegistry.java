@@ -0,0 +1,381 @@
+/*******************************************************************************
+ * Sessions of the server (see Server) by id. Sessions are created with a new
+ * Game against a shared BucketCache (so the many games reaching the same
+ * states share their results), looked up by id on every request, and evicted
+ * once they have been idle for longer than the timeout.
+ *
+ * The registry holds at most capacity sessions, so the server's memory is
+ * bounded: creating a session when it is full first evicts idle sessions, and
+ * fails if there are none. Ids are random 128-bit hex strings, so players can't
+ * guess each other's sessions.
+ *
+ * With a Journal, every session is recorded in it (and ended when it is
+ * removed or evicted), and the sessions left open when the journal was last
+ * closed are restored, with their ids, when the registry is created.
+ *
+ * With a SessionStore, idle sessions are parked in it (off the heap) instead of
+ * being evicted, and taken back out when they are next used, so only sessions
+ * in use count against the capacity. Parked sessions stay open in the journal,
+ * and ones still parked in a store file are not restored from the journal.
+ * Sessions are only evicted (and ended) once the store is full, or if their
+ * games allow more guesses than the store's. A request that looked a session
+ * up before it was parked looks it up again (see with()), so its guess is
+ * played on the unparked game instead of being lost.
+ ******************************************************************************/
+
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class SessionRegistry {
+
+    private final PatternTable table;  // valid guesses and solutions
+    private final BucketCache cache;  // results of guesses, shared by all games
+    private final int maxGuesses;  // maximum number of guesses per game
+    private final int capacity;  // most sessions held at once
+    private final long timeout;  // nanoseconds a session may be idle
+
+    private final ConcurrentHashMap<String, GameSession> sessions;  // by id
+    private final AtomicInteger size;  // number of sessions, bounded by capacity
+    private final SecureRandom random;  // source of session ids
+    private final Journal journal;  // journal sessions are recorded in, or null
+    private final SessionStore parked;  // store idle sessions are parked in, or null
+
+    // creates an empty registry of at most capacity games of at most maxGuesses
+    // guesses, evicting sessions idle for more than timeout milliseconds
+    public SessionRegistry(PatternTable table, BucketCache cache, int maxGuesses,
+                           int capacity, long timeout) {
+        this(table, cache, maxGuesses, capacity, timeout, null);
+    }
+
+    // creates a registry like the one above, recording sessions in journal (if it
+    // is not null) and restoring the sessions it recovered
+    public SessionRegistry(PatternTable table, BucketCache cache, int maxGuesses,
+                           int capacity, long timeout, Journal journal) {
+        this(table, cache, maxGuesses, capacity, timeout, journal, null);
+    }
+
+    // creates a registry like the one above, parking idle sessions in parked (if
+    // it is not null) instead of evicting them
+    public SessionRegistry(PatternTable table, BucketCache cache, int maxGuesses,
+                           int capacity, long timeout, Journal journal,
+                           SessionStore parked) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        this.table = table;
+        this.cache = cache;
+        this.maxGuesses = maxGuesses;
+        this.capacity = capacity;
+        this.timeout = timeout * 1_000_000L;
+        this.sessions = new ConcurrentHashMap<String, GameSession>();
+        this.size = new AtomicInteger();
+        this.random = new SecureRandom();
+        this.journal = journal;
+        this.parked = parked;
+        if (journal != null) restore(System.nanoTime());
+    }
+
+    // restores the sessions the journal recovered, used at now (nanoseconds),
+    // ending those that no longer fit (and leaving those still parked)
+    private void restore(long now) {
+        for (Journal.Recovered rec : journal.recovered()) {
+            if (parked != null && isParked(rec.name())) continue;
+            if (!reserve()) {
+                journal.end(rec.id());
+                continue;
+            }
+            GameSession session = new GameSession(rec.name(),
+                                                  rec.game(table, cache, null), now,
+                                                  journal, rec.id());
+            sessions.put(session.id(), session);
+        }
+    }
+
+    // creates a session with a new game at now (nanoseconds), or returns null if
+    // the registry is full of sessions that are still in use
+    public GameSession create(long now) {
+        return create(now, false);
+    }
+
+    // creates a session like the one above, with a game in hard mode if hard is
+    // true (see Game)
+    public GameSession create(long now, boolean hard) {
+        if (!reserve()) {
+            evictIdle(now);
+            if (!reserve()) return null;
+        }
+
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder id = new StringBuilder();
+        for (byte b : bytes) id.append(String.format("%02x", b));
+
+        Game game = new Game(table, cache, maxGuesses, null, hard);
+        GameSession session;
+        if (journal == null) session = new GameSession(id.toString(), game, now);
+        else {
+            session = new GameSession(id.toString(), game, now, journal,
+                                      journal.start(id.toString(), game));
+        }
+        sessions.put(session.id(), session);
+        return session;
+    }
+
+    // takes one of the capacity places, returning false if there are none left
+    private boolean reserve() {
+        while (true) {
+            int cur = size.get();
+            if (cur >= capacity) return false;
+            if (size.compareAndSet(cur, cur + 1)) return true;
+        }
+    }
+
+    // returns the session called id, marked as used at now (nanoseconds), taking
+    // it out of the store if it is parked, or null if there is none (or it is
+    // parked and the registry is full of sessions in use)
+    public GameSession get(String id, long now) {
+        GameSession session = sessions.get(id);
+        if (session == null && parked != null && isParked(id)) {
+            if (!reserve()) {
+                evictIdle(now);
+                if (!reserve()) return null;
+            }
+            // only one of the requests for a parked session unparks it
+            boolean[] unparked = new boolean[1];
+            session = sessions.computeIfAbsent(id, key -> {
+                SessionStore.Parked p = parked.unpark(key, cache);
+                if (p == null) return null;
+                unparked[0] = true;
+                return new GameSession(key, p.game(), now, journal, p.journalId());
+            });
+            if (!unparked[0]) size.decrementAndGet();
+        }
+        if (session != null) session.touch(now);
+        return session;
+    }
+
+    // returns the result of action on the session called id (see get), or null
+    // if there is none; if the session is parked or removed before action gets
+    // it, it is looked up again
+    public <T> T with(String id, long now, Function<GameSession, T> action) {
+        while (true) {
+            GameSession session = get(id, now);
+            if (session == null) return null;
+            try {
+                return action.apply(session);
+            }
+            catch (GameSession.Closed e) {
+                // parked or removed meanwhile: look it up again (a session being
+                // parked stays in the map until it is in the store)
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    // removes the session called id (parked or not), returning false if there
+    // was none
+    public boolean remove(String id) {
+        GameSession session = sessions.remove(id);
+        if (session == null) {
+            if (parked == null || !isParked(id)) return false;
+            SessionStore.Parked p = parked.unpark(id, cache);
+            if (p == null) return false;
+            if (journal != null) journal.end(p.journalId());
+            return true;
+        }
+        size.decrementAndGet();
+        // a session evictIdle() closed first is ended there
+        if (session.close() && journal != null) journal.end(session.journalId());
+        return true;
+    }
+
+    // parks (or, if it can't be parked, removes) every session idle for more
+    // than the timeout at now (nanoseconds) and returns the number parked or
+    // removed
+    public int evictIdle(long now) {
+        int evicted = 0;
+        Iterator<GameSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            GameSession session = it.next();
+            // park the session before taking it out of the map, so a request
+            // for it finds it (and, as it is closed, looks again) until it can
+            // be unparked
+            if (now - session.lastUsed() > timeout && session.close()) {
+                boolean isParked = parked != null && session.parkIn(parked);
+                if (sessions.remove(session.id(), session)) size.decrementAndGet();
+                else if (isParked) {
+                    // removed meanwhile, so it must not stay parked
+                    parked.unpark(session.id(), cache);
+                    isParked = false;
+                }
+                if (!isParked && journal != null) journal.end(session.journalId());
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    // returns whether the session called id is parked (ids that could not be
+    // parked, such as names of games not started by a registry, never are)
+    private boolean isParked(String id) {
+        try {
+            return parked.contains(id);
+        }
+        catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // returns the number of parked sessions (0 if there is no store)
+    public int parkedSize() {
+        return parked == null ? 0 : parked.size();
+    }
+
+    // returns the number of sessions
+    public int size() {
+        return size.get();
+    }
+
+    // tests all methods to make sure they're working as expected
+    public static void main(String[] args) throws java.io.IOException {
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        BucketCache cache = new BucketCache(table, 1024);
+        long second = 1_000_000_000L;  // nanoseconds in a second
+        SessionRegistry registry = new SessionRegistry(table, cache, 8, 3, 1000);
+
+        // expect sessions to be found by id until they are removed
+        GameSession a = registry.create(0);
+        GameSession b = registry.create(0);
+        StdOut.println("Found a (expecting true): " + (registry.get(a.id(), 0) == a));
+        StdOut.println("Different ids (expecting true): " + !a.id().equals(b.id()));
+        StdOut.println("Removed b (expecting true): " + registry.remove(b.id()));
+        StdOut.println("Found b (expecting false): " +
+                               (registry.get(b.id(), 0) != null));
+        StdOut.println("Size (expecting 1): " + registry.size());
+
+        // expect a full registry of sessions in use to refuse new sessions
+        registry.create(0);
+        registry.create(0);
+        StdOut.println("Created when full (expecting false): " +
+                               (registry.create(0) != null));
+
+        // expect a session used recently to survive eviction, and the rest not to
+        registry.get(a.id(), 2 * second);
+        StdOut.println("Evicted (expecting 2): " + registry.evictIdle(2 * second));
+        StdOut.println("Found a (expecting true): " +
+                               (registry.get(a.id(), 2 * second) == a));
+
+        // expect a full registry to evict idle sessions to make room
+        registry.create(2 * second);
+        registry.create(2 * second);
+        StdOut.println("Created after idle (expecting true): " +
+                               (registry.create(5 * second) != null));
+        StdOut.println("Size (expecting 1): " + registry.size());
+
+        // expect sessions in a journal to be restored with their guesses, and
+        // removed sessions not to be
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("sessions",
+                                                                     ".journal");
+        Journal journal = new Journal(file, table, Journal.DEFAULT_SNAPSHOT_EVERY);
+        registry = new SessionRegistry(table, cache, 8, 3, 1000, journal);
+        GameSession kept = registry.create(0);
+        kept.guess("terns");
+        registry.remove(registry.create(0).id());
+        journal.close();
+
+        journal = new Journal(file, table, Journal.DEFAULT_SNAPSHOT_EVERY);
+        registry = new SessionRegistry(table, cache, 8, 3, 1000, journal);
+        GameSession restored = registry.get(kept.id(), 0);
+        StdOut.println("Restored sessions (expecting 1): " + registry.size());
+        StdOut.println("Same state (expecting true): " +
+                               (restored != null &&
+                                       restored.toJson().equals(kept.toJson())));
+        journal.close();
+        java.nio.file.Files.delete(file);
+
+        // expect idle sessions to be parked instead of evicted, to come back with
+        // their guesses when used, and to make room for other sessions meanwhile
+        SessionStore store = new SessionStore(table, 8, 1);
+        registry = new SessionRegistry(table, cache, 8, 1, 1000, null, store);
+        GameSession idle = registry.create(0);
+        idle.guess("terns");
+        String idleJson = idle.toJson();
+        GameSession other = registry.create(2 * second);
+        StdOut.println("Created after parking (expecting true): " + (other != null));
+        StdOut.println("Parked (expecting 1): " + registry.parkedSize());
+        registry.get(other.id(), 4 * second);
+        StdOut.println("Found parked when full (expecting false): " +
+                               (registry.get(idle.id(), 4 * second) != null));
+        registry.remove(other.id());
+        GameSession unparked = registry.get(idle.id(), 4 * second);
+        StdOut.println("Same state after parking (expecting true): " +
+                               (unparked != null &&
+                                       unparked.toJson().equals(idleJson)));
+        StdOut.println("Parked (expecting 0): " + registry.parkedSize());
+        StdOut.println("Size (expecting 1): " + registry.size());
+
+        // expect sessions to be evicted once the store is full
+        registry.create(8 * second);  // parks the unparked session
+        StdOut.println("Created when store full (expecting true): " +
+                               (registry.create(10 * second) != null));
+        StdOut.println("Parked (expecting 1): " + registry.parkedSize());
+
+        // expect removing a parked session to take it out of the store
+        StdOut.println("Removed parked (expecting true): " +
+                               registry.remove(idle.id()));
+        StdOut.println("Parked (expecting 0): " + registry.parkedSize());
+
+        // expect a guess on a session parked after it was looked up to be played
+        // on the unparked game, not lost
+        SessionRegistry parking = new SessionRegistry(table, cache, 8, 1, 1000, null,
+                                                      new SessionStore(table, 8, 1));
+        GameSession held = parking.create(20 * second);
+        held.guess("terns");
+        boolean[] first = { true };
+        String json = parking.with(held.id(), 20 * second, s -> {
+            if (first[0]) {
+                first[0] = false;
+                parking.evictIdle(30 * second);  // parks s before it is played
+            }
+            return s.guess("aphid");
+        });
+        StdOut.println("Played after parking meanwhile (expecting true): " +
+                               (json != null && json.contains("\"guesses\":2")));
+
+        // expect a session parked and unparked over and over to be found by every
+        // request meanwhile
+        SessionRegistry churning = new SessionRegistry(table, cache, 8, 1, 1000,
+                                                       null,
+                                                       new SessionStore(table, 8, 1));
+        String churned = churning.create(0).id();
+        Thread evictor = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) churning.evictIdle(Long.MAX_VALUE / 2);
+        });
+        evictor.start();
+        int missed = 0;
+        while (evictor.isAlive()) {
+            if (churning.with(churned, 0, GameSession::toJson) == null) missed++;
+        }
+        try {
+            evictor.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        StdOut.println("Requests not finding it (expecting 0): " + missed);
+
+        // expect a session that can't be parked (its game allows more guesses than
+        // the store's) to be evicted instead of stopping eviction
+        SessionStore small = new SessionStore(table, 6, 1);
+        registry = new SessionRegistry(table, cache, 8, 1, 1000, null, small);
+        registry.create(0);
+        StdOut.println("Evicted unparkable (expecting 1): " +
+                               registry.evictIdle(2 * second));
+        StdOut.println("Parked, size (expecting 0, 0): " + registry.parkedSize() +
+                               ", " + registry.size());
+    }
+}
@@ -0,0 +1,629 @@
+/*******************************************************************************
+ * Off-heap store of parked games (see SessionRegistry, which parks idle
+ * sessions here and takes them back when they are used again), so millions of
+ * idle games cost the garbage collector nothing: each game is kept in a fixed
+ * size slot of direct memory, or of a memory-mapped file so parked games
+ * survive a restart. A slot holds
+ *
+ * state        FREE or USED (int)
+ * next         next free slot, while free (int)
+ * id           session id, a 128-bit hex string (two longs)
+ * parked at    System.currentTimeMillis() when it was parked (long)
+ * journal id   id of the game in the Journal, or -1 (long)
+ * moves        number of guesses made (int)
+ * flags        max guesses and hard mode (int)
+ * guesses      guess index of each guess made (maxGuesses ints)
+ * codes        pattern code of each guess made (maxGuesses ints)
+ * solutions    bitset of the solutions left (see SolutionSet.fromBits)
+ *
+ * which is 408 bytes for the default lists and eight guesses. Slots are
+ * split across buffers of at most 1 GB (a ByteBuffer holds at most 2 GB),
+ * after a header recording the word lists and layout in a mapped file.
+ *
+ * The store is split into segments (up to 64, of at least 1024 slots each),
+ * each with its own lock, a range of slots with its own free list (threaded
+ * through the slots' next fields), and its own part of an open-addressing
+ * (linear probing) index of slot numbers, also off-heap. A game is indexed in
+ * the segment picked by the hash of its id, and takes a free slot of that
+ * segment's range, or of the next range with one, so the store only fills up
+ * once every slot is used. Parking and unparking hold one segment's lock at a
+ * time, and a slot is only written while it is in no free list or index, so
+ * games in different segments are parked in parallel. The free lists and the
+ * index are rebuilt from the slots' states when a file is opened. A slot is
+ * only marked USED once the game is written, and games are never written over
+ * in place, so a process dying while parking leaves the slot free.
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SessionStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x41425353;  // "ABSS", start of a file
+    private static final int VERSION = 1;  // layout of the file
+    private static final int HEADER_SIZE = 64;  // bytes before the first slot
+    private static final int MAX_BUFFER = 1 << 30;  // most bytes per buffer
+    private static final int SEGMENTS = 64;  // most segments
+    private static final int SEGMENT_SLOTS = 1024;  // fewest slots per segment
+
+    private static final int FREE = 0;  // state of a free slot
+    private static final int USED = 1;  // state of a slot holding a game
+
+    // offsets of the fields of a slot
+    private static final int STATE = 0;
+    private static final int NEXT = 4;
+    private static final int ID_HIGH = 8;
+    private static final int ID_LOW = 16;
+    private static final int PARKED_AT = 24;
+    private static final int JOURNAL_ID = 32;
+    private static final int MOVES = 40;
+    private static final int FLAGS = 44;
+    private static final int GUESSES = 48;
+
+    private static final int HARD = 1 << 8;  // flag of a game in hard mode
+
+    private final PatternTable table;  // valid guesses and solutions
+    private final int maxGuesses;  // most guesses of a parked game
+    private final int capacity;  // number of slots
+    private final int codesOffset;  // offset of the pattern codes in a slot
+    private final int bitsOffset;  // offset of the bitset in a slot
+    private final int slotSize;  // bytes per slot
+    private final int slotsPerBuffer;  // slots in each buffer
+    private final ByteBuffer[] buffers;  // the slots
+    private final FileChannel channel;  // mapped file, or null
+
+    private final int segments;  // number of segments
+    private final int segmentSlots;  // slots in each range (fewer in the last)
+    private final int segmentEntries;  // index entries of each segment
+    private final ByteBuffer index;  // slot + 1 by hash of id (0 if empty)
+    private final int indexMask;  // segmentEntries - 1
+    private final Object[] locks;  // lock of each segment
+    private final int[] freeHeads;  // first free slot of each range, or -1
+    private final int[] counts;  // games indexed in each segment
+    private final AtomicInteger size = new AtomicInteger();  // parked games
+
+    // a game taken out of the store
+    public static class Parked {
+        private final Game game;  // state of the game
+        private final long journalId;  // id of the game in the journal
+        private final long parkedAt;  // when it was parked (milliseconds)
+
+        // creates a parked game
+        private Parked(Game game, long journalId, long parkedAt) {
+            this.game = game;
+            this.journalId = journalId;
+            this.parkedAt = parkedAt;
+        }
+
+        // returns the game, in the state it was parked in
+        public Game game() {
+            return game;
+        }
+
+        // returns the id of the game in the journal (-1 if it had none)
+        public long journalId() {
+            return journalId;
+        }
+
+        // returns System.currentTimeMillis() when the game was parked
+        public long parkedAt() {
+            return parkedAt;
+        }
+    }
+
+    // creates an empty store in direct memory for capacity games of at most
+    // maxGuesses guesses on the word lists of table
+    public SessionStore(PatternTable table, int maxGuesses, int capacity) {
+        this(table, maxGuesses, capacity, null);
+    }
+
+    // creates a store like the one above in file, keeping the games parked
+    // there if it was written for the same word lists and sizes (and starting
+    // over otherwise), or in direct memory if file is null
+    public SessionStore(PatternTable table, int maxGuesses, int capacity, Path file) {
+        if (capacity < 1 || capacity > 1 << 26) {
+            throw new IllegalArgumentException("Capacity must be 1 to 2^26.");
+        }
+        if (maxGuesses < 0 || maxGuesses > 255) {
+            throw new IllegalArgumentException("Max guesses must be 0 to 255.");
+        }
+        this.table = table;
+        this.maxGuesses = maxGuesses;
+        this.capacity = capacity;
+        int words = (table.solutionCount() + Long.SIZE - 1) / Long.SIZE;
+        this.codesOffset = GUESSES + maxGuesses * Integer.BYTES;
+        int bits = codesOffset + maxGuesses * Integer.BYTES;
+        this.bitsOffset = (bits + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+        this.slotSize = bitsOffset + words * Long.BYTES;
+        this.slotsPerBuffer = Math.max(1, MAX_BUFFER / slotSize);
+        int bufferCount = (capacity + slotsPerBuffer - 1) / slotsPerBuffer;
+        this.buffers = new ByteBuffer[bufferCount];
+        this.segments = Math.max(1, Math.min(SEGMENTS, capacity / SEGMENT_SLOTS));
+        this.segmentSlots = (capacity + segments - 1) / segments;
+        this.locks = new Object[segments];
+        for (int i = 0; i < segments; i++) locks[i] = new Object();
+        this.freeHeads = new int[segments];
+        this.counts = new int[segments];
+
+        // at most half full while a segment holds at most twice its share
+        this.segmentEntries = Integer.highestOneBit(segmentSlots) << 2;
+        this.index = ByteBuffer.allocateDirect(segments * segmentEntries *
+                                                       Integer.BYTES);
+        this.indexMask = segmentEntries - 1;
+
+        boolean kept = false;
+        try {
+            if (file == null) {
+                this.channel = null;
+                for (int b = 0; b < buffers.length; b++) {
+                    buffers[b] = ByteBuffer.allocateDirect(slotsIn(b) * slotSize);
+                }
+            }
+            else {
+                this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                StandardOpenOption.READ,
+                                                StandardOpenOption.WRITE);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                header.flip();
+                kept = header.remaining() == HEADER_SIZE && header.getInt() == MAGIC &&
+                        header.getInt() == VERSION &&
+                        header.getLong() == table.checksum() &&
+                        header.getInt() == maxGuesses && header.getInt() == capacity &&
+                        header.getInt() == slotSize;
+                if (!kept) {
+                    // a file for other lists or sizes is started over
+                    channel.truncate(0);
+                    header.clear();
+                    header.putInt(MAGIC).putInt(VERSION).putLong(table.checksum());
+                    header.putInt(maxGuesses).putInt(capacity).putInt(slotSize);
+                    header.position(0);
+                    channel.write(header, 0);
+                }
+                for (int b = 0; b < buffers.length; b++) {
+                    long start = HEADER_SIZE + (long) b * slotsPerBuffer * slotSize;
+                    buffers[b] = channel.map(FileChannel.MapMode.READ_WRITE, start,
+                                             (long) slotsIn(b) * slotSize);
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not open session store " + file, e);
+        }
+
+        // rebuild the free lists (lowest slots first) and the index
+        Arrays.fill(freeHeads, -1);
+        for (int slot = capacity - 1; slot >= 0; slot--) {
+            ByteBuffer buf = buffer(slot);
+            if (buf.getInt(offset(slot) + STATE) == USED) {
+                int seg = segment(buf.getLong(offset(slot) + ID_HIGH),
+                                  buf.getLong(offset(slot) + ID_LOW));
+                insert(seg, slot);
+                counts[seg]++;
+                size.incrementAndGet();
+            }
+            else push(slot);
+        }
+    }
+
+    // returns the number of slots in buffer b
+    private int slotsIn(int b) {
+        return Math.min(slotsPerBuffer, capacity - b * slotsPerBuffer);
+    }
+
+    // returns the buffer holding slot
+    private ByteBuffer buffer(int slot) {
+        return buffers[slot / slotsPerBuffer];
+    }
+
+    // returns the offset of slot in its buffer
+    private int offset(int slot) {
+        return slot % slotsPerBuffer * slotSize;
+    }
+
+    // returns the segment whose range holds slot
+    private int range(int slot) {
+        return slot / segmentSlots;
+    }
+
+    // returns the number of parked games
+    public int size() {
+        return size.get();
+    }
+
+    // returns the most games that can be parked at once
+    public int capacity() {
+        return capacity;
+    }
+
+    // returns the bytes taken by each parked game
+    public int slotSize() {
+        return slotSize;
+    }
+
+    // returns whether the game of session id is parked
+    public boolean contains(String id) {
+        long high = high(id);
+        long low = low(id);
+        int seg = segment(high, low);
+        synchronized (locks[seg]) {
+            return find(seg, high, low) >= 0;
+        }
+    }
+
+    // parks game as session id (with journalId in the journal, or -1) and
+    // returns true, or returns false if the store is full; throws an
+    // IllegalArgumentException if id is not 32 hex digits, is already parked,
+    // or the game allows more guesses than the store
+    public boolean park(String id, Game game, long journalId) {
+        long high = high(id);
+        long low = low(id);
+        if (game.maxGuesses() > maxGuesses) {
+            throw new IllegalArgumentException("Game allows more guesses than the " +
+                                                       "store.");
+        }
+        int seg = segment(high, low);
+        synchronized (locks[seg]) {
+            if (find(seg, high, low) >= 0) {
+                throw new IllegalArgumentException("Already parked: " + id);
+            }
+            // a segment holding more than twice its share would fill its index
+            if (counts[seg] >= segmentEntries / 2) return false;
+            counts[seg]++;
+        }
+        int slot = pop(seg);
+        if (slot < 0) {
+            synchronized (locks[seg]) {
+                counts[seg]--;
+            }
+            return false;
+        }
+
+        // the slot is in no free list or index, so no other thread reads it
+        ByteBuffer buf = buffer(slot);
+        int at = offset(slot);
+        buf.putLong(at + ID_HIGH, high);
+        buf.putLong(at + ID_LOW, low);
+        buf.putLong(at + PARKED_AT, System.currentTimeMillis());
+        buf.putLong(at + JOURNAL_ID, journalId);
+        buf.putInt(at + MOVES, game.guessCount());
+        buf.putInt(at + FLAGS, game.maxGuesses() | (game.isHard() ? HARD : 0));
+        for (int i = 0; i < game.guessCount(); i++) {
+            buf.putInt(at + GUESSES + i * Integer.BYTES, game.guessIdAt(i));
+            buf.putInt(at + codesOffset + i * Integer.BYTES, game.codeAt(i));
+        }
+        SolutionSet remSols = game.remainingSolutions();
+        for (int w = 0; w < remSols.words(); w++) {
+            buf.putLong(at + bitsOffset + w * Long.BYTES, remSols.word(w));
+        }
+        // only a completely written game is USED
+        buf.putInt(at + STATE, USED);
+
+        synchronized (locks[seg]) {
+            // the same id may have been parked by another thread meanwhile
+            if (find(seg, high, low) < 0) {
+                insert(seg, slot);
+                size.incrementAndGet();
+                return true;
+            }
+            counts[seg]--;
+        }
+        buf.putInt(at + STATE, FREE);
+        free(slot);
+        throw new IllegalArgumentException("Already parked: " + id);
+    }
+
+    // takes the game of session id out of the store, with guesses answered from
+    // cache, and returns it, or returns null if it is not parked
+    public Parked unpark(String id, BucketCache cache) {
+        long high = high(id);
+        long low = low(id);
+        int seg = segment(high, low);
+        int slot;
+        int moves;
+        int flags;
+        int[] guessIds;
+        int[] codes;
+        long[] bits = new long[(slotSize - bitsOffset) / Long.BYTES];
+        long journalId;
+        long parkedAt;
+        synchronized (locks[seg]) {
+            slot = find(seg, high, low);
+            if (slot < 0) return null;
+            ByteBuffer buf = buffer(slot);
+            int at = offset(slot);
+            moves = buf.getInt(at + MOVES);
+            flags = buf.getInt(at + FLAGS);
+            guessIds = new int[moves];
+            codes = new int[moves];
+            for (int i = 0; i < moves; i++) {
+                guessIds[i] = buf.getInt(at + GUESSES + i * Integer.BYTES);
+                codes[i] = buf.getInt(at + codesOffset + i * Integer.BYTES);
+            }
+            for (int w = 0; w < bits.length; w++) {
+                bits[w] = buf.getLong(at + bitsOffset + w * Long.BYTES);
+            }
+            journalId = buf.getLong(at + JOURNAL_ID);
+            parkedAt = buf.getLong(at + PARKED_AT);
+            buf.putInt(at + STATE, FREE);
+            delete(seg, slot);
+            counts[seg]--;
+        }
+        free(slot);
+        size.decrementAndGet();
+
+        SolutionSet remSols = SolutionSet.fromBits(table.solutionCount(), bits);
+        Game game = Game.restore(table, cache, flags & (HARD - 1), null,
+                                 (flags & HARD) != 0, guessIds, codes, moves,
+                                 remSols);
+        return new Parked(game, journalId, parkedAt);
+    }
+
+    // takes a free slot, from the range of segment seg or else the next range
+    // with one, and returns it, or returns -1 if every slot is used
+    private int pop(int seg) {
+        for (int i = 0; i < segments; i++) {
+            int r = (seg + i) % segments;
+            synchronized (locks[r]) {
+                int slot = freeHeads[r];
+                if (slot >= 0) {
+                    freeHeads[r] = buffer(slot).getInt(offset(slot) + NEXT);
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // puts slot back in the free list of its range
+    private void free(int slot) {
+        synchronized (locks[range(slot)]) {
+            push(slot);
+        }
+    }
+
+    // adds slot to the free list of its range (under the range's lock)
+    private void push(int slot) {
+        int r = range(slot);
+        buffer(slot).putInt(offset(slot) + NEXT, freeHeads[r]);
+        freeHeads[r] = slot;
+    }
+
+    // returns the position in the index of entry i of segment seg
+    private int entryAt(int seg, int i) {
+        return (seg * segmentEntries + i) * Integer.BYTES;
+    }
+
+    // returns the slot holding the game with id (high, low) in segment seg, or
+    // -1 if there is none (under the segment's lock)
+    private int find(int seg, long high, long low) {
+        for (int i = home(high, low); ; i = (i + 1) & indexMask) {
+            int entry = index.getInt(entryAt(seg, i));
+            if (entry == 0) return -1;
+            int slot = entry - 1;
+            ByteBuffer buf = buffer(slot);
+            if (buf.getLong(offset(slot) + ID_HIGH) == high &&
+                    buf.getLong(offset(slot) + ID_LOW) == low) {
+                return slot;
+            }
+        }
+    }
+
+    // adds slot, whose id is written, to the index of segment seg (under the
+    // segment's lock)
+    private void insert(int seg, int slot) {
+        int i = home(slot);
+        while (index.getInt(entryAt(seg, i)) != 0) i = (i + 1) & indexMask;
+        index.putInt(entryAt(seg, i), slot + 1);
+    }
+
+    // removes slot from the index of segment seg (under the segment's lock),
+    // moving later entries of the same run back so lookups never stop early at
+    // the gap
+    private void delete(int seg, int slot) {
+        int i = home(slot);
+        while (index.getInt(entryAt(seg, i)) != slot + 1) i = (i + 1) & indexMask;
+        for (int j = (i + 1) & indexMask; ; j = (j + 1) & indexMask) {
+            int entry = index.getInt(entryAt(seg, j));
+            if (entry == 0) break;
+            // an entry whose home is cyclically in (i, j] stays where it is
+            int k = home(entry - 1);
+            boolean stays = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+            if (stays) continue;
+            index.putInt(entryAt(seg, i), entry);
+            i = j;
+        }
+        index.putInt(entryAt(seg, i), 0);
+    }
+
+    // returns the home entry in the index of the game in slot
+    private int home(int slot) {
+        ByteBuffer buf = buffer(slot);
+        return home(buf.getLong(offset(slot) + ID_HIGH),
+                    buf.getLong(offset(slot) + ID_LOW));
+    }
+
+    // returns the home entry of id (high, low) in its segment's index
+    private int home(long high, long low) {
+        return hash(high, low) & indexMask;
+    }
+
+    // returns the segment id (high, low) is indexed in
+    private int segment(long high, long low) {
+        return (int) ((hash(high, low) & 0xFFFFFFFFL) * segments >>> 32);
+    }
+
+    // returns the hash of id (high, low), whose high bits pick its segment and
+    // low bits its home entry
+    private static int hash(long high, long low) {
+        long hash = (high ^ Long.rotateLeft(low, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32);
+    }
+
+    // returns the first 64 bits of id, a 32 digit hex string
+    private static long high(String id) {
+        checkId(id);
+        return Long.parseUnsignedLong(id.substring(0, 16), 16);
+    }
+
+    // returns the last 64 bits of id, a 32 digit hex string
+    private static long low(String id) {
+        return Long.parseUnsignedLong(id.substring(16), 16);
+    }
+
+    // throws an IllegalArgumentException if id is not 32 hex digits
+    private static void checkId(String id) {
+        if (id.length() != 32 ||
+                !id.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            throw new IllegalArgumentException("Session ids must be 32 hex digits: " +
+                                                       id);
+        }
+    }
+
+    // writes the parked games to the file (if there is one), so they survive
+    // the machine crashing and not just the process
+    public void force() {
+        if (channel == null) return;
+        for (ByteBuffer buffer : buffers) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+
+    // closes the file (if there is one), after writing the parked games to it;
+    // the store can't be used afterwards
+    public void close() throws IOException {
+        force();
+        if (channel != null) channel.close();
+    }
+
+    // tests all methods to make sure they're working as expected, and parks many
+    // games to show the heap staying flat
+    public static void main(String[] args) throws IOException {
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        BucketCache cache = new BucketCache(table, 1024);
+        SessionStore store = new SessionStore(table, 8, 3);
+        StdOut.println("Slot size (expecting 408): " + store.slotSize());
+
+        // expect a parked game to come back in the same state
+        String a = "0123456789abcdef0123456789abcdef";
+        Game game = new Game(table, cache, 8);
+        game.guess("terns");
+        game.guess("aphid");
+        StdOut.println("Parked (expecting true): " + store.park(a, game, 7));
+        StdOut.println("Contains a (expecting true): " + store.contains(a));
+        Parked parked = store.unpark(a, cache);
+        StdOut.println("Same state (expecting true): " +
+                               sameState(game, parked.game()));
+        StdOut.println("Journal id (expecting 7): " + parked.journalId());
+        StdOut.println("Contains a (expecting false): " + store.contains(a));
+        StdOut.println("Unparked again (expecting null): " + store.unpark(a, cache));
+
+        // expect a full store to refuse games, and freed slots to be reused
+        for (int i = 0; i < 3; i++) store.park(id(i), new Game(table, cache, 8), -1);
+        StdOut.println("Parked when full (expecting false): " +
+                               store.park(id(3), new Game(table, cache, 8), -1));
+        store.unpark(id(1), cache);
+        StdOut.println("Parked after unparking (expecting true): " +
+                               store.park(id(3), new Game(table, cache, 8), -1));
+        StdOut.println("Size (expecting 3): " + store.size());
+
+        // expect bad ids and games parked twice to be rejected
+        try {
+            store.park("abc", game, -1);
+            StdOut.println("Parked abc (expecting an exception)");
+        }
+        catch (IllegalArgumentException e) {
+            StdOut.println("Bad id rejected (expecting true): true");
+        }
+
+        // expect a store of several segments to take a game in every slot
+        SessionStore segmented = new SessionStore(table, 8, 4096);
+        boolean allParked = true;
+        for (int i = 0; i < 4096; i++) allParked &= segmented.park(id(i), game, i);
+        StdOut.println("Filled every slot, parked another (expecting true, " +
+                               "false): " + allParked + ", " +
+                               segmented.park(id(4096), game, -1));
+
+        // expect games parked in a file to be there when it is opened again, in
+        // hard mode if they were
+        Path file = Files.createTempFile("sessions", ".store");
+        SessionStore mapped = new SessionStore(table, 8, 1000, file);
+        Game hard = new Game(table, cache, 8, null, true);
+        hard.guess("terns");
+        for (int i = 0; i < 10; i++) mapped.park(id(i), i == 4 ? hard : game, i);
+        mapped.unpark(id(2), cache);
+        mapped.close();
+        mapped = new SessionStore(table, 8, 1000, file);
+        StdOut.println("Reopened size (expecting 9): " + mapped.size());
+        parked = mapped.unpark(id(4), cache);
+        StdOut.println("Same hard game (expecting true): " +
+                               (sameState(hard, parked.game()) &&
+                                       parked.game().isHard()));
+        StdOut.println("Contains 2 (expecting false): " + mapped.contains(id(2)));
+        mapped.close();
+
+        // expect a file for other sizes to be started over
+        mapped = new SessionStore(table, 8, 500, file);
+        StdOut.println("Resized size (expecting 0): " + mapped.size());
+        mapped.close();
+        Files.delete(file);
+
+        // park a million games from several threads, unpark some, and compare the
+        // heap to the direct memory they take
+        int count = 1_000_000;
+        SessionStore many = new SessionStore(table, 8, count);
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) ids[i] = id(i);
+        Stopwatch timer = new Stopwatch();
+        java.util.stream.IntStream.range(0, count).parallel()
+                                  .forEach(i -> many.park(ids[i], game, i));
+        StdOut.printf("Parked %d games in %.2f s (%d MB off-heap)%n", many.size(),
+                      timer.elapsedTime(), (long) count * many.slotSize() >> 20);
+        timer = new Stopwatch();
+        boolean allMatch = true;
+        for (int i = 0; i < count; i += 97) {
+            Parked p = many.unpark(id(i), cache);
+            if (p == null || p.journalId() != i || !sameState(game, p.game())) {
+                allMatch = false;
+            }
+        }
+        StdOut.printf("Unparked every 97th game in %.2f s, same state (expecting " +
+                              "true): %b%n", timer.elapsedTime(), allMatch);
+        boolean found = true;
+        for (int i = 1; i < count; i += 97) found &= many.contains(id(i));
+        StdOut.println("Others still parked (expecting true): " + found);
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        StdOut.printf("Heap used: %d MB%n",
+                      (rt.totalMemory() - rt.freeMemory()) >> 20);
+    }
+
+    // returns the id of the ith test session
+    private static String id(int i) {
+        return String.format("%032x", (long) i * 0x9E3779B97F4A7C15L);
+    }
+
+    // returns whether games a and b made the same guesses and leave the same
+    // solutions
+    private static boolean sameState(Game a, Game b) {
+        if (a.guessCount() != b.guessCount() || a.maxGuesses() != b.maxGuesses() ||
+                a.isWon() != b.isWon()) {
+            return false;
+        }
+        for (int i = 0; i < a.guessCount(); i++) {
+            if (a.guessIdAt(i) != b.guessIdAt(i) || a.codeAt(i) != b.codeAt(i)) {
+                return false;
+            }
+        }
+        return a.remainingSolutions().equals(b.remainingSolutions());
+    }
+}
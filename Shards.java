@@ -0,0 +1,580 @@
+/*******************************************************************************
+ * Runs an Analytics report as shards in separate processes, on this machine or
+ * on any number of machines sharing a directory, and merges them into one
+ * report, identical to the one Analytics writes by itself.
+ *
+ * The report is split into shards of whole chunks in order (see Analytics),
+ * so every process splits it the same way. Each shard is written by a worker
+ * that holds its claim file (pairs-3.claim, holding the worker's host and
+ * process id), to a file of the worker's own in the directory (e.g.
+ * pairs-3.host-123.csv) with its own checkpoint, and renamed to pairs-3.csv
+ * once it is written. A worker checks and renews its claim before every chunk
+ * it writes and every checkpoint, and a claim not renewed for the lease (10
+ * minutes by default, or absurdle.shards.lease seconds) is taken over by
+ * another worker. It resumes the shard from a copy of the part of the earlier
+ * owner's file that its checkpoint covers, so a worker still running after it
+ * lost its claim never writes into the new owner's file. Machines should agree
+ * on the time to well within the lease. Once a shard is written, its worker
+ * records its length and CRC-32 in a done file (pairs-3.done), which merging
+ * checks.
+ *
+ * Failures are counted per shard (pairs-3.failures): a worker that fails,
+ * exits or loses its lease counts against the shard, and a shard is given up
+ * on after 3 failures (or absurdle.shards.retries); running the shards again
+ * starts the counts over.
+ *
+ * run    starts workers on this machine (as many as there are processors by
+ *        default), starts new ones while shards are left and a worker has
+ *        failed, and merges the shards once all are done
+ * work   works on shards until every shard is done (or given up on); start
+ *        one on each machine sharing the directory
+ * merge  concatenates the shards into the report and deletes the directory's
+ *        files
+ *
+ * Usage: java Shards run openers|pairs shards [workers] [directory] [output]
+ *        java Shards work openers|pairs shards [directory]
+ *        java Shards merge openers|pairs shards [directory] [output]
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+public class Shards {
+
+    private static final long POLL_MILLIS = 500;  // time between looks at shards
+    private static final int BUFFER_SIZE = 1 << 20;  // bytes copied at a time
+
+    // milliseconds a claim lasts without being renewed
+    private static final long LEASE_MILLIS =
+            Long.getLong("absurdle.shards.lease", 600) * 1000;
+
+    // failures after which a shard is given up on
+    private static final int RETRIES =
+            Integer.getInteger("absurdle.shards.retries", 3);
+
+    private final Path dir;  // directory shared by the workers
+    private final String mode;  // report being written
+    private final int shards;  // number of shards
+    private final long checksum;  // checksum of the word lists
+    private final String owner;  // host and process id of this process
+
+    // creates the shards of the mode report of shards shards in dir, for the
+    // word lists with the given checksum (see PatternTable.checksum())
+    public Shards(Path dir, String mode, int shards, long checksum) {
+        this.dir = dir;
+        this.mode = mode;
+        this.shards = shards;
+        this.checksum = checksum;
+        this.owner = owner(ProcessHandle.current().pid());
+    }
+
+    // returns the file shard shard of the report is written to
+    public Path output(int shard) {
+        return dir.resolve(mode + "-" + shard + ".csv");
+    }
+
+    // returns the file owner writes shard to until it is done
+    private Path workFile(int shard, String owner) {
+        return dir.resolve(mode + "-" + shard + "." + owner + ".csv");
+    }
+
+    // returns the checkpoint of the report in file (see Analytics)
+    private static Path checkpointFile(Path file) {
+        return Paths.get(file + ".checkpoint");
+    }
+
+    // returns the files any worker has written shard to and not finished
+    private List<Path> workFiles(int shard) throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        String glob = mode + "-" + shard + ".*.csv";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)) {
+            for (Path file : stream) files.add(file);
+        }
+        return files;
+    }
+
+    // returns the file holding the claim on shard
+    private Path claimFile(int shard) {
+        return dir.resolve(mode + "-" + shard + ".claim");
+    }
+
+    // returns the file recording that shard is done
+    private Path doneFile(int shard) {
+        return dir.resolve(mode + "-" + shard + ".done");
+    }
+
+    // returns the file counting the failures of shard
+    private Path failuresFile(int shard) {
+        return dir.resolve(mode + "-" + shard + ".failures");
+    }
+
+    // returns whether shard is written, for this report and these word lists
+    public boolean isDone(int shard) throws IOException {
+        String[] fields = readFields(doneFile(shard));
+        return fields != null && fields.length == 5 && fields[0].equals(mode) &&
+                Integer.parseInt(fields[1]) == shards &&
+                Long.parseLong(fields[2]) == checksum &&
+                Files.exists(output(shard)) &&
+                Files.size(output(shard)) == Long.parseLong(fields[3]);
+    }
+
+    // returns whether shard has failed too often to try again
+    public boolean isFailed(int shard) throws IOException {
+        return failures(shard) >= RETRIES;
+    }
+
+    // returns the number of times shard has failed
+    private int failures(int shard) throws IOException {
+        try {
+            return Files.readAllLines(failuresFile(shard)).size();
+        }
+        catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    // records that shard failed for the given reason
+    private void recordFailure(int shard, String reason) throws IOException {
+        String line = owner + " " + reason.replace('\n', ' ') + "\n";
+        Files.writeString(failuresFile(shard), line, StandardOpenOption.CREATE,
+                          StandardOpenOption.APPEND);
+        System.err.println("Shard " + shard + " failed: " + reason);
+    }
+
+    // returns whether every shard is done
+    public boolean isDone() throws IOException {
+        for (int shard = 0; shard < shards; shard++) {
+            if (!isDone(shard)) return false;
+        }
+        return true;
+    }
+
+    // returns whether every shard is done or given up on
+    private boolean isSettled() throws IOException {
+        for (int shard = 0; shard < shards; shard++) {
+            if (!isDone(shard) && !isFailed(shard)) return false;
+        }
+        return true;
+    }
+
+    // returns whether some shard that is not done or given up on could be
+    // claimed now
+    private boolean isClaimable() throws IOException {
+        for (int shard = 0; shard < shards; shard++) {
+            if (isDone(shard) || isFailed(shard)) continue;
+            if (!Files.exists(claimFile(shard)) || isStale(claimFile(shard))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // returns whether the claim in file has not been renewed within the lease
+    private static boolean isStale(Path file) throws IOException {
+        try {
+            long renewed = Files.getLastModifiedTime(file).toMillis();
+            return System.currentTimeMillis() - renewed > LEASE_MILLIS;
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    // claims shard for this process and returns true, or returns false if
+    // another worker holds it; an expired claim is taken over, counting as a
+    // failure of the shard
+    private boolean claim(int shard) throws IOException {
+        Path file = claimFile(shard);
+        if (create(file)) return true;
+        if (!isStale(file)) return false;
+
+        // move the expired claim aside, so only one worker takes it over, and
+        // put it back if it was renewed in the meantime
+        Path aside = dir.resolve(file.getFileName() + "." + owner + ".expired");
+        try {
+            Files.move(file, aside, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!isStale(aside)) {
+            try {
+                Files.move(aside, file);
+            }
+            catch (FileAlreadyExistsException e) {
+                Files.delete(aside);
+            }
+            return false;
+        }
+        String expired = Files.readString(aside);
+        Files.delete(aside);
+        recordFailure(shard, "lease of " + expired + " expired");
+        return create(file);
+    }
+
+    // creates the claim file with this process as its owner, and returns false
+    // if it already exists
+    private boolean create(Path file) throws IOException {
+        try {
+            Files.writeString(file, owner, StandardOpenOption.CREATE_NEW,
+                              StandardOpenOption.WRITE);
+            return true;
+        }
+        catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    // renews this process's claim on shard; throws an IllegalStateException if
+    // another worker has taken it over
+    private void renew(int shard) {
+        try {
+            Path file = claimFile(shard);
+            if (!owner.equals(readOwner(file))) {
+                throw new IllegalStateException("Lost the claim on shard " + shard +
+                                                        " to " + readOwner(file));
+            }
+            Files.setLastModifiedTime(file,
+                                      FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // deletes the claim on shard if it is held by owner
+    private void release(int shard, String owner) throws IOException {
+        if (owner.equals(readOwner(claimFile(shard)))) {
+            Files.deleteIfExists(claimFile(shard));
+            for (Path file : workFiles(shard)) delete(file);
+        }
+    }
+
+    // returns the owner of the claim in file, or null if there is no claim
+    private static String readOwner(Path file) throws IOException {
+        try {
+            return Files.readString(file);
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // writes shards with analytics until every shard is done or given up on,
+    // waiting for shards claimed by other workers in case their leases expire,
+    // and returns whether every shard this worker tried was written
+    public boolean work(Analytics analytics) throws IOException,
+            InterruptedException {
+        Files.createDirectories(dir);
+        boolean ok = true;
+        while (!isSettled()) {
+            boolean wrote = false;
+            for (int shard = 0; shard < shards; shard++) {
+                if (isDone(shard) || isFailed(shard) || !claim(shard)) continue;
+                try {
+                    // another worker may have finished it before we claimed it
+                    if (!isDone(shard)) write(analytics, shard);
+                    release(shard, owner);
+                    wrote = true;
+                }
+                catch (IllegalStateException e) {
+                    System.err.println(e.getMessage());
+                    ok = false;
+                }
+                catch (IOException | RuntimeException e) {
+                    recordFailure(shard, e.toString());
+                    release(shard, owner);
+                    ok = false;
+                }
+            }
+            if (!wrote) Thread.sleep(POLL_MILLIS);
+        }
+        return ok;
+    }
+
+    // writes shard (claimed by this process) to its own file, renames it to
+    // the shard's output and records that it is done
+    private void write(Analytics analytics, int shard) throws IOException {
+        System.err.println("Writing shard " + shard + " of " + shards);
+        Path work = workFile(shard, owner);
+        adopt(shard, work);
+        analytics.onChunk(() -> renew(shard));
+        if (mode.equals("openers")) analytics.openers(work, shard, shards);
+        else analytics.pairs(work, shard, shards);
+        renew(shard);
+
+        long length = Files.size(work);
+        long crc = crc(work);
+        Files.move(work, output(shard), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        Path tmp = dir.resolve(doneFile(shard).getFileName() + "." + owner + ".tmp");
+        Files.writeString(tmp, mode + " " + shards + " " + checksum + " " + length +
+                " " + crc + "\n");
+        Files.move(tmp, doneFile(shard), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // resumes shard in work from the furthest checkpoint of the files earlier
+    // owners left (if it is further than work's own), copying the part of the
+    // file it covers, and deletes their files
+    private void adopt(int shard, Path work) throws IOException {
+        Path furthest = work;
+        int furthestChunks = checkpointChunks(work);
+        List<Path> others = workFiles(shard);
+        others.remove(work);
+        for (Path file : others) {
+            int chunks = checkpointChunks(file);
+            if (chunks > furthestChunks) {
+                furthest = file;
+                furthestChunks = chunks;
+            }
+        }
+
+        if (furthest != work) {
+            // the earlier owner only appends after its checkpoint, so the part
+            // the checkpoint covers can be copied while it is still running
+            String checkpoint = Files.readString(checkpointFile(furthest));
+            long length = Long.parseLong(checkpoint.trim().split(" ")[3]);
+            try (FileChannel in = FileChannel.open(furthest);
+                 FileChannel out = FileChannel.open(
+                         work, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (long at = 0; at < length; ) {
+                    long n = in.transferTo(at, length - at, out);
+                    if (n <= 0) {
+                        throw new IOException(furthest + " is shorter than its " +
+                                                      "checkpoint.");
+                    }
+                    at += n;
+                }
+                out.force(false);
+            }
+            Path tmp = Paths.get(checkpointFile(work) + ".tmp");
+            Files.writeString(tmp, checkpoint);
+            Files.move(tmp, checkpointFile(work), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            System.err.println("Resuming shard " + shard + " from " + furthest);
+        }
+        for (Path file : others) delete(file);
+    }
+
+    // returns the number of chunks the checkpoint of file records for these
+    // word lists, or 0 if it has none
+    private int checkpointChunks(Path file) throws IOException {
+        String[] fields = readFields(checkpointFile(file));
+        if (fields == null || fields.length != 4 ||
+                Long.parseLong(fields[1]) != checksum) return 0;
+        return Integer.parseInt(fields[2]);
+    }
+
+    // deletes file and its checkpoint, if they exist
+    private static void delete(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(checkpointFile(file));
+    }
+
+    // runs workers on this machine, at most workers at a time, until every
+    // shard is done or given up on, starting a new one while shards are left
+    // and releasing the claims of any that exit with an error; returns whether
+    // every shard is done
+    public boolean run(int workers) throws IOException, InterruptedException {
+        Files.createDirectories(dir);
+        for (int shard = 0; shard < shards; shard++) {
+            Files.deleteIfExists(failuresFile(shard));
+        }
+
+        Map<Process, String> running = new HashMap<Process, String>();
+        while (true) {
+            for (Process worker : new ArrayList<Process>(running.keySet())) {
+                if (worker.isAlive()) continue;
+                String name = running.remove(worker);
+                if (worker.exitValue() == 0) continue;
+                for (int shard = 0; shard < shards; shard++) {
+                    if (name.equals(readOwner(claimFile(shard)))) {
+                        recordFailure(shard, "worker " + name + " exited with " +
+                                worker.exitValue());
+                        release(shard, name);
+                    }
+                }
+            }
+            if (isSettled() && running.isEmpty()) break;
+            if (running.size() < workers && !isSettled() && isClaimable()) {
+                Process worker = start();
+                running.put(worker, owner(worker.pid()));
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+
+        for (int shard = 0; shard < shards; shard++) {
+            if (isFailed(shard)) {
+                System.err.println("Gave up on shard " + shard + " after " +
+                                           failures(shard) + " failures (see " +
+                                           failuresFile(shard) + ")");
+            }
+        }
+        return isDone();
+    }
+
+    // starts a worker process on the shards with the same class path and JVM
+    // options (including the absurdle.* system properties) as this one
+    private Process start() throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java")
+                         .toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Shards.class.getName());
+        command.add("work");
+        command.add(mode);
+        command.add(Integer.toString(shards));
+        command.add(dir.toString());
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    // writes the shards in order to output, checking each against its done
+    // file, and then deletes the files in the directory; throws an IOException
+    // if a shard is not done, or (after deleting it, so running the shards
+    // again redoes it) if it does not match its done file
+    public void merge(Path output) throws IOException {
+        for (int shard = 0; shard < shards; shard++) {
+            if (!isDone(shard)) {
+                throw new IOException("Shard " + shard + " is not done.");
+            }
+        }
+
+        Path tmp = Paths.get(output + ".tmp");
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int mismatched = -1;  // first shard not matching its done file, if any
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            for (int shard = 0; shard < shards && mismatched < 0; shard++) {
+                CRC32 crc = new CRC32();
+                try (InputStream in = Files.newInputStream(output(shard))) {
+                    for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                        crc.update(buffer, 0, n);
+                        out.write(buffer, 0, n);
+                    }
+                }
+                if (crc.getValue() != Long.parseLong(readFields(doneFile(shard))[4])) {
+                    mismatched = shard;
+                }
+            }
+        }
+        if (mismatched >= 0) {
+            Files.delete(tmp);
+            Files.delete(doneFile(mismatched));
+            Files.delete(output(mismatched));
+            throw new IOException("Shard " + mismatched + " does not match its " +
+                                          "checksum; run the shards again to redo " +
+                                          "it.");
+        }
+        Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+
+        for (int shard = 0; shard < shards; shard++) {
+            Files.deleteIfExists(output(shard));
+            Files.deleteIfExists(doneFile(shard));
+            Files.deleteIfExists(failuresFile(shard));
+            Files.deleteIfExists(claimFile(shard));
+        }
+    }
+
+    // returns the CRC-32 of the contents of file
+    private static long crc(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    // returns the fields of the one line file, or null if there is no file
+    private static String[] readFields(Path file) throws IOException {
+        try {
+            return Files.readString(file, StandardCharsets.US_ASCII).trim().split(" ");
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // returns the owner name of the process with id pid on this machine
+    private static String owner(long pid) {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        }
+        catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return host + "-" + pid;
+    }
+
+    // runs, works on or merges the shards named by the arguments
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3 || !(args[0].equals("run") || args[0].equals("work") ||
+                args[0].equals("merge")) ||
+                !(args[1].equals("openers") || args[1].equals("pairs"))) {
+            System.err.println("Usage: java Shards run openers|pairs shards " +
+                                       "[workers] [directory] [output]");
+            System.err.println("       java Shards work openers|pairs shards " +
+                                       "[directory]");
+            System.err.println("       java Shards merge openers|pairs shards " +
+                                       "[directory] [output]");
+            System.exit(1);
+        }
+        String command = args[0];
+        String mode = args[1];
+        int shards = Integer.parseInt(args[2]);
+        int next = 3;  // next optional argument
+        int workers = Runtime.getRuntime().availableProcessors();
+        if (command.equals("run") && args.length > next) {
+            workers = Integer.parseInt(args[next++]);
+        }
+        Path dir = Paths.get(args.length > next ? args[next++] : mode + "-shards");
+        Path output = Paths.get(args.length > next ? args[next] : mode + ".csv");
+        if (shards < 1 || workers < 1) {
+            System.err.println("Shards and workers must be at least 1.");
+            System.exit(1);
+        }
+
+        Stopwatch timer = new Stopwatch();
+        PatternTable table = PatternTable.load();
+        Shards runner = new Shards(dir, mode, shards, table.checksum());
+        if (command.equals("work")) {
+            if (!runner.work(new Analytics(table))) System.exit(1);
+            return;
+        }
+        if (command.equals("run") && !runner.run(workers)) {
+            System.err.println("Some shards were not written; run again to retry " +
+                                       "them.");
+            System.exit(1);
+        }
+        runner.merge(output);
+        System.err.printf("Wrote %s in %.1f seconds%n", output, timer.elapsedTime());
+    }
+}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Set of remaining solutions, stored as a bitset of indices into the list of
+ * valid solutions (bit i is set if the ith solution is still possible). The
+ * 2311 default solutions fit in 37 longs, so a set is a few hundred bytes no
+ * matter how many solutions remain.
+ *
+ * Solutions are added while a set is built (see Buckets); sets handed out
+ * afterwards are not modified, so they can be shared between games.
+ *
+ * The same bitsets hold sets of guess indices too (see GuessIndex), with the
+ * number of valid guesses as the universe.
+ ******************************************************************************/
+
+import java.util.Arrays;
+
+public class SolutionSet {
+
+    private final int universe;  // number of valid solutions (possible indices)
+    private final long[] bits;  // bit i of the set is bit (i % 64) of bits[i / 64]
+    private int size;  // number of solutions in the set
+
+    // creates an empty set of indices from 0 to universe - 1
+    public SolutionSet(int universe) {
+        this(universe, new long[(universe + Long.SIZE - 1) / Long.SIZE]);
+    }
+
+    // creates an empty set of indices from 0 to universe - 1 backed by bits
+    private SolutionSet(int universe, long[] bits) {
+        if (bits.length != (universe + Long.SIZE - 1) / Long.SIZE) {
+            throw new IllegalArgumentException("Bitset does not fit universe.");
+        }
+        this.universe = universe;
+        this.bits = bits;
+    }
+
+    // returns a set containing every index from 0 to universe - 1
+    public static SolutionSet all(int universe) {
+        SolutionSet set = new SolutionSet(universe);
+        Arrays.fill(set.bits, -1L);
+        // clear unused bits in the last long
+        int extra = set.bits.length * Long.SIZE - universe;
+        if (extra > 0) set.bits[set.bits.length - 1] >>>= extra;
+        set.size = universe;
+        return set;
+    }
+
+    // returns a set of indices from 0 to universe - 1 whose bit i is bit (i % 64)
+    // of bits[i / 64] (bits is used directly, not copied)
+    public static SolutionSet fromBits(int universe, long[] bits) {
+        SolutionSet set = new SolutionSet(universe, bits);
+        for (long word : bits) set.size += Long.bitCount(word);
+        return set;
+    }
+
+    // returns the number of longs in the bitset (see fromBits)
+    public int words() {
+        return bits.length;
+    }
+
+    // returns the ith long of the bitset (see fromBits)
+    public long word(int i) {
+        return bits[i];
+    }
+
+    // adds the solution at index sol to the set
+    public void add(int sol) {
+        long mask = 1L << sol;  // shift only uses the lowest 6 bits of sol
+        int word = sol / Long.SIZE;
+        if ((bits[word] & mask) == 0) {
+            bits[word] |= mask;
+            size++;
+        }
+    }
+
+    // checks if the solution at index sol is in the set
+    public boolean contains(int sol) {
+        return (bits[sol / Long.SIZE] & (1L << sol)) != 0;
+    }
+
+    // returns the number of solutions in the set
+    public int size() {
+        return size;
+    }
+
+    // returns the number of valid solutions the set was created for
+    public int universe() {
+        return universe;
+    }
+
+    // returns the smallest index in the set that is at least from, or -1 if there
+    // is none (use as: for (int s = set.next(0); s >= 0; s = set.next(s + 1)))
+    public int next(int from) {
+        if (from >= universe) return -1;
+        int word = from / Long.SIZE;
+        long cur = bits[word] & (-1L << from);
+        while (cur == 0) {
+            word++;
+            if (word == bits.length) return -1;
+            cur = bits[word];
+        }
+        return word * Long.SIZE + Long.numberOfTrailingZeros(cur);
+    }
+
+    // returns the smallest index in the set, or -1 if the set is empty
+    public int first() {
+        return next(0);
+    }
+
+    // returns a new set of the solutions in both this set and that
+    public SolutionSet intersect(SolutionSet that) {
+        checkUniverse(that);
+        SolutionSet set = new SolutionSet(universe);
+        for (int i = 0; i < bits.length; i++) {
+            set.bits[i] = bits[i] & that.bits[i];
+            set.size += Long.bitCount(set.bits[i]);
+        }
+        return set;
+    }
+
+    // returns a new set of the solutions in this set but not in that
+    public SolutionSet minus(SolutionSet that) {
+        checkUniverse(that);
+        SolutionSet set = new SolutionSet(universe);
+        for (int i = 0; i < bits.length; i++) {
+            set.bits[i] = bits[i] & ~that.bits[i];
+            set.size += Long.bitCount(set.bits[i]);
+        }
+        return set;
+    }
+
+    // splits the set by the pattern code of the guess at index guess (looked up
+    // in table) against each solution; returns an array indexed by pattern code,
+    // with null for patterns no solution in the set has
+    public SolutionSet[] partition(int guess, PatternTable table) {
+        SolutionSet[] parts = new SolutionSet[Pattern.count(table.wordLength())];
+        for (int s = next(0); s >= 0; s = next(s + 1)) {
+            int code = table.get(guess, s);
+            if (parts[code] == null) parts[code] = new SolutionSet(universe);
+            parts[code].add(s);
+        }
+        return parts;
+    }
+
+    // throws an exception if that was created for a different set of solutions
+    private void checkUniverse(SolutionSet that) {
+        if (that.universe != universe) {
+            throw new IllegalArgumentException("Sets have different universes.");
+        }
+    }
+
+    // checks if that is a set with exactly the same solutions
+    public boolean equals(Object other) {
+        if (other == this) return true;
+        if (!(other instanceof SolutionSet)) return false;
+        SolutionSet that = (SolutionSet) other;
+        return universe == that.universe && size == that.size
+                && Arrays.equals(bits, that.bits);
+    }
+
+    // returns a hash code of the solutions in the set
+    public int hashCode() {
+        return Arrays.hashCode(bits);
+    }
+
+    // returns a 64-bit fingerprint of the solutions in the set, which is the same
+    // for any two sets with the same solutions
+    public long fingerprint() {
+        long hash = universe;
+        for (long word : bits) {
+            hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+            hash ^= hash >>> 32;
+        }
+        return hash;
+    }
+
+    // returns the indices in the set, e.g. "{0, 5, 17}"
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int s = next(0); s >= 0; s = next(s + 1)) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(s);
+        }
+        return sb.append("}").toString();
+    }
+
+    // tests all methods to make sure they're working as expected
+    public static void main(String[] args) {
+        // expect all 2311 solutions in a full set, and nothing past the last one
+        SolutionSet all = SolutionSet.all(2311);
+        StdOut.println("Size of full set (expecting 2311): " + all.size());
+        StdOut.println("Next after 2310 (expecting -1): " + all.next(2311));
+        StdOut.println("Contains 2310 (expecting true): " + all.contains(2310));
+
+        // expect adding the same index twice to only count once
+        SolutionSet evens = new SolutionSet(2311);
+        SolutionSet small = new SolutionSet(2311);
+        for (int i = 0; i < 2311; i += 2) evens.add(i);
+        small.add(3);
+        small.add(64);
+        small.add(64);
+        small.add(2310);
+        StdOut.println("Size of small set (expecting 3): " + small.size());
+        StdOut.println("Small set (expecting {3, 64, 2310}): " + small);
+
+        // expect only the even indices of small in the intersection, and the
+        // rest in the difference
+        StdOut.println("Evens and small (expecting {64, 2310}): " +
+                               evens.intersect(small));
+        StdOut.println("Small minus evens (expecting {3}): " + small.minus(evens));
+        StdOut.println("Size of full minus evens (expecting 1155): " +
+                               all.minus(evens).size());
+
+        // expect sets with the same solutions to be equal
+        SolutionSet copy = all.intersect(small);
+        StdOut.println("Copy equals small (expecting true): " + copy.equals(small));
+        StdOut.println("Same hash code (expecting true): " +
+                               (copy.hashCode() == small.hashCode()));
+
+        // expect the parts of a partition to add back up to the full set
+        PatternTable table = PatternTable.load("words/valid_guesses.txt",
+                                               "words/valid_solutions.txt");
+        SolutionSet[] parts = all.partition(table.guessIndex("terns"), table);
+        int total = 0;
+        for (SolutionSet part : parts) {
+            if (part != null) total += part.size();
+        }
+        StdOut.println("Solutions in partition (expecting 2311): " + total);
+        StdOut.println("Size of ----- part (expecting 254): " + parts[0].size());
+    }
+}
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Finds the fewest guesses needed to force a win against the Buckets
+ * adversary, and counts (and lists some of) the shortest winning sequences.
+ *
+ * A game is won by guessing the last remaining solution, and the adversary
+ * never leaves a guess as the only solution while another bucket is just as
+ * large, so winning in n guesses means reducing the solutions to one with
+ * n - 1 guesses. The solver searches guess sequences with iterative deepening:
+ * it tries every valid guess at every level for a depth of 1, then 2, and so
+ * on, until some sequence leaves a single solution.
+ *
+ * To keep the search small, each level is first only checked for any win
+ * (stopping at the first one found) and winning sequences are only counted
+ * once the shortest depth is known, and then only through sets that can win.
+ * Guesses that leave the same set of solutions are searched once (and counted
+ * with their multiplicity), sets too large to reduce to one solution in the
+ * guesses left are skipped before they are even collected, results for
+ * visited sets are remembered, and the sets left by the first guess are
+ * searched in parallel.
+ *
+ * Usage: java Solver [max guesses] [guesses to play first ...]
+ ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Solver {
+
+    private static final int MEMO_LIMIT = 1 << 22;  // most sets remembered
+    private static final int SAMPLE_LIMIT = 10;  // most winning sequences listed
+    private static final int CACHE_SIZE = 1 << 16;  // most guess results cached
+
+    private final PatternTable table;  // patterns of every guess vs solution
+    private final BucketCache cache;  // results of guesses on visited sets
+    private final int codes;  // number of possible pattern codes
+
+    // most solutions any single guess puts in different buckets, so the most
+    // solutions one guess can reduce to one
+    private final int mostSeparated;
+
+    // results for visited sets, where memo.get(d) holds sets searched with d
+    // guesses left
+    private final List<Map<SolutionSet, Boolean>> solvableMemo;
+    private final List<Map<SolutionSet, Long>> countMemo;
+    private final AtomicInteger memoSize;  // number of sets in both memos
+
+    // creates a solver for the word lists of table
+    public Solver(PatternTable table) {
+        this.table = table;
+        this.cache = new BucketCache(table, CACHE_SIZE);
+        this.codes = Pattern.count(table.wordLength());
+        this.solvableMemo = new ArrayList<Map<SolutionSet, Boolean>>();
+        this.countMemo = new ArrayList<Map<SolutionSet, Long>>();
+        this.memoSize = new AtomicInteger();
+
+        // a guess can only separate as many solutions as it has distinct patterns
+        int most = 0;
+        boolean[] seen = new boolean[codes];
+        for (int g = 0; g < table.guessCount(); g++) {
+            Arrays.fill(seen, false);
+            int distinct = 0;
+            for (int s = 0; s < table.solutionCount(); s++) {
+                int code = table.get(g, s);
+                if (!seen[code]) distinct++;
+                seen[code] = true;
+            }
+            most = Math.max(most, distinct);
+        }
+        this.mostSeparated = most;
+    }
+
+    // checks if some sequence of exactly depth guesses leaves one solution of
+    // remSols (and more than one before the last guess)
+    public boolean solvable(SolutionSet remSols, int depth) {
+        if (remSols.size() == 1) return depth == 0;
+        if (depth == 0 || remSols.size() > bound(depth)) return false;
+
+        Map<SolutionSet, Boolean> known = memo(solvableMemo, depth);
+        Boolean cached = known.get(remSols);
+        if (cached != null) return cached;
+
+        boolean found = false;
+        if (depth == 1) found = separatingGuesses(remSols, 1) > 0;
+        else {
+            // check each distinct child as soon as it is found
+            Set<SolutionSet> tried = new HashSet<SolutionSet>();
+            long maxChild = bound(depth - 1);
+            int[] bucketFreq = new int[codes];
+            for (int g = 0; g < table.guessCount() && !found; g++) {
+                SolutionSet child = child(g, remSols, maxChild, bucketFreq);
+                if (child != null && tried.add(child)) {
+                    found = solvable(child, depth - 1);
+                }
+            }
+        }
+        remember(known, remSols, found);
+        return found;
+    }
+
+    // returns the number of sequences of exactly depth guesses that leave one
+    // solution of remSols (and more than one before the last guess)
+    public long count(SolutionSet remSols, int depth) {
+        if (!solvable(remSols, depth)) return 0;
+        if (depth == 0) return 1;
+
+        Map<SolutionSet, Long> known = memo(countMemo, depth);
+        Long cached = known.get(remSols);
+        if (cached != null) return cached;
+
+        long total;
+        if (depth == 1) total = separatingGuesses(remSols, table.guessCount());
+        else {
+            total = 0;
+            for (Map.Entry<SolutionSet, Integer> child : children(remSols, depth)
+                    .entrySet()) {
+                total += child.getValue() * count(child.getKey(), depth - 1);
+            }
+        }
+        remember(known, remSols, total);
+        return total;
+    }
+
+    // returns the number of guesses (stopping once limit are found) that put
+    // every solution of remSols in a different bucket, so the adversary is left
+    // with one solution
+    private long separatingGuesses(SolutionSet remSols, int limit) {
+        if (remSols.size() > mostSeparated) return 0;
+
+        long[] seen = new long[(codes + Long.SIZE - 1) / Long.SIZE];
+        long total = 0;
+        for (int g = 0; g < table.guessCount() && total < limit; g++) {
+            Arrays.fill(seen, 0);
+            boolean separates = true;
+            for (int s = remSols.next(0); s >= 0; s = remSols.next(s + 1)) {
+                int code = table.get(g, s);
+                long mask = 1L << code;
+                if ((seen[code / Long.SIZE] & mask) != 0) {
+                    separates = false;
+                    break;
+                }
+                seen[code / Long.SIZE] |= mask;
+            }
+            if (separates) total++;
+        }
+        return total;
+    }
+
+    // returns the distinct sets the adversary leaves after each guess on remSols
+    // (with the number of guesses leaving each), skipping sets too large to
+    // reduce to one solution in the remaining depth - 1 guesses
+    private Map<SolutionSet, Integer> children(SolutionSet remSols, int depth) {
+        Map<SolutionSet, Integer> children = new HashMap<SolutionSet, Integer>();
+        long maxChild = bound(depth - 1);
+        int[] bucketFreq = new int[codes];
+
+        for (int g = 0; g < table.guessCount(); g++) {
+            SolutionSet child = child(g, remSols, maxChild, bucketFreq);
+            if (child == null) continue;
+            Integer seen = children.get(child);
+            if (seen == null) children.put(child, 1);
+            else children.put(child, seen + 1);
+        }
+        return children;
+    }
+
+    // returns the set the adversary leaves after guess g on remSols, or null if
+    // it has more than maxChild solutions (bucketFreq is reused between calls)
+    private SolutionSet child(int g, SolutionSet remSols, long maxChild,
+                              int[] bucketFreq) {
+        Arrays.fill(bucketFreq, 0);
+        int highestFreq = 0;
+        for (int s = remSols.next(0); s >= 0; s = remSols.next(s + 1)) {
+            int freq = ++bucketFreq[table.get(g, s)];
+            if (freq > highestFreq) highestFreq = freq;
+        }
+        // the adversary's bucket always has the highest frequency
+        if (highestFreq > maxChild) return null;
+
+        int code = Buckets.largest(bucketFreq);
+        SolutionSet child = new SolutionSet(remSols.universe());
+        for (int s = remSols.next(0); s >= 0; s = remSols.next(s + 1)) {
+            if (table.get(g, s) == code) child.add(s);
+        }
+        return child;
+    }
+
+    // returns the most solutions that can be reduced to one in depth guesses
+    private long bound(int depth) {
+        long most = 1;
+        for (int i = 0; i < depth && most <= Integer.MAX_VALUE; i++) {
+            most *= mostSeparated;
+        }
+        return most;
+    }
+
+    // returns the map of memos holding sets searched with depth guesses left
+    private synchronized <T> Map<SolutionSet, T> memo(
+            List<Map<SolutionSet, T>> memos, int depth) {
+        while (memos.size() <= depth) {
+            memos.add(new ConcurrentHashMap<SolutionSet, T>());
+        }
+        return memos.get(depth);
+    }
+
+    // remembers the result for remSols in known, unless the memos are full
+    private <T> void remember(Map<SolutionSet, T> known, SolutionSet remSols,
+                              T result) {
+        if (memoSize.get() < MEMO_LIMIT) {
+            known.put(remSols, result);
+            memoSize.incrementAndGet();
+        }
+    }
+
+    // checks if some sequence of exactly depth guesses leaves one solution of
+    // remSols, searching the sets left by the first guess in parallel
+    public boolean solvableParallel(SolutionSet remSols, int depth) {
+        if (depth <= 1 || remSols.size() == 1) return solvable(remSols, depth);
+
+        Map<SolutionSet, Integer> children = children(remSols, depth);
+        return children.keySet().parallelStream()
+                       .anyMatch(child -> solvable(child, depth - 1));
+    }
+
+    // returns the number of sequences of exactly depth guesses that leave one
+    // solution of remSols, searching the sets left by the first guess in parallel
+    public long countParallel(SolutionSet remSols, int depth) {
+        if (depth <= 1 || remSols.size() == 1) return count(remSols, depth);
+
+        Map<SolutionSet, Integer> children = children(remSols, depth);
+        return children.entrySet().parallelStream()
+                       .mapToLong(child -> child.getValue() *
+                               count(child.getKey(), depth - 1))
+                       .sum();
+    }
+
+    // adds up to limit sequences of depth guesses (each followed by the last
+    // solution, which wins) that leave one solution of remSols to sequences
+    public void sequences(SolutionSet remSols, int depth, LinkedList<String> prefix,
+                          List<String> sequences, int limit) {
+        if (sequences.size() >= limit) return;
+        if (depth == 0) {
+            if (remSols.size() == 1) {
+                sequences.add(String.join(" ", prefix) + " " +
+                                      table.solution(remSols.first()));
+            }
+            return;
+        }
+        for (int g = 0; g < table.guessCount() && sequences.size() < limit; g++) {
+            SolutionSet child = cache.get(g, remSols).getMostRemSols();
+            if (!solvable(child, depth - 1)) continue;
+            prefix.addLast(table.guess(g));
+            sequences(child, depth - 1, prefix, sequences, limit);
+            prefix.removeLast();
+        }
+    }
+
+    // searches for the fewest guesses to force a win, starting from the full
+    // solution list (after playing any guesses given after the max guesses)
+    public static void main(String[] args) {
+        PatternTable table = PatternTable.load();
+        int maxGuesses = 8;
+        if (args.length != 0) maxGuesses = Integer.parseInt(args[0]);
+
+        Solver solver = new Solver(table);
+
+        // play the given opening guesses
+        SolutionSet remSols = SolutionSet.all(table.solutionCount());
+        LinkedList<String> prefix = new LinkedList<String>();
+        for (int i = 1; i < args.length; i++) {
+            String guess = args[i].toLowerCase();
+            if (!table.guesses().contains(guess)) {
+                throw new IllegalArgumentException("Invalid guess: " + guess);
+            }
+            remSols = solver.cache.get(guess, remSols).getMostRemSols();
+            prefix.add(guess);
+        }
+        StdOut.println("Searching from " + remSols.size() + " solutions after " +
+                               prefix.size() + " guesses");
+
+        Stopwatch timer = new Stopwatch();
+
+        // iterative deepening over the guesses needed to leave one solution
+        for (int depth = 0; prefix.size() + depth + 1 <= maxGuesses; depth++) {
+            int guesses = prefix.size() + depth + 1;
+            if (!solver.solvableParallel(remSols, depth)) {
+                StdOut.printf("No win in %d guesses (%.1f seconds)\n", guesses,
+                              timer.elapsedTime());
+                continue;
+            }
+            StdOut.printf("Fewest guesses to force a win: %d (%.1f seconds)\n",
+                          guesses, timer.elapsedTime());
+
+            List<String> sequences = new ArrayList<String>();
+            solver.sequences(remSols, depth, prefix, sequences, SAMPLE_LIMIT);
+            for (String sequence : sequences) StdOut.println("  " + sequence);
+
+            // counting every winning sequence can take much longer than finding one
+            long total = solver.countParallel(remSols, depth);
+            StdOut.printf("Winning sequences of %d guesses: %d (%.1f seconds)\n",
+                          guesses, total, timer.elapsedTime());
+            StdOut.println("Guess cache: " + solver.cache);
+            return;
+        }
+        StdOut.println("No win in at most " + maxGuesses + " guesses");
+    }
+}
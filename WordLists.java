@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Valid guesses and solutions compiled into one binary file, so startup maps
+ * a small file instead of parsing both text lists into Strings.
+ *
+ * The text files stay the source of truth: the binary file is written next to
+ * them (named after the guesses file, e.g. valid_guesses.words.bin), so each
+ * pair of lists has its own, and its header holds a hash of both files'
+ * contents, so it is compiled again whenever either of them changes. The file
+ * holds:
+ *
+ * header       magic, version, word length, # of guesses, # of solutions
+ *              (ints) and the hash of the text files (long)
+ * guesses      every valid guess packed (see Dictionary.pack) into an int
+ *              (words of up to 6 letters) or a long, in sorted order
+ * solutions    bitmap over the guesses, with bit i set if guess i is also a
+ *              valid solution
+ *
+ * Guess ids are positions in the sorted list, and solution ids are positions
+ * among the solutions in the same order. Words are only turned into Strings
+ * when they are asked for (see Dictionary.fromPacked).
+ *
+ * Every solution must also be a valid guess to be stored in the bitmap; for
+ * other word lists (and duplicate words), the text files are read directly,
+ * with the guesses and solutions sorted in the same way, so ids don't depend on
+ * which path loaded them.
+ *
+ * Usage: java WordLists [guesses file] [solutions file]
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+public class WordLists {
+
+    private static final String FILE_SUFFIX = ".words.bin";  // after list name
+
+    private static final int MAGIC = 0x41425357;  // "ABSW", start of every file
+    private static final int VERSION = 1;  // layout version of the file
+
+    // magic, version, word length, # of guesses, # of solutions (ints) and the
+    // hash of the text files (long)
+    private static final int HEADER_SIZE = 5 * Integer.BYTES + Long.BYTES;
+
+    // longest words packed into an int (five bits per letter)
+    private static final int INT_LTRS = Integer.SIZE / 5;
+
+    private final Dictionary guesses;  // valid guesses, by id
+    private final Dictionary sols;  // valid solutions, by id
+
+    // creates the word lists of the given dictionaries
+    private WordLists(Dictionary guesses, Dictionary sols) {
+        this.guesses = guesses;
+        this.sols = sols;
+    }
+
+    // returns the dictionary of valid guesses
+    public Dictionary guesses() {
+        return guesses;
+    }
+
+    // returns the dictionary of valid solutions
+    public Dictionary solutions() {
+        return sols;
+    }
+
+    // loads the word lists in the given text files from their compiled file,
+    // compiling it first if it is missing or the text files have changed
+    public static WordLists load(String guessesFile, String solutionsFile) {
+        Path guessesPath = Paths.get(guessesFile);
+        Path solsPath = Paths.get(solutionsFile);
+        Path file = binaryFile(guessesFile, FILE_SUFFIX);
+        try {
+            long hash = hash(guessesPath, solsPath);
+            WordLists lists = read(file, hash);
+            if (lists != null) return lists;
+            if (compile(guessesFile, solutionsFile, file, hash)) {
+                lists = read(file, hash);
+                if (lists != null) return lists;
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not load word lists " + file, e);
+        }
+
+        // the lists can't be compiled, so read the text, sorted as in read
+        String[] guessWords = new In(guessesFile).readAllStrings();
+        String[] solWords = new In(solutionsFile).readAllStrings();
+        Arrays.sort(guessWords);
+        Arrays.sort(solWords);
+        return new WordLists(new Dictionary(guessWords), new Dictionary(solWords));
+    }
+
+    // returns the word lists in file, or null if it is missing or was not
+    // compiled from text files with the given hash
+    private static WordLists read(Path file, long hash) throws IOException {
+        if (!Files.exists(file)) return null;
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+        int length = buffer.getInt();
+        int guessCount = buffer.getInt();
+        int solCount = buffer.getInt();
+        if (buffer.getLong() != hash) return null;
+
+        int wordBytes = length <= INT_LTRS ? Integer.BYTES : Long.BYTES;
+        long expectedSize = HEADER_SIZE + (long) guessCount * wordBytes +
+                (long) bitmapLongs(guessCount) * Long.BYTES;
+        if (buffer.capacity() != expectedSize) return null;
+
+        long[] guessKeys = new long[guessCount];
+        for (int g = 0; g < guessCount; g++) {
+            if (wordBytes == Integer.BYTES) guessKeys[g] = buffer.getInt();
+            else guessKeys[g] = buffer.getLong();
+        }
+
+        // select the solutions from the bitmap, in guess order
+        long[] solKeys = new long[solCount];
+        int s = 0;
+        for (int i = 0; i < bitmapLongs(guessCount); i++) {
+            long bits = buffer.getLong();
+            while (bits != 0) {
+                if (s == solCount) return null;
+                int g = i * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                solKeys[s++] = guessKeys[g];
+                bits &= bits - 1;
+            }
+        }
+        if (s != solCount) return null;
+
+        return new WordLists(Dictionary.fromPacked(guessKeys),
+                             Dictionary.fromPacked(solKeys));
+    }
+
+    // compiles the word lists in the given text files (whose contents have the
+    // given hash) into file, returning false if they can't be compiled (a
+    // solution that is not a guess, a duplicate word or words of different
+    // lengths)
+    private static boolean compile(String guessesFile, String solutionsFile,
+                                   Path file, long hash) throws IOException {
+        String[] guessWords = new In(guessesFile).readAllStrings();
+        String[] solWords = new In(solutionsFile).readAllStrings();
+        int length = 0;
+        if (guessWords.length > 0) length = guessWords[0].length();
+
+        long[] guessKeys = new long[guessWords.length];
+        for (int g = 0; g < guessWords.length; g++) {
+            if (guessWords[g].length() != length) return false;
+            guessKeys[g] = Dictionary.pack(guessWords[g]);
+            if (guessKeys[g] == 0) return false;
+        }
+        Arrays.sort(guessKeys);
+        for (int g = 1; g < guessKeys.length; g++) {
+            if (guessKeys[g] == guessKeys[g - 1]) return false;
+        }
+
+        long[] bitmap = new long[bitmapLongs(guessKeys.length)];
+        for (String sol : solWords) {
+            int g = Arrays.binarySearch(guessKeys, Dictionary.pack(sol));
+            if (g < 0 || (bitmap[g / Long.SIZE] & (1L << g)) != 0) return false;
+            bitmap[g / Long.SIZE] |= 1L << g;
+        }
+
+        int wordBytes = length <= INT_LTRS ? Integer.BYTES : Long.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + guessKeys.length *
+                wordBytes + bitmap.length * Long.BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(length)
+              .putInt(guessKeys.length).putInt(solWords.length).putLong(hash);
+        for (long key : guessKeys) {
+            if (wordBytes == Integer.BYTES) buffer.putInt((int) key);
+            else buffer.putLong(key);
+        }
+        for (long bits : bitmap) buffer.putLong(bits);
+        buffer.flip();
+
+        // write to a temporary file first, so other JVMs never read a partial file
+        Path tmp = Files.createTempFile(file.getParent(),
+                                        file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+        tmp.toFile().setReadable(true, false);  // temp files are owner-only
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    // returns the path of a binary file next to guessesFile, named after it with
+    // suffix in place of its extension
+    static Path binaryFile(String guessesFile, String suffix) {
+        Path path = Paths.get(guessesFile).toAbsolutePath();
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) name = name.substring(0, dot);
+        return path.getParent().resolve(name + suffix);
+    }
+
+    // returns the number of longs in a bitmap of n bits
+    private static int bitmapLongs(int n) {
+        return (n + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    // returns a hash of the contents of both text files (the CRC32 of each)
+    private static long hash(Path guessesFile, Path solutionsFile) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(guessesFile));
+        long guessesCrc = crc.getValue();
+        crc.reset();
+        crc.update(Files.readAllBytes(solutionsFile));
+        return (guessesCrc << Integer.SIZE) | crc.getValue();
+    }
+
+    // compiles the given word lists (or the default ones) and tests all methods
+    // to make sure they're working as expected
+    public static void main(String[] args) throws IOException {
+        String guessesFile = "words/valid_guesses.txt";
+        String solutionsFile = "words/valid_solutions.txt";
+        if (args.length == 2) {
+            guessesFile = args[0];
+            solutionsFile = args[1];
+        }
+
+        // expect the first load to compile the file and the second to map it
+        Path file = binaryFile(guessesFile, FILE_SUFFIX);
+        Files.deleteIfExists(file);
+        Stopwatch timer = new Stopwatch();
+        WordLists compiled = WordLists.load(guessesFile, solutionsFile);
+        StdOut.println("Compiled " + file + " in " + timer.elapsedTime() +
+                               " seconds (" + Files.size(file) + " bytes)");
+        timer = new Stopwatch();
+        WordLists lists = WordLists.load(guessesFile, solutionsFile);
+        StdOut.println("Loaded in " + timer.elapsedTime() + " seconds");
+        timer = new Stopwatch();
+        Dictionary text = Dictionary.load(guessesFile);
+        Dictionary.load(solutionsFile);
+        StdOut.println("Read text files in " + timer.elapsedTime() + " seconds");
+
+        // expect the same words as the text files, with the guesses sorted
+        Dictionary guesses = lists.guesses();
+        Dictionary sols = lists.solutions();
+        StdOut.println("Number of guesses (expecting " + text.size() + "): " +
+                               guesses.size());
+        boolean allFound = true;
+        for (int id = 0; id < text.size(); id++) {
+            if (!guesses.contains(text.word(id))) allFound = false;
+        }
+        boolean sorted = true;
+        for (int id = 1; id < guesses.size(); id++) {
+            if (guesses.word(id - 1).compareTo(guesses.word(id)) >= 0) sorted = false;
+        }
+        StdOut.println("Every guess found (expecting true): " + allFound);
+        StdOut.println("Guesses sorted (expecting true): " + sorted);
+        StdOut.println("Number of solutions (expecting 2311): " + sols.size());
+        StdOut.println("First, last solution (expecting aback, zonal): " +
+                               sols.word(0) + ", " + sols.word(sols.size() - 1));
+        StdOut.println("Same as compiled (expecting true): " +
+                               compiled.solutions().word(7).equals(sols.word(7)));
+
+        // expect lists that can't be compiled (a duplicate guess) to give the
+        // solutions the same ids as compiled ones
+        Path dir = Files.createTempDirectory("wordlists");
+        Path dupGuesses = dir.resolve("dup_guesses.txt");
+        Path okGuesses = dir.resolve("ok_guesses.txt");
+        Path solsText = dir.resolve("solutions.txt");
+        Files.write(dupGuesses, Arrays.asList("zonal", "crane", "aback", "crane"));
+        Files.write(okGuesses, Arrays.asList("zonal", "crane", "aback"));
+        Files.write(solsText, Arrays.asList("zonal", "aback"));
+        Dictionary fromText = WordLists.load(dupGuesses.toString(),
+                                             solsText.toString()).solutions();
+        Dictionary fromFile = WordLists.load(okGuesses.toString(),
+                                             solsText.toString()).solutions();
+        StdOut.println("Solutions read from text (expecting aback, zonal): " +
+                               fromText.word(0) + ", " + fromText.word(1));
+        StdOut.println("Solutions compiled (expecting aback, zonal): " +
+                               fromFile.word(0) + ", " + fromFile.word(1));
+        for (Path p : new Path[] { dupGuesses, okGuesses, solsText,
+                binaryFile(okGuesses.toString(), FILE_SUFFIX), dir }) {
+            Files.deleteIfExists(p);
+        }
+    }
+}